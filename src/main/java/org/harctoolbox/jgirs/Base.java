@@ -55,8 +55,6 @@ public class Base extends Module {
         return instance;
     }
 
-    private boolean quitRequested = false;
-
     private Base() {
         super();
         addCommand(new VersionCommand());
@@ -66,22 +64,21 @@ public class Base extends Module {
         addCommand(new QuitCommand());
     }
 
-    public boolean isQuitRequested() {
-        return quitRequested;
-    }
-
-    public void setQuitRequested(boolean quitRequested) {
-        this.quitRequested = quitRequested;
-    }
-
     public String version(String hardwareName) throws IncompatibleHardwareException, IOException, HarcHardwareException, NoSuchParameterException, NoSuchHardwareException, AmbigousHardwareException {
         GirsHardware hardware = Engine.getInstance().getHardware(hardwareName);
-        initializeHardware(hardware, IHarcHardware.class);
-        return hardware.getHardware().getVersion();
+        hardware.lock();
+        try {
+            initializeHardware(hardware, IHarcHardware.class);
+            return hardware.getHardware().getVersion();
+        } finally {
+            hardware.unlock();
+        }
     }
 
     public String quit() {
-        quitRequested = true;
+        Session session = Session.getCurrent();
+        if (session != null)
+            session.setQuitRequested(true);
         return GOODBYE;
     }
 
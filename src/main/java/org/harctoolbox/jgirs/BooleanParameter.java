@@ -22,7 +22,7 @@ package org.harctoolbox.jgirs;
  */
 final class BooleanParameter extends Parameter {
 
-    private boolean value;
+    private volatile boolean value;
 
     //private BooleanParameter() {}
 
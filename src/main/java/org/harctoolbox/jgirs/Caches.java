@@ -0,0 +1,97 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Module for inspecting and clearing the caches of the other modules.
+ */
+public class Caches extends Module {
+
+    private static final List<LruCache<?, ?>> caches = new CopyOnWriteArrayList<>();
+
+    private static volatile Caches instance = null;
+
+    static Caches newCaches() {
+        if (instance != null)
+            throw new InvalidMultipleInstantiation();
+
+        instance = new Caches();
+        return instance;
+    }
+
+    public static Caches getInstance() {
+        return instance;
+    }
+
+    /**
+     * Makes a cache visible to the cache command.
+     * @param cache
+     */
+    static void register(LruCache<?, ?> cache) {
+        caches.add(cache);
+    }
+
+    private Caches() {
+        super();
+        addCommand(new CacheCommand());
+    }
+
+    /**
+     * @return statistics of the caches, one line per cache.
+     */
+    public List<String> statistics() {
+        List<String> result = new ArrayList<>(caches.size());
+        caches.forEach((cache) -> {
+            result.add(cache.toString());
+        });
+        return result;
+    }
+
+    public void clear() {
+        caches.forEach((cache) -> {
+            cache.clear();
+        });
+    }
+
+    private class CacheCommand implements ICommand {
+
+        private static final String CACHE = "cache";
+        private static final String CLEAR = "clear";
+
+        @Override
+        public String getName() {
+            return CACHE;
+        }
+
+        @Override
+        public List<String> exec(String[] args) throws CommandSyntaxException {
+            checkNoArgs(CACHE, args.length, 0, 1);
+            if (args.length == 0)
+                return statistics();
+
+            if (!args[0].equalsIgnoreCase(CLEAR))
+                throw new CommandSyntaxException(CACHE, "unknown argument " + args[0]);
+            clear();
+            return new ArrayList<>(0);
+        }
+    }
+}
@@ -18,6 +18,7 @@ this program. If not, see http://www.gnu.org/licenses/.
 package org.harctoolbox.jgirs;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import org.harctoolbox.harchardware.HarcHardwareException;
 import org.harctoolbox.harchardware.ir.ICapture;
@@ -27,16 +28,20 @@ import static org.harctoolbox.jgirs.Engine.TIMEOUT;
 
 /**
  * Module for capturing raw signals.
+ * Optionally, a capture is segmented into intro, repeat, and ending (see CaptureSegmenter).
  */
 public class Capture extends Module {
 
     private static final int defaultCaptureBeginTimeout  = 5000;
     private static final int defaultCaptureEndingTimeout = 200;
     private static final int defaultCaptureLength        = 400;
+    private static final int defaultCaptureFrameGap      = 8000;
 
     public static final String CAPTUREBEGINTIMEOUT  = "captureBeginTimeout";
     public static final String CAPTUREENDINGTIMEOUT = "captureEndingTimeout";
     public static final String CAPTURELENGTH        = "captureLength";
+    public static final String CAPTURESEGMENT       = "captureSegment";
+    public static final String CAPTUREFRAMEGAP      = "captureFrameGap";
 
     private static final boolean alternatingSigns = true;
     private static final boolean noSigns = false;
@@ -57,13 +62,21 @@ public class Capture extends Module {
     }
 
     public static ModulatedIrSequence capture(GirsHardware hardware) throws IncompatibleHardwareException, HarcHardwareException, IOException, NoSuchParameterException, InvalidArgumentException {
-        initializeHardware(hardware, ICapture.class);
-        ICapture capturer = (ICapture) hardware.getHardware();
-        capturer.setBeginTimeout(Parameters.getInstance().getInteger(CAPTUREBEGINTIMEOUT));
-        capturer.setCaptureMaxSize(Parameters.getInstance().getInteger(CAPTURELENGTH));
-        capturer.setEndingTimeout(Parameters.getInstance().getInteger(CAPTUREENDINGTIMEOUT));
-        ModulatedIrSequence irSequence = ((ICapture) hardware.getHardware()).capture();
-        return irSequence;
+        int beginTimeout = Parameters.getInstance().getInteger(CAPTUREBEGINTIMEOUT);
+        int captureLength = Parameters.getInstance().getInteger(CAPTURELENGTH);
+        int endingTimeout = Parameters.getInstance().getInteger(CAPTUREENDINGTIMEOUT);
+        hardware.lock();
+        try {
+            initializeHardware(hardware, ICapture.class);
+            ICapture capturer = (ICapture) hardware.getHardware();
+            capturer.setBeginTimeout(beginTimeout);
+            capturer.setCaptureMaxSize(captureLength);
+            capturer.setEndingTimeout(endingTimeout);
+            ModulatedIrSequence irSequence = capturer.capture();
+            return irSequence;
+        } finally {
+            hardware.unlock();
+        }
     }
 
     private Capture() {
@@ -72,6 +85,10 @@ public class Capture extends Module {
         addParameter(new IntegerParameter(CAPTUREBEGINTIMEOUT, defaultCaptureBeginTimeout, null));
         addParameter(new IntegerParameter(CAPTUREENDINGTIMEOUT, defaultCaptureEndingTimeout, null));
         addParameter(new IntegerParameter(CAPTURELENGTH, defaultCaptureLength, null));
+        addParameter(new BooleanParameter(CAPTURESEGMENT, false,
+                "Let analyze segment the capture into intro, repeat, and ending, with a repeat count"));
+        addParameter(new IntegerParameter(CAPTUREFRAMEGAP, defaultCaptureFrameGap,
+                "Gaps longer than this (in micro seconds) separate the frames of a capture, when segmenting"));
     }
 
     private static class CaptureCommand implements ICommand {
@@ -88,8 +105,18 @@ public class Capture extends Module {
         public List<String> exec(String[] args) throws HarcHardwareException, IOException, IncompatibleHardwareException, NoSuchHardwareException, NoSuchParameterException, CommandSyntaxException, AmbigousHardwareException, InvalidArgumentException {
             //hardware.setTimeout(startTimeoutParameter.value, maxCaptureLengthParameter.value, endTimeoutParameter.value);
             checkNoArgs(ANALYZE, args.length, 0, 1);
-            ModulatedIrSequence irSequence = args.length == 0 ? capture() : capture(Engine.getInstance().getHardware(args[0]));
+            GirsHardware hardware = args.length == 0 ? Engine.getInstance().getCaptureHardware() : Engine.getInstance().getHardware(args[0]);
+            if (Session.isAsynchronous()) {
+                Session.getCurrent().submit(ANALYZE, () -> format(capture(hardware)));
+                return new ArrayList<>(0);
+            }
+            return format(capture(hardware));
+        }
+
+        private List<String> format(ModulatedIrSequence irSequence) throws NoSuchParameterException {
             String string = irSequence == null ? TIMEOUT
+                    : Parameters.getInstance().getBoolean(CAPTURESEGMENT)
+                    ? CaptureSegmenter.segment(irSequence.toInts(), Parameters.getInstance().getInteger(CAPTUREFRAMEGAP)).toString(irSequence.getFrequency())
                     : irSequence.toString(alternatingSigns, SEPARATOR);
             return Utils.singletonArrayList(string);
         }
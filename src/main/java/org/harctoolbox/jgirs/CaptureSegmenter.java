@@ -0,0 +1,165 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits a long capture into frames, at gaps longer than a threshold, and finds its structure:
+ * the longest run of equal consecutive frames is the repeat, the frames before it the intro,
+ * and those after it the ending. The repeat is the mean of the frames of the run.
+ * Frames are equal if they have the same length, and all durations, except the final gaps, agree
+ * within the tolerance. The final gap of the capture is not a true gap (it is given by the ending timeout),
+ * so it is not used in the mean.
+ */
+final class CaptureSegmenter {
+
+    private static final int ABSOLUTE_TOLERANCE = 100;
+    private static final double RELATIVE_TOLERANCE = 0.2;
+
+    /**
+     * @param durations Captured durations, starting with a flash.
+     * @param gap Spaces longer than this end a frame.
+     * @return the structure of the capture.
+     */
+    static Segments segment(int[] durations, int gap) {
+        List<int[]> frames = split(durations, gap);
+
+        int bestStart = 0;
+        int bestLength = 1;
+        for (int start = 0; start < frames.size();) {
+            int end = start + 1;
+            while (end < frames.size() && equal(frames.get(start), frames.get(end)))
+                end++;
+            if (end - start > bestLength) {
+                bestStart = start;
+                bestLength = end - start;
+            }
+            start = end;
+        }
+
+        if (bestLength < 2) // no repetition
+            return new Segments(durations.clone(), new int[0], new int[0], 0, frames.size());
+
+        int[] repeat = mean(frames.subList(bestStart, bestStart + bestLength), bestStart + bestLength == frames.size());
+        return new Segments(concatenate(frames.subList(0, bestStart)), repeat,
+                concatenate(frames.subList(bestStart + bestLength, frames.size())), bestLength, frames.size());
+    }
+
+    private static List<int[]> split(int[] durations, int gap) {
+        List<int[]> frames = new ArrayList<>(8);
+        int start = 0;
+        for (int i = 1; i < durations.length; i += 2)
+            if (durations[i] > gap || i == durations.length - 1) {
+                frames.add(Arrays.copyOfRange(durations, start, i + 1));
+                start = i + 1;
+            }
+        if (start < durations.length) // odd length
+            frames.add(Arrays.copyOfRange(durations, start, durations.length));
+        return frames;
+    }
+
+    private static boolean equal(int[] frame1, int[] frame2) {
+        if (frame1.length != frame2.length)
+            return false;
+        for (int i = 0; i < frame1.length - 1; i++) {
+            int difference = Math.abs(frame1[i] - frame2[i]);
+            if (difference > ABSOLUTE_TOLERANCE && difference > RELATIVE_TOLERANCE * Math.max(frame1[i], frame2[i]))
+                return false;
+        }
+        return true;
+    }
+
+    // If lastIsFinal, the final gap of the last frame is the end of the capture, and not used.
+    private static int[] mean(List<int[]> frames, boolean lastIsFinal) {
+        int length = frames.get(0).length;
+        long[] sums = new long[length];
+        for (int[] frame : frames)
+            for (int i = 0; i < length; i++)
+                sums[i] += frame[i];
+
+        int[] result = new int[length];
+        for (int i = 0; i < length - 1; i++)
+            result[i] = (int) Math.round((double) sums[i] / frames.size());
+        int count = lastIsFinal ? frames.size() - 1 : frames.size();
+        long gapSum = lastIsFinal ? sums[length - 1] - frames.get(frames.size() - 1)[length - 1] : sums[length - 1];
+        result[length - 1] = (int) Math.round((double) gapSum / count);
+        return result;
+    }
+
+    private static int[] concatenate(List<int[]> frames) {
+        int length = 0;
+        for (int[] frame : frames)
+            length += frame.length;
+        int[] result = new int[length];
+        int position = 0;
+        for (int[] frame : frames) {
+            System.arraycopy(frame, 0, result, position, frame.length);
+            position += frame.length;
+        }
+        return result;
+    }
+
+    private static String toString(int[] durations) {
+        StringBuilder str = new StringBuilder(durations.length * 6);
+        for (int i = 0; i < durations.length; i++) {
+            if (i > 0)
+                str.append(' ');
+            str.append(i % 2 == 0 ? '+' : '-').append(durations[i]);
+        }
+        return str.toString();
+    }
+
+    private CaptureSegmenter() {
+    }
+
+    /**
+     * Result of segmenting a capture.
+     */
+    static final class Segments {
+
+        private final int[] intro;
+        private final int[] repeat;
+        private final int[] ending;
+        private final int repeats;
+        private final int frames;
+
+        private Segments(int[] intro, int[] repeat, int[] ending, int repeats, int frames) {
+            this.intro = intro;
+            this.repeat = repeat;
+            this.ending = ending;
+            this.repeats = repeats;
+            this.frames = frames;
+        }
+
+        /**
+         * @param frequency Modulation frequency, or null if unknown.
+         * @return the signal, with the number of repeats and frames captured,
+         * as in "Freq=38000Hz[+9024 -4512 ...][+9024 -2256 +564 -96156][] repeats=11 frames=12".
+         */
+        String toString(Double frequency) {
+            return (frequency != null ? "Freq=" + Math.round(frequency) + "Hz" : "")
+                    + "[" + CaptureSegmenter.toString(intro) + "]"
+                    + "[" + CaptureSegmenter.toString(repeat) + "]"
+                    + "[" + CaptureSegmenter.toString(ending) + "]"
+                    + " repeats=" + repeats + " frames=" + frames;
+        }
+    }
+}
@@ -19,7 +19,6 @@ package org.harctoolbox.jgirs;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -39,9 +38,20 @@ public class CommandExecuter {
     }
 
     private final Map<String, ICommand> commandMap;
+    private volatile PrefixIndex<ICommand> commandIndex; // built at first use after add
 
     public CommandExecuter() {
         commandMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        commandIndex = null;
+    }
+
+    private PrefixIndex<ICommand> getCommandIndex() {
+        PrefixIndex<ICommand> index = commandIndex;
+        if (index == null) {
+            index = new PrefixIndex<>(commandMap);
+            commandIndex = index;
+        }
+        return index;
     }
 
     public Set<String> getCommandNames() {
@@ -59,14 +69,41 @@ public class CommandExecuter {
         return commandMap.values();
     }
 
-    public Collection<String> exec(String[] args) throws NoSuchCommandException, AmbigousCommandException, IOException, HarcHardwareException, CommandException, AmbigousHardwareException, IrCoreException, IrpException {
-        String commandName = args[0];
-        List<String> candidates = Utils.findStringsWithPrefix(commandMap.keySet(), commandName);
-        if (candidates.isEmpty())
+    private ICommand find(String commandName) throws NoSuchCommandException, AmbigousCommandException {
+        PrefixIndex<ICommand> index = getCommandIndex();
+        int position = index.find(commandName);
+        if (position == PrefixIndex.NOT_FOUND)
             throw new NoSuchCommandException(commandName);
-        if (candidates.size() > 1)
+        if (position == PrefixIndex.AMBIGUOUS)
             throw new AmbigousCommandException(commandName);
-        ICommand cmd = commandMap.get(candidates.get(0));
+        return index.get(position);
+    }
+
+    /**
+     * Executes the command in the line, starting at start.
+     * The rest of the line is given to an {@link ILineCommand} as it is,
+     * otherwise it is split as by {@link Utils#tokenizer(CharSequence)}.
+     * @param line
+     * @param start
+     * @return as {@link ICommand#exec(String[])}.
+     */
+    public Collection<String> exec(CharSequence line, int start) throws NoSuchCommandException, AmbigousCommandException, IOException, HarcHardwareException, CommandException, AmbigousHardwareException, IrCoreException, IrpException {
+        int nameStart = Utils.skipWhitespace(line, start);
+        int nameEnd = Utils.tokenEnd(line, nameStart);
+        String commandName = line.subSequence(nameStart, nameEnd).toString();
+        if (commandName.indexOf('"') >= 0) // leave the quotes to the tokenizer
+            return exec(Utils.tokenizer(line.subSequence(nameStart, line.length()).toString().trim()));
+
+        ICommand cmd = find(commandName);
+        if (cmd instanceof ILineCommand)
+            return ((ILineCommand) cmd).exec(line, nameEnd);
+
+        String rest = line.subSequence(nameEnd, line.length()).toString().trim();
+        return cmd.exec(rest.isEmpty() ? new String[0] : Utils.tokenizer(rest));
+    }
+
+    public Collection<String> exec(String[] args) throws NoSuchCommandException, AmbigousCommandException, IOException, HarcHardwareException, CommandException, AmbigousHardwareException, IrCoreException, IrpException {
+        ICommand cmd = find(args[0]);
         String[] rest = new String[args.length-1];
         System.arraycopy(args, 1, rest, 0, args.length - 1);
         return cmd.exec(rest);
@@ -77,5 +114,6 @@ public class CommandExecuter {
             throw new RuntimeException("Multiply defined command: " + command.getName()); // Programmer is to blame
 
         commandMap.put(command.getName(), command);
+        commandIndex = null;
     }
 }
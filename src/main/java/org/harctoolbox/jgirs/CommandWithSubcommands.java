@@ -53,4 +53,10 @@ public abstract class CommandWithSubcommands {
             throw new CommandSyntaxException(getName(), "subcommand missing");
         return commandExecuter.exec(args);
     }
+
+    public Collection<String> exec(CharSequence line, int start) throws IOException, IrCoreException, IrpException, CommandSyntaxException, AmbigousCommandException, CommandException, NoSuchCommandException, HarcHardwareException, AmbigousHardwareException {
+        if (Utils.skipWhitespace(line, start) == line.length())
+            throw new CommandSyntaxException(getName(), "subcommand missing");
+        return commandExecuter.exec(line, start);
+    }
 }
@@ -0,0 +1,399 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.harctoolbox.girr.Command;
+import org.harctoolbox.girr.GirrException;
+import org.harctoolbox.girr.Remote;
+import org.harctoolbox.ircore.IrCoreException;
+import org.harctoolbox.ircore.IrSignal;
+import org.harctoolbox.irp.IrpException;
+
+/**
+ * A remote, as stored in the RemoteCommandDataBase. Its commands are sorted by name, case insensitively.
+ * The meta data and the comment of the Girr Remote are kept, its notes and application parameters are not.
+ * The names and the comments of the commands are kept in arrays.
+ * Commands in protocol/parameter form are stored as an interned protocol name, an interned
+ * (sorted) array of parameter names, and the parameter values packed in a long array.
+ * Normally, also the Girr Commands are kept; in compact mode, they are only kept for commands
+ * without protocol (raw signals), and are otherwise created when needed.
+ *
+ * Instances are immutable.
+ */
+final class CompactRemote {
+
+    // Rough sizes for a 64 bit JVM with compressed references.
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int STRING = 24 + ARRAY_HEADER; // plus the characters
+    private static final int GIRR_COMMAND = 600; // estimate, with its parameter map
+    private static final int META_DATA = 200; // estimate, with its strings
+
+    private static final Map<String, String> names = new ConcurrentHashMap<>(64);
+    private static final Map<List<String>, String[]> layoutTable = new ConcurrentHashMap<>(64);
+    private static final String[] NO_PARAMETERS = new String[0];
+
+    private static String intern(String name) {
+        String old = names.putIfAbsent(name, name);
+        return old != null ? old : name;
+    }
+
+    private static String[] layout(Collection<String> parameterNames) {
+        if (parameterNames.isEmpty())
+            return NO_PARAMETERS;
+        List<String> key = new ArrayList<>(parameterNames);
+        Collections.sort(key);
+        return layoutTable.computeIfAbsent(key, (list) -> {
+            String[] layout = new String[list.size()];
+            for (int i = 0; i < layout.length; i++)
+                layout[i] = intern(list.get(i));
+            return layout;
+        });
+    }
+
+    private static long stringMemory(String string) {
+        return STRING + 2L * string.length();
+    }
+
+    private static long arrayMemory(int length, int elementSize) {
+        return ARRAY_HEADER + (long) length * elementSize;
+    }
+
+    /**
+     * Converts a Girr Remote.
+     * @param remote
+     * @param compact If true, the Girr Commands having a protocol are not kept.
+     * @return new CompactRemote
+     */
+    static CompactRemote of(Remote remote, boolean compact) throws IrpException, IrCoreException, GirrException {
+        Builder builder = new Builder(remote.getMetaData(), remote.getComment(), remote.getCommands().size());
+        for (Command command : remote.getCommands().values()) {
+            String protocol = command.getProtocolName();
+            if (protocol == null)
+                builder.add(command);
+            else
+                builder.add(command.getName(), command.getComment(), protocol, command.getParameters(), command);
+        }
+        return builder.build(compact);
+    }
+
+    private final Remote.MetaData metaData;
+    private final String comment;
+    private final String[] commandNames;
+    private final String[] comments;    // null for commands without comment
+    private final String[] protocols;   // null for commands without protocol
+    private final String[][] layouts;   // parameter names
+    private final int[] offsets;        // of the parameter values in values
+    private final long[] values;
+    private final Command[] commands;   // in compact mode, only those without protocol
+    private final boolean compact;
+
+    private CompactRemote(Remote.MetaData metaData, String comment, String[] commandNames, String[] comments, String[] protocols,
+            String[][] layouts, int[] offsets, long[] values, Command[] commands, boolean compact) {
+        this.metaData = metaData;
+        this.comment = comment;
+        this.commandNames = commandNames;
+        this.comments = comments;
+        this.protocols = protocols;
+        this.layouts = layouts;
+        this.offsets = offsets;
+        this.values = values;
+        this.commands = commands;
+        this.compact = compact;
+    }
+
+    /**
+     * @param compact
+     * @return an equivalent remote with the given compactness; possibly this.
+     * @throws GirrException if the commands cannot be created.
+     */
+    CompactRemote withCompact(boolean compact) throws GirrException {
+        if (compact == this.compact)
+            return this;
+
+        Command[] newCommands = new Command[commands.length];
+        for (int i = 0; i < commands.length; i++)
+            newCommands[i] = protocols[i] == null ? commands[i]
+                    : compact ? null
+                    : newCommand(i);
+        return new CompactRemote(metaData, comment, commandNames, comments, protocols, layouts, offsets, values, newCommands, compact);
+    }
+
+    private Command newCommand(int index) throws GirrException {
+        return new Command(commandNames[index], comments[index], protocols[index], getParameters(index));
+    }
+
+    String getName() {
+        return metaData.getName();
+    }
+
+    Remote.MetaData getMetaData() {
+        return metaData;
+    }
+
+    /**
+     * @return the comment of the remote, or null.
+     */
+    String getComment() {
+        return comment;
+    }
+
+    boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * @return number of commands.
+     */
+    int size() {
+        return commandNames.length;
+    }
+
+    String getCommandName(int index) {
+        return commandNames[index];
+    }
+
+    /**
+     * @return the command names, sorted case insensitively.
+     */
+    List<String> getCommandNames() {
+        return Collections.unmodifiableList(Arrays.asList(commandNames));
+    }
+
+    /**
+     * Resolves a command name given by a prefix, like PrefixIndex.find.
+     * @param prefix
+     * @return index of the command, or PrefixIndex.NOT_FOUND or PrefixIndex.AMBIGUOUS.
+     */
+    int find(String prefix) {
+        return PrefixIndex.find(commandNames, prefix);
+    }
+
+    /**
+     * @param index
+     * @return the protocol name, or null if the command has no protocol.
+     */
+    String getProtocol(int index) {
+        return protocols[index];
+    }
+
+    /**
+     * @param index
+     * @return a new map of the parameters, empty if the command has no protocol.
+     */
+    Map<String, Long> getParameters(int index) {
+        String[] layout = layouts[index];
+        Map<String, Long> result = new HashMap<>(2 * layout.length);
+        for (int i = 0; i < layout.length; i++)
+            result.put(layout[i], values[offsets[index] + i]);
+        return result;
+    }
+
+    /**
+     * @param index
+     * @param parameterName case insensitive
+     * @return the value of the parameter, or null if the command has no such parameter.
+     */
+    Long getParameter(int index, String parameterName) {
+        String[] layout = layouts[index];
+        for (int i = 0; i < layout.length; i++)
+            if (layout[i].equalsIgnoreCase(parameterName))
+                return values[offsets[index] + i];
+        return null;
+    }
+
+    /**
+     * @param index
+     * @return the comment of the command, or null.
+     */
+    String getComment(int index) {
+        return comments[index];
+    }
+
+    /**
+     * Returns the command as a Girr Command, created if not kept.
+     * @param index
+     * @return Command
+     * @throws IrpException if the command cannot be created.
+     */
+    Command getCommand(int index) throws IrpException {
+        Command command = commands[index];
+        if (command != null)
+            return command;
+
+        try {
+            return newCommand(index);
+        } catch (GirrException ex) {
+            throw new IrpException(ex.getMessage());
+        }
+    }
+
+    IrSignal toIrSignal(int index) throws IrpException, IrCoreException {
+        return getCommand(index).toIrSignal();
+    }
+
+    /**
+     * @return the number of Girr Commands kept.
+     */
+    int getGirrCommandCount() {
+        int count = 0;
+        for (Command command : commands)
+            if (command != null)
+                count++;
+        return count;
+    }
+
+    /**
+     * @return a rough estimate of the heap used by this remote, in bytes.
+     * Interned names are not counted, the Girr Commands only by an estimate.
+     */
+    long memory() {
+        long bytes = OBJECT_HEADER + 9 * REFERENCE + 1 + META_DATA + stringMemory(getName());
+        if (comment != null)
+            bytes += stringMemory(comment);
+        bytes += arrayMemory(commandNames.length, REFERENCE);
+        for (String commandName : commandNames)
+            bytes += stringMemory(commandName);
+        bytes += arrayMemory(comments.length, REFERENCE);
+        for (String commandComment : comments)
+            if (commandComment != null)
+                bytes += stringMemory(commandComment);
+        bytes += arrayMemory(protocols.length, REFERENCE);
+        bytes += arrayMemory(layouts.length, REFERENCE);
+        bytes += arrayMemory(offsets.length, Integer.BYTES);
+        bytes += arrayMemory(values.length, Long.BYTES);
+        bytes += arrayMemory(commands.length, REFERENCE);
+        bytes += (long) getGirrCommandCount() * GIRR_COMMAND;
+        return bytes;
+    }
+
+    /**
+     * Collects the commands of a remote, in any order.
+     */
+    static final class Builder {
+
+        private final Remote.MetaData metaData;
+        private final String comment;
+        private final List<String> commandNames;
+        private final List<String> comments;
+        private final List<String> protocols;
+        private final List<Map<String, Long>> parameters;
+        private final List<Command> commands;
+
+        Builder(String name, int capacity) {
+            this(new Remote.MetaData(name), null, capacity);
+        }
+
+        /**
+         * @param metaData Meta data of the remote, containing at least its name.
+         * @param comment Comment of the remote, may be null.
+         * @param capacity
+         */
+        Builder(Remote.MetaData metaData, String comment, int capacity) {
+            this.metaData = metaData;
+            this.comment = comment;
+            commandNames = new ArrayList<>(capacity);
+            comments = new ArrayList<>(capacity);
+            protocols = new ArrayList<>(capacity);
+            parameters = new ArrayList<>(capacity);
+            commands = new ArrayList<>(capacity);
+        }
+
+        /**
+         * Adds a command in protocol/parameter form.
+         * @param commandName
+         * @param comment
+         * @param protocol
+         * @param parameters
+         * @param command The Girr Command, if available, otherwise null.
+         */
+        void add(String commandName, String comment, String protocol, Map<String, Long> parameters, Command command) {
+            commandNames.add(commandName);
+            comments.add(comment);
+            protocols.add(protocol);
+            this.parameters.add(parameters);
+            commands.add(command);
+        }
+
+        /**
+         * Adds a command without protocol.
+         * @param command
+         */
+        void add(Command command) {
+            add(command.getName(), command.getComment(), null, Collections.emptyMap(), command);
+        }
+
+        /**
+         * @param compact If true, Girr Commands are only kept for commands without protocol,
+         * otherwise they are created for the commands lacking them.
+         * @return the remote
+         * @throws GirrException if a command cannot be created.
+         */
+        CompactRemote build(boolean compact) throws GirrException {
+            int size = commandNames.size();
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++)
+                order[i] = i;
+            Arrays.sort(order, (i, j) -> String.CASE_INSENSITIVE_ORDER.compare(commandNames.get(i), commandNames.get(j)));
+
+            String[] sortedNames = new String[size];
+            String[] sortedComments = new String[size];
+            String[] sortedProtocols = new String[size];
+            String[][] sortedLayouts = new String[size][];
+            int[] offsets = new int[size];
+            Command[] sortedCommands = new Command[size];
+            int noValues = 0;
+            for (Map<String, Long> map : parameters)
+                noValues += map.size();
+            long[] values = new long[noValues];
+
+            int offset = 0;
+            for (int n = 0; n < size; n++) {
+                int i = order[n];
+                sortedNames[n] = commandNames.get(i);
+                sortedComments[n] = comments.get(i);
+                String protocol = protocols.get(i);
+                sortedProtocols[n] = protocol != null ? intern(protocol) : null;
+                Map<String, Long> map = parameters.get(i);
+                String[] layout = layout(map.keySet());
+                sortedLayouts[n] = layout;
+                offsets[n] = offset;
+                for (String parameter : layout)
+                    values[offset++] = map.get(parameter);
+                sortedCommands[n] = protocol == null || !compact ? commands.get(i) : null;
+            }
+
+            CompactRemote remote = new CompactRemote(metaData, comment, sortedNames, sortedComments, sortedProtocols, sortedLayouts, offsets, values, sortedCommands, compact);
+            if (!compact) { // create the missing commands, in the array now owned by remote
+                for (int n = 0; n < size; n++)
+                    if (sortedCommands[n] == null)
+                        sortedCommands[n] = remote.newCommand(n);
+            }
+            return remote;
+        }
+    }
+}
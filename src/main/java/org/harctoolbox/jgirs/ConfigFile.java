@@ -17,23 +17,42 @@ this program. If not, see http://www.gnu.org/licenses/.
 
 package org.harctoolbox.jgirs;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
 import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.xml.validation.Schema;
 import org.harctoolbox.girr.Command;
 import org.harctoolbox.girr.GirrException;
+import org.harctoolbox.girr.Remote;
 import org.harctoolbox.girr.RemoteSet;
 import org.harctoolbox.harchardware.HarcHardwareException;
 import org.harctoolbox.ircore.IrCoreException;
@@ -45,6 +64,8 @@ import static org.harctoolbox.jgirs.Utils.BOOLEAN;
 import static org.harctoolbox.jgirs.Utils.INT;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
@@ -56,101 +77,264 @@ public class ConfigFile {
     private static final String GIRR    = "girr";
     private static final String LIRCD   = "lircd";
     private static final String CSV     = "csv";
+    private static final String CSV_DIRECTORY = "csv-directory";
     private static final String TYPE    = "type";
 
-    private static RemoteSet parseRemoteSet(Element element) throws NoSuchRemoteTypeException, IOException, SAXException, ParseException, GirrException {
-        String type = element.getAttribute(TYPE).toLowerCase(Locale.US);
+    /**
+     * Name of the option containing the file name of the snapshot of the named remotes.
+     */
+    public static final String REMOTECACHE = "remoteCache";
+
+    /**
+     * Name of the option telling whether the named remotes are to be stored in compact mode, see CompactRemote.
+     */
+    public static final String COMPACTREMOTES = "compactRemotes";
+
+    private static final int MAX_LOADER_THREADS = 8;
+
+    private static final Logger logger = Logger.getLogger(ConfigFile.class.getName());
+
+    /**
+     * @param element
+     * @return the attributes of the element, so that it can be processed without the (not thread safe) DOM.
+     */
+    private static Map<String, String> attributes(Element element) {
+        NamedNodeMap nodeMap = element.getAttributes();
+        Map<String, String> result = new HashMap<>(nodeMap.getLength());
+        for (int i = 0; i < nodeMap.getLength(); i++) {
+            Node node = nodeMap.item(i);
+            result.put(node.getNodeName(), node.getNodeValue());
+        }
+        return result;
+    }
+
+    // Like Element.getAttribute: empty if absent
+    private static String attribute(Map<String, String> attributes, String name) {
+        return attributes.getOrDefault(name, "");
+    }
+
+    private static Collection<Remote> parseRemotes(Map<String, String> attributes) throws NoSuchRemoteTypeException, IOException, SAXException, ParseException, GirrException {
+        return attribute(attributes, TYPE).equalsIgnoreCase(CSV_DIRECTORY)
+                ? parseCsvDirectory(attributes)
+                : parseRemoteSet(attributes).getRemotes();
+    }
+
+    private static RemoteSet parseRemoteSet(Map<String, String> attributes) throws NoSuchRemoteTypeException, IOException, SAXException, ParseException, GirrException {
+        String type = attribute(attributes, TYPE).toLowerCase(Locale.US);
         switch (type) {
             case LIRCD:
-                return parseLirc(element);
+                return parseLirc(attributes);
             case GIRR:
             case "":
-                return parseGirr(element);
+                return parseGirr(attributes);
             case CSV:
-                return parseCsv(element);
+                return parseCsv(attributes);
             default:
                 throw new NoSuchRemoteTypeException(type);
         }
     }
 
-    private static RemoteSet parseLirc(Element element) throws MalformedURLException, IOException {
-        URL url = new URL(element.getAttribute(URL));
+    private static RemoteSet parseLirc(Map<String, String> attributes) throws MalformedURLException, IOException {
+        URL url = new URL(attribute(attributes, URL));
         InputStream inputStream = url.openStream();
         InputStreamReader reader = new InputStreamReader(inputStream, LIRC_ENCODING);
         return org.harctoolbox.jirc.ConfigFile.parseConfig(reader, url.toString(), true, null, false);
     }
 
-    private static RemoteSet parseGirr(Element element) throws IOException, SAXException, ParseException, GirrException {
-        URL url = new URL(element.getAttribute(URL));
+    private static RemoteSet parseGirr(Map<String, String> attributes) throws IOException, SAXException, ParseException, GirrException {
+        URL url = new URL(attribute(attributes, URL));
         Document doc = Utils.openXmlUrl(url, null, true, true);
         RemoteSet remoteSet = new RemoteSet(doc);
         return remoteSet;
     }
 
-    private static RemoteSet parseCsv(Element element) throws IOException, SAXException, ParseException, GirrException {
-        URL url = new URL(element.getAttribute(URL));
-        int commandNameColumn = Integer.parseInt(element.getAttribute("commandname"));
-        int protocolColumn = Integer.parseInt(element.getAttribute("protocol"));
-        int DColumn = Integer.parseInt(element.getAttribute("D"));
-        int SColumn = Integer.parseInt(element.getAttribute("S"));
-        int FColumn = Integer.parseInt(element.getAttribute("F"));
-        String separator = element.getAttribute("separator");
-        CsvImporter csvImporter = new CsvImporter(commandNameColumn, protocolColumn, DColumn, SColumn, FColumn, separator);
+    private static CsvImporter csvImporter(Map<String, String> attributes) {
+        int commandNameColumn = Integer.parseInt(attribute(attributes, "commandname"));
+        int protocolColumn = Integer.parseInt(attribute(attributes, "protocol"));
+        int DColumn = Integer.parseInt(attribute(attributes, "D"));
+        int SColumn = Integer.parseInt(attribute(attributes, "S"));
+        int FColumn = Integer.parseInt(attribute(attributes, "F"));
+        String separator = attribute(attributes, "separator");
+        return new CsvImporter(commandNameColumn, protocolColumn, DColumn, SColumn, FColumn, separator);
+    }
+
+    private static RemoteSet parseCsv(Map<String, String> attributes) throws IOException, SAXException, ParseException, GirrException {
+        URL url = new URL(attribute(attributes, URL));
+        CsvImporter csvImporter = csvImporter(attributes);
         InputStream inputStream = url.openStream();
         InputStreamReader reader = new InputStreamReader(inputStream, DEFAULT_ENCODING);
-        String name = element.getAttribute("name");
-        return csvImporter.parseRemoteSet(name, url.toString(), reader);
+        String name = attribute(attributes, "name");
+        RemoteSet remoteSet = csvImporter.parseRemoteSet(name, url.toString(), reader);
+        logCsvErrors(url.toString(), csvImporter);
+        return remoteSet;
+    }
+
+    private static void logCsvErrors(String source, CsvImporter csvImporter) {
+        if (csvImporter.getErrorCount() > 0)
+            logger.log(Level.WARNING, "{0}: {1} of {2} lines rejected, the first one being line {3}",
+                    new Object[]{source, csvImporter.getErrorCount(), csvImporter.getLineCount(), csvImporter.getFirstErrorLine()});
+    }
+
+    /**
+     * Reads all files with the given suffix (attribute suffix, default ".csv") in the directory tree
+     * given by the attribute url, which must denote a local directory. The files are read concurrently;
+     * every file becomes a remote, named by its path relative to the directory, without the suffix.
+     */
+    private static List<Remote> parseCsvDirectory(Map<String, String> attributes) throws IOException {
+        File directory = localFile(attribute(attributes, URL));
+        if (!directory.isDirectory())
+            throw new FileNotFoundException(directory + " is not a directory");
+
+        String suffix = attributes.getOrDefault("suffix", ".csv");
+        Path root = directory.toPath();
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(root)) {
+            files = stream.filter((path) -> Files.isRegularFile(path) && path.toString().endsWith(suffix)).sorted().collect(Collectors.toList());
+        }
+
+        CsvImporter prototype = csvImporter(attributes);
+        List<Callable<Remote>> tasks = new ArrayList<>(files.size());
+        files.forEach((path) -> {
+            tasks.add(() -> {
+                String relative = root.relativize(path).toString().replace(File.separatorChar, '/');
+                String name = relative.substring(0, relative.length() - suffix.length());
+                CsvImporter importer = prototype.copy();
+                try (Reader reader = Files.newBufferedReader(path, Charset.forName(DEFAULT_ENCODING))) {
+                    Remote remote = importer.parseFile(name, reader);
+                    logCsvErrors(path.toString(), importer);
+                    return remote;
+                }
+            });
+        });
+        List<Future<Remote>> futures = invokeAll("jgirs-csv", MAX_LOADER_THREADS, tasks);
+
+        List<Remote> result = new ArrayList<>(files.size());
+        int failed = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                result.add(futures.get(i).get());
+            } catch (ExecutionException ex) {
+                failed++;
+                logger.log(Level.WARNING, "Could not read {0}: {1}", new Object[]{files.get(i), ex.getCause().toString()});
+            } catch (InterruptedException ex) {
+                throw new InterruptedIOException(); // cannot happen, all are done
+            }
+        }
+        logger.log(Level.INFO, "{0}: {1} files read, {2} failed", new Object[]{directory, result.size(), failed});
+        return result;
+    }
+
+    // Accepts file: URLs as well as plain file names.
+    private static File localFile(String name) {
+        try {
+            URL url = new URL(name);
+            if (!url.getProtocol().equals("file"))
+                throw new IllegalArgumentException(CSV_DIRECTORY + " requires a local directory: " + name);
+            return new File(url.getPath());
+        } catch (MalformedURLException ex) {
+            return new File(name);
+        }
+    }
+
+    private static <T> List<Future<T>> invokeAll(String name, int maxThreads, List<? extends Callable<T>> tasks) throws InterruptedIOException {
+        try {
+            return Parallel.invokeAll(name, maxThreads, tasks);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading the configuration");
+        }
+    }
+
+    private static List<JniLibrary> jniLibraries(Element element) {
+        NodeList libList = element.getElementsByTagName("jni-lib");
+        List<JniLibrary> result = new ArrayList<>(libList.getLength());
+        for (int j = 0; j < libList.getLength(); j++) {
+            Element libElement = (Element) libList.item(j);
+            result.add(new JniLibrary(libElement.getAttribute("libpath"), libElement.getAttribute("libname")));
+        }
+        return result;
     }
 
     private final Map<String, GirsHardware> irHardware;
-    private RemoteCommandDataBase remoteCommandsDataBase;
+    private volatile RemoteCommandDataBase remoteCommandsDataBase;
     private final List<Module.ModulePars> moduleList;
     private final Map<String, Parameter> optionsList;
+    private final Map<String, Parameter> commandLineOptions; // override the file, also after reload
+    private final List<String> girrFiles; // from the command line, also read at reload
+    private Map<String, RemoteDataBaseSnapshot.Source> loadedSources; // by key, in document order
+    private IrpDatabase irpDatabase;
+    private String irpDatabaseName;
+    private String url;         // of the configuration file, if read from one
+    private Document document;  // otherwise, the document given
+    private String loadSummary;
 
     public ConfigFile() {
         remoteCommandsDataBase = new RemoteCommandDataBase(true);
         irHardware = new HashMap<>(8);
         moduleList = new ArrayList<>(4);
         optionsList = new HashMap<>(16);
+        commandLineOptions = new HashMap<>(8);
+        girrFiles = new ArrayList<>(0);
+        loadedSources = Collections.emptyMap();
+        irpDatabase = null;
+        irpDatabaseName = null;
+        url = null;
+        document = null;
+        loadSummary = "";
     }
 
     public ConfigFile(Document doc) throws ClassNotFoundException, NoSuchMethodException, InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, HarcHardwareException, IOException, NoSuchRemoteTypeException, SAXException, ParseException, NonUniqueHardwareName, IrpParseException, GirrException, IrpException, IrCoreException {
+        this(doc, false, Collections.emptyList());
+    }
+
+    /**
+     * @param doc
+     * @param rebuildCache If true, the named remotes are read from their sources, even if there is an up-to-date snapshot.
+     * @param overrides Options, e.g. from the command line, overriding those of the document, also after a reload.
+     * They are in effect already when the named remotes are read, so that for example irpProtocolsXml is obeyed.
+     */
+    public ConfigFile(Document doc, boolean rebuildCache, Collection<Parameter> overrides) throws ClassNotFoundException, NoSuchMethodException, InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, HarcHardwareException, IOException, NoSuchRemoteTypeException, SAXException, ParseException, NonUniqueHardwareName, IrpParseException, GirrException, IrpException, IrCoreException {
         this();
+        document = doc;
+        overrides.forEach((parameter) -> {
+            commandLineOptions.put(parameter.getName(), parameter);
+        });
+        optionsList.putAll(commandLineOptions);
         if (doc == null)
             return;
 
+        readOptions(doc);
 
-        NodeList nodeList = doc.getElementsByTagName("option");
+        // The slow parts, instantiating hardware and reading named remotes, are done concurrently.
+        // The DOM is read here, since it is not thread safe.
+        NodeList nodeList = doc.getElementsByTagName("hardware-item");
+        List<Callable<GirsHardware>> hardwareTasks = new ArrayList<>(nodeList.getLength());
+        Set<String> hardwareNames = new HashSet<>(nodeList.getLength());
         for (int i = 0; i < nodeList.getLength(); i++) {
-            Element e = (Element) nodeList.item(i);
-            String name = e.getAttribute("name");
-            String type = e.getAttribute(TYPE);
-            String value = e.getTextContent();
-            Parameter parameter = type.equals(INT) ? new IntegerParameter(name, Integer.parseInt(value), null)
-                    : type.equals(BOOLEAN)         ? new BooleanParameter(name, Boolean.parseBoolean(value), null)
-                    :                                new StringParameter(name, value, null);
-            optionsList.put(parameter.getName(), parameter);
+            Element el = (Element) nodeList.item(i);
+            List<JniLibrary> libraries = jniLibraries(el);
+            GirsHardware.HardwarePars hardwarePars = new GirsHardware.HardwarePars(el);
+            if (!hardwareNames.add(hardwarePars.getName()))
+                throw new NonUniqueHardwareName(hardwarePars.getName());
+            hardwareTasks.add(() -> {
+                libraries.forEach(JniLibrary::load);
+                return new GirsHardware(hardwarePars);
+            });
         }
+        List<Future<GirsHardware>> hardwareFutures = invokeAll("jgirs-hardware", hardwareTasks.size(), hardwareTasks);
 
-        nodeList = doc.getElementsByTagName("hardware-item");
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            Element el = (Element) nodeList.item(i);
-            loadJni(el);
-            GirsHardware hw = new GirsHardware(el);
+        File snapshot = getSnapshotFile();
+        Map<String, RemoteDataBaseSnapshot.Source> previous = rebuildCache || snapshot == null
+                ? Collections.emptyMap() : RemoteDataBaseSnapshot.read(snapshot, isCompactRemotes());
+        remoteCommandsDataBase = readNamedRemotes(doc, previous, false);
+
+        // An error in the hardware is fatal; the first one in document order is reported.
+        for (Future<GirsHardware> future : hardwareFutures) {
+            GirsHardware hw = getHardware(future);
             hw.getHardware().setVerbose(((BooleanParameter) optionsList.get(VERBOSITY)).getValue());
-            if (irHardware.containsKey(hw.getName()))
-                throw new NonUniqueHardwareName(hw.getName());
             irHardware.put(hw.getName(), hw);
         }
 
-        IrpDatabase irpDatabase = new IrpDatabase(optionsList.get(Parameters.IRPPROTOCOLSXML).get());
-        Command.setIrpMaster(irpDatabase); // needed for CSV import
-        nodeList = doc.getElementsByTagName("named-remote");
-        ArrayList<RemoteSet> remoteSetList = new ArrayList<>(nodeList.getLength());
-        for (int i = 0; i < nodeList.getLength(); i++)
-            remoteSetList.add(parseRemoteSet((Element) nodeList.item(i)));
-        remoteCommandsDataBase = new RemoteCommandDataBase(remoteSetList, true);
-
         nodeList = doc.getElementsByTagName("module");
         for (int i = 0; i < nodeList.getLength(); i++) {
             Element el = (Element) nodeList.item(i);
@@ -161,7 +345,17 @@ public class ConfigFile {
     }
 
     public ConfigFile(String url) throws SAXException, NoSuchMethodException, ClassNotFoundException, InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, HarcHardwareException, NoSuchRemoteTypeException, ParseException, IOException, NonUniqueHardwareName, IrpParseException, GirrException, IrpException, IrCoreException {
-        this(url != null ? Utils.openXmlUrl(url, (Schema) null, false, true) : null);
+        this(url, false, Collections.emptyList());
+    }
+
+    /**
+     * @param url
+     * @param rebuildCache If true, the named remotes are read from their sources, even if there is an up-to-date snapshot.
+     * @param overrides Options overriding those of the file, see ConfigFile(Document, boolean, Collection).
+     */
+    public ConfigFile(String url, boolean rebuildCache, Collection<Parameter> overrides) throws SAXException, NoSuchMethodException, ClassNotFoundException, InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, HarcHardwareException, NoSuchRemoteTypeException, ParseException, IOException, NonUniqueHardwareName, IrpParseException, GirrException, IrpException, IrCoreException {
+        this(url != null ? Utils.openXmlUrl(url, (Schema) null, false, true) : null, rebuildCache, overrides);
+        this.url = url;
     }
 
     /**
@@ -171,6 +365,171 @@ public class ConfigFile {
         return irHardware.values();
     }
 
+    /**
+     * Reads the options and the named remotes anew from the configuration file, building a new data base.
+     * The old data base is not modified, so its current users can continue to use it.
+     * Named remotes whose sources are unchanged are taken over from the old data base, unless all is true.
+     * Hardware and modules are not affected.
+     * @param all If true, all named remotes are read from their sources.
+     */
+    public synchronized void reload(boolean all) throws IOException, SAXException, IrpParseException, IrpException, IrCoreException, ParseException, GirrException {
+        Document doc = url != null ? Utils.openXmlUrl(url, (Schema) null, false, true) : document;
+        if (doc != null)
+            readOptions(doc);
+        remoteCommandsDataBase = readNamedRemotes(doc, loadedSources, all);
+    }
+
+    /**
+     * @return a summary of the last reading of the named remotes.
+     */
+    public String getLoadSummary() {
+        return loadSummary;
+    }
+
+    private void readOptions(Document doc) {
+        optionsList.clear();
+        NodeList nodeList = doc.getElementsByTagName("option");
+        for (int i = 0; i < nodeList.getLength(); i++) {
+            Element e = (Element) nodeList.item(i);
+            String name = e.getAttribute("name");
+            String type = e.getAttribute(TYPE);
+            String value = e.getTextContent();
+            Parameter parameter = type.equals(INT) ? new IntegerParameter(name, Integer.parseInt(value), null)
+                    : type.equals(BOOLEAN)         ? new BooleanParameter(name, Boolean.parseBoolean(value), null)
+                    :                                new StringParameter(name, value, null);
+            optionsList.put(parameter.getName(), parameter);
+        }
+        optionsList.putAll(commandLineOptions);
+    }
+
+    // Returns the previous version of a source if it can be used as it is, possibly converted; otherwise null.
+    private static RemoteDataBaseSnapshot.Source reusable(RemoteDataBaseSnapshot.Source old, long stamp, boolean all, boolean compact) {
+        if (all || old == null || old.getStamp() != stamp)
+            return null;
+        try {
+            return old.withCompact(compact);
+        } catch (GirrException ex) {
+            return null; // read it anew
+        }
+    }
+
+    private boolean isCompactRemotes() {
+        Parameter option = optionsList.get(COMPACTREMOTES);
+        return option != null && Boolean.parseBoolean(option.get());
+    }
+
+    private File getSnapshotFile() {
+        Parameter option = optionsList.get(REMOTECACHE);
+        return option == null || option.get().isEmpty() ? null : new File(option.get());
+    }
+
+    /**
+     * Builds a data base from the named remotes of the document and the Girr files from the command line.
+     * @param doc Configuration, possibly null.
+     * @param previous Sources read before, from the snapshot or the previous load, by their keys.
+     * @param all If true, all sources are read, otherwise only those not in previous, or changed since.
+     */
+    private RemoteCommandDataBase readNamedRemotes(Document doc, Map<String, RemoteDataBaseSnapshot.Source> previous, boolean all) throws IOException, IrpParseException, IrpException, IrCoreException, ParseException, SAXException, GirrException {
+        Command.setIrpMaster(getIrpDatabase()); // needed for CSV import
+        List<Map<String, String>> sources = new ArrayList<>(8);
+        if (doc != null) {
+            NodeList nodeList = doc.getElementsByTagName("named-remote");
+            for (int i = 0; i < nodeList.getLength(); i++)
+                sources.add(attributes((Element) nodeList.item(i)));
+        }
+        Map<String, RemoteDataBaseSnapshot.Source> current = readSources(sources, previous, all);
+
+        RemoteCommandDataBase database = new RemoteCommandDataBase(true, getIrpDatabase(), isCompactRemotes());
+        for (RemoteDataBaseSnapshot.Source source : current.values())
+            database.addRemotes(source.getRemotes());
+        database.add(girrFiles);
+        database.buildIndexes(); // before it is put into use
+        loadedSources = current;
+        return database;
+    }
+
+    /**
+     * Reads the changed sources concurrently. The result is in the order of the argument,
+     * independent of the order the sources finish. A source that cannot be read is logged,
+     * and its previous version is used, if there is one.
+     * If all sources could be read, and something has changed, the snapshot is written.
+     */
+    private Map<String, RemoteDataBaseSnapshot.Source> readSources(List<Map<String, String>> sources,
+            Map<String, RemoteDataBaseSnapshot.Source> previous, boolean all) throws InterruptedIOException {
+        Map<String, RemoteDataBaseSnapshot.Source> result = new LinkedHashMap<>(2 * sources.size());
+        List<String> keys = new ArrayList<>(sources.size());
+        List<Long> stamps = new ArrayList<>(sources.size());
+        List<Callable<List<CompactRemote>>> tasks = new ArrayList<>(sources.size());
+        boolean compact = isCompactRemotes();
+        for (Map<String, String> attributes : sources) {
+            String key = RemoteDataBaseSnapshot.key(attributes);
+            long stamp = RemoteDataBaseSnapshot.stamp(attributes, URL); // before reading, so that a concurrent change is noticed next time
+            RemoteDataBaseSnapshot.Source old = reusable(previous.get(key), stamp, all, compact);
+            if (old != null)
+                result.put(key, old);
+            else if (!result.containsKey(key)) {
+                result.put(key, null); // reserves the position
+                keys.add(key);
+                stamps.add(stamp);
+                tasks.add(() -> {
+                    Collection<Remote> remotes = parseRemotes(attributes);
+                    List<CompactRemote> list = new ArrayList<>(remotes.size());
+                    for (Remote remote : remotes)
+                        list.add(CompactRemote.of(remote, compact));
+                    return list;
+                });
+            }
+        }
+        List<Future<List<CompactRemote>>> futures = invokeAll("jgirs-load", MAX_LOADER_THREADS, tasks);
+
+        int failed = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            String key = keys.get(i);
+            try {
+                result.put(key, new RemoteDataBaseSnapshot.Source(stamps.get(i), futures.get(i).get()));
+            } catch (ExecutionException ex) {
+                failed++;
+                RemoteDataBaseSnapshot.Source old = previous.get(key);
+                logger.log(Level.WARNING, "Could not load named-remote {0}: {1}{2}",
+                        new Object[]{key, ex.getCause().toString(), old != null ? "; keeping the previous version" : ""});
+                if (old != null)
+                    result.put(key, old); // with its old stamp, so that it is tried again
+                else
+                    result.remove(key);
+            } catch (InterruptedException ex) {
+                throw new InterruptedIOException(); // cannot happen, all are done
+            }
+        }
+
+        loadSummary = String.format("named remotes: %d sources, %d read, %d unchanged, %d failed",
+                sources.size(), futures.size() - failed, result.size() - futures.size() + failed, failed);
+        logger.info(loadSummary);
+
+        File snapshot = getSnapshotFile();
+        if (snapshot != null && failed == 0 && (!futures.isEmpty() || !result.keySet().equals(previous.keySet()))
+                && RemoteDataBaseSnapshot.write(snapshot, result))
+            logger.log(Level.INFO, "Snapshot {0} written", snapshot);
+        return result;
+    }
+
+    /**
+     * Returns the protocol data base, to be shared by all users.
+     * It is read from the option irpProtocolsXml, or, if that is empty, the built-in one is used.
+     * If the option has been changed since the data base was read, it is read anew.
+     * @return the IrpDatabase, non-null.
+     * @throws IOException
+     * @throws IrpParseException
+     */
+    public synchronized IrpDatabase getIrpDatabase() throws IOException, IrpParseException {
+        Parameter option = optionsList.get(Parameters.IRPPROTOCOLSXML);
+        String name = option == null || option.get().isEmpty() ? null : option.get();
+        if (irpDatabase == null || !Objects.equals(name, irpDatabaseName)) {
+            irpDatabase = new IrpDatabase(name);
+            irpDatabaseName = name;
+        }
+        return irpDatabase;
+    }
+
     /**
      * @return the remoteCommandsDataBase
      */
@@ -186,33 +545,59 @@ public class ConfigFile {
     }
 
     void setStringOption(String name, String value) {
-        StringParameter parameter = (StringParameter) optionsList.get(name);
-        parameter.set(value);
+        setOption(new StringParameter(name, value, null));
     }
 
     void setIntegerOption(String name, int value) {
-        IntegerParameter parameter = (IntegerParameter) optionsList.get(name);
-        parameter.set(value);
+        setOption(new IntegerParameter(name, value, null));
     }
 
     void setBooleanOption(String name, boolean value) {
-        BooleanParameter parameter = (BooleanParameter) optionsList.get(name);
-        parameter.set(value);
+        setOption(new BooleanParameter(name, value, null));
+    }
+
+    // Options from the command line are kept, so that they override the file also after a reload.
+    private synchronized void setOption(Parameter parameter) {
+        commandLineOptions.put(parameter.getName(), parameter);
+        optionsList.put(parameter.getName(), parameter);
     }
 
-    void addGirr(List<String> girr) throws ParseException, IOException, SAXException, IrCoreException, IrpException, GirrException {
+    synchronized void addGirr(List<String> girr) throws ParseException, IOException, SAXException, IrCoreException, IrpException, GirrException {
         remoteCommandsDataBase.add(girr);
+        remoteCommandsDataBase.buildIndexes();
+        girrFiles.addAll(girr);
     }
 
     private void loadJni(Element el) {
-        NodeList libList = el.getElementsByTagName("jni-lib");
-        for (int j = 0; j < libList.getLength(); j++) {
-            Element libElement = (Element) libList.item(j);
-            String path = libElement.getAttribute("libpath");
-            if (path.isEmpty())
-                System.loadLibrary(libElement.getAttribute("libname"));
-            else
-                System.load(path);
+        jniLibraries(el).forEach(JniLibrary::load);
+    }
+
+    private static GirsHardware getHardware(Future<GirsHardware> future) throws ClassNotFoundException, NoSuchMethodException, InstantiationException, IllegalAccessException, InvocationTargetException, HarcHardwareException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException(); // cannot happen, all are done
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof ClassNotFoundException)
+                throw (ClassNotFoundException) cause;
+            if (cause instanceof NoSuchMethodException)
+                throw (NoSuchMethodException) cause;
+            if (cause instanceof InstantiationException)
+                throw (InstantiationException) cause;
+            if (cause instanceof IllegalAccessException)
+                throw (IllegalAccessException) cause;
+            if (cause instanceof InvocationTargetException)
+                throw (InvocationTargetException) cause;
+            if (cause instanceof HarcHardwareException)
+                throw (HarcHardwareException) cause;
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
         }
     }
 
@@ -220,6 +605,24 @@ public class ConfigFile {
         return optionsList.values();
     }
 
+    private static class JniLibrary {
+
+        private final String path;
+        private final String name;
+
+        JniLibrary(String path, String name) {
+            this.path = path;
+            this.name = name;
+        }
+
+        void load() {
+            if (path.isEmpty())
+                System.loadLibrary(name);
+            else
+                System.load(path);
+        }
+    }
+
     public static class NoSuchRemoteTypeException extends JGirsException {
 
         public NoSuchRemoteTypeException(String type) {
@@ -0,0 +1,113 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the configuration file, and reloads it when it has been changed.
+ * Editors typically write a file in several steps, so the reload is done first
+ * when the file has been quiet for a while.
+ */
+final class ConfigWatcher implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(ConfigWatcher.class.getName());
+
+    private static final long QUIET_PERIOD = 500L; // milliseconds
+
+    private final Engine engine;
+    private final Path directory;
+    private final Path fileName;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    /**
+     * Starts watching.
+     * @param engine Engine to reload.
+     * @param file Configuration file; must be a local file.
+     * @throws IOException
+     */
+    ConfigWatcher(Engine engine, File file) throws IOException {
+        this.engine = engine;
+        Path path = file.getAbsoluteFile().toPath();
+        directory = path.getParent();
+        fileName = path.getFileName();
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = new Thread(this::watch, "jgirs-config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = pollEvents(key);
+                // Wait until the writing is finished
+                while (changed) {
+                    key = watchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS);
+                    if (key == null)
+                        break;
+                    pollEvents(key);
+                }
+                if (changed)
+                    reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // closed, terminate
+        }
+    }
+
+    private boolean pollEvents(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents())
+            if (fileName.equals(event.context()))
+                changed = true;
+        key.reset();
+        return changed;
+    }
+
+    private void reload() {
+        try {
+            logger.log(Level.INFO, "{0} changed, reloading", directory.resolve(fileName));
+            logger.info(engine.reload(false));
+        } catch (Exception ex) {
+            // The server continues with the old configuration
+            logger.log(Level.WARNING, "Reload failed: {0}", ex.toString());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+}
@@ -23,12 +23,19 @@ import java.io.Reader;
 import java.text.ParseException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.TreeMap;
 import org.harctoolbox.girr.Command;
 import org.harctoolbox.girr.GirrException;
 import org.harctoolbox.girr.Remote;
 import org.harctoolbox.girr.RemoteSet;
 
+/**
+ * Imports commands in protocol/parameter form from CSV files, one command per line,
+ * as for example in <a href="https://github.com/probonopd/irdb">IRDB</a>.
+ * A field may be enclosed in double quotes, and then contain the separator; a doubled quote inside stands for a quote.
+ * An empty parameter field is taken as absent, like a negative value.
+ * Lines that cannot be parsed are counted and skipped; a first such line is taken as a header, and not counted.
+ * An instance may be used for several files, but not concurrently.
+ */
 public class CsvImporter {
 
     private static final int INVALID = -1;
@@ -38,12 +45,17 @@ public class CsvImporter {
     private static final String D = "D";
     private static final String S = "S";
     private static final String F = "F";
+    private static final char QUOTE = '"';
 
     private static void getParam(Map<String, Long> parameters, String parameterName, int column, String[] chunks) {
         if (column <= 0)
             return;
 
-        long value = Long.parseLong(chunks[column-1]);
+        String chunk = chunks[column-1];
+        if (chunk.isEmpty())
+            return;
+
+        long value = Long.parseLong(chunk);
         if (value >= 0)
             parameters.put(parameterName, value);
     }
@@ -55,12 +67,16 @@ public class CsvImporter {
     }
 
     // First column is called 1, not 0.
-    private int commandNameColumn;
-    private int protocolColumn;
-    private int dColumn;
-    private int sColumn;
-    private int fColumn;
-    private String separator;
+    private final int commandNameColumn;
+    private final int protocolColumn;
+    private final int dColumn;
+    private final int sColumn;
+    private final int fColumn;
+    private final String separator;
+    private final String[] chunks; // the columns used, reused between lines
+    private int lineCount;
+    private int errorCount;
+    private int firstErrorLine;
 
     public CsvImporter(int commandNameColumn, int protocolColumn,
             int dColumn, int sColumn, int fColumn, String separator) {
@@ -69,49 +85,138 @@ public class CsvImporter {
         this.dColumn = dColumn;
         this.sColumn = sColumn;
         this.fColumn = fColumn;
-        this.separator = separator;
+        this.separator = separator == null || separator.isEmpty() ? DEFAULT_SEPARATOR : separator;
+        this.chunks = new String[Math.max(Math.max(commandNameColumn, protocolColumn), Math.max(dColumn, Math.max(sColumn, fColumn)))];
     }
 
     public CsvImporter() {
         this(1, 2, 3, 4, 5, DEFAULT_SEPARATOR);
     }
 
-    private Command parseLine(String line) throws GirrException, ParseException {
-        String[] chunks = line.split(separator);
-        try {
-            String protocol = protocolColumn > 0 ? chunks[protocolColumn - 1] : NOPROTOCOL;
-            Map<String, Long> parameters = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
-            getParam(parameters, D, dColumn, chunks);
-            getParam(parameters, S, sColumn, chunks);
-            getParam(parameters, F, fColumn, chunks);
-            String commandName = commandNameColumn > 0 ? chunks[commandNameColumn - 1] : dummyName(parameters);
-            return new Command(commandName, null, protocol, parameters);
-        } catch (IndexOutOfBoundsException ex) {
-            throw new ParseException("Could not parse string: " + line, 0);
+    /**
+     * @return a new importer with the same columns and separator, for use in another thread.
+     */
+    public CsvImporter copy() {
+        return new CsvImporter(commandNameColumn, protocolColumn, dColumn, sColumn, fColumn, separator);
+    }
+
+    /**
+     * Splits the line into chunks, as far as needed. The separator is taken literally, not as a regular expression.
+     * @return number of chunks found, at most chunks.length.
+     */
+    private int split(String line) throws ParseException {
+        int count = 0;
+        int start = 0;
+        while (count < chunks.length) {
+            int end;
+            if (start < line.length() && line.charAt(start) == QUOTE) {
+                end = unquote(line, start, count++);
+                if (end == line.length())
+                    break;
+                if (!line.startsWith(separator, end))
+                    throw new ParseException("Separator expected after quoted field: " + line, end);
+            } else {
+                end = line.indexOf(separator, start);
+                if (end < 0) {
+                    chunks[count++] = line.substring(start);
+                    break;
+                }
+                chunks[count++] = line.substring(start, end);
+            }
+            start = end + separator.length();
+        }
+        return count;
+    }
+
+    /**
+     * Stores the quoted field starting at start, without its quotes, as chunks[index].
+     * @return position after the closing quote.
+     */
+    private int unquote(String line, int start, int index) throws ParseException {
+        StringBuilder chunk = new StringBuilder(16);
+        int pos = start + 1;
+        while (true) {
+            int quote = line.indexOf(QUOTE, pos);
+            if (quote < 0)
+                throw new ParseException("Unterminated quote: " + line, start);
+            chunk.append(line, pos, quote);
+            if (quote + 1 < line.length() && line.charAt(quote + 1) == QUOTE) {
+                chunk.append(QUOTE);
+                pos = quote + 2;
+            } else {
+                chunks[index] = chunk.toString();
+                return quote + 1;
+            }
         }
     }
 
+    private Command parseLine(String line) throws GirrException, ParseException {
+        int noChunks = split(line);
+        if (noChunks < chunks.length)
+            throw new ParseException("Too few columns: " + line, 0);
+
+        String protocol = protocolColumn > 0 ? chunks[protocolColumn - 1] : NOPROTOCOL;
+        Map<String, Long> parameters = new HashMap<>(4);
+        getParam(parameters, D, dColumn, chunks);
+        getParam(parameters, S, sColumn, chunks);
+        getParam(parameters, F, fColumn, chunks);
+        String commandName = commandNameColumn > 0 ? chunks[commandNameColumn - 1] : dummyName(parameters);
+        return new Command(commandName, null, protocol, parameters);
+    }
+
     public Remote parseFile(String remoteName, Reader reader) throws IOException, GirrException  {
-        Map<String, Command> commands = new HashMap<>(16);
+        Map<String, Command> commands = new HashMap<>(64);
+        lineCount = 0;
+        errorCount = 0;
+        firstErrorLine = INVALID;
         try (BufferedReader in = new BufferedReader(reader)) {
-
             while (true) {
                 String line = in.readLine();
                 if (line == null)
                     break;
 
+                lineCount++;
+                if (line.isEmpty())
+                    continue;
+
                 try {
                     Command command = parseLine(line);
                     commands.put(command.getName(), command);
-                } catch (NumberFormatException | ParseException ex) {
+                } catch (NumberFormatException | ParseException | GirrException ex) {
+                    if (lineCount > 1) {
+                        errorCount++;
+                        if (firstErrorLine == INVALID)
+                            firstErrorLine = lineCount;
+                    }
                 }
             }
         }
-        return new Remote(new Remote.MetaData(remoteName), null, null, commands, null);
+        return new Remote(new Remote.MetaData(remoteName != null ? remoteName : UNNAMED), null, null, commands, null);
     }
 
     public RemoteSet parseRemoteSet(String remoteName, String source, Reader reader) throws IOException, GirrException {
         Remote remote = parseFile(remoteName, reader);
         return new RemoteSet(null, source, remote);
     }
+
+    /**
+     * @return number of lines read by the last parse.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return number of lines rejected by the last parse, not counting a header.
+     */
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return number of the first rejected line of the last parse (1-based), or -1 if none.
+     */
+    public int getFirstErrorLine() {
+        return firstErrorLine;
+    }
 }
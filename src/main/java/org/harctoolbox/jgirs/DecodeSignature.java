@@ -0,0 +1,99 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.util.Arrays;
+
+/**
+ * Signature of a received sequence, equal for sequences that differ only by measuring jitter.
+ * The durations are grouped into classes: sorted, a new class begins where a duration is more than
+ * CLASS_RATIO times the preceding one. The signature consists of the class of every duration, together
+ * with the mean of every class, quantized on a logarithmic scale. Since the means are averaged
+ * over many durations, they vary much less than the individual durations between captures.
+ * (A mean close to the boundary of a quantum can still fall on either side; the signatures then differ,
+ * which only costs a new decoding.)
+ * A context, like the parameters used for decoding, can be included.
+ */
+final class DecodeSignature {
+
+    private static final double CLASS_RATIO = 1.3;
+    private static final double QUANTUM = Math.log(1.125);
+
+    /**
+     * @param durations
+     * @param context Additional values, that must be equal for two signatures to be equal.
+     * @return the signature, or null if the sequence is empty or has too many classes.
+     */
+    static DecodeSignature of(int[] durations, int... context) {
+        if (durations.length == 0)
+            return null;
+
+        int[] sorted = durations.clone();
+        Arrays.sort(sorted);
+        int[] lower = new int[Math.min(sorted.length, Byte.MAX_VALUE + 1)];
+        long[] sums = new long[lower.length];
+        int[] counts = new int[lower.length];
+        int classes = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] > CLASS_RATIO * sorted[i - 1]) {
+                if (classes == lower.length)
+                    return null;
+                lower[classes++] = sorted[i];
+            }
+            sums[classes - 1] += sorted[i];
+            counts[classes - 1]++;
+        }
+
+        byte[] symbols = new byte[durations.length];
+        for (int i = 0; i < durations.length; i++) {
+            int position = Arrays.binarySearch(lower, 0, classes, durations[i]);
+            symbols[i] = (byte) (position >= 0 ? position : -position - 2);
+        }
+
+        int[] means = Arrays.copyOf(context, context.length + classes);
+        for (int c = 0; c < classes; c++)
+            means[context.length + c] = (int) Math.floor(Math.log(Math.max((double) sums[c] / counts[c], 1.0)) / QUANTUM);
+
+        return new DecodeSignature(symbols, means);
+    }
+
+    private final byte[] symbols;
+    private final int[] means; // context first
+    private final int hash;
+
+    private DecodeSignature(byte[] symbols, int[] means) {
+        this.symbols = symbols;
+        this.means = means;
+        this.hash = 31 * Arrays.hashCode(symbols) + Arrays.hashCode(means);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof DecodeSignature))
+            return false;
+        DecodeSignature other = (DecodeSignature) obj;
+        return hash == other.hash && Arrays.equals(means, other.means) && Arrays.equals(symbols, other.symbols);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
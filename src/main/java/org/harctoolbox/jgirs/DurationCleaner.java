@@ -0,0 +1,69 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.util.Arrays;
+
+/**
+ * Cleans a received sequence from measuring jitter: the durations are clustered,
+ * and every duration is replaced by the centre (mean) of its cluster.
+ * Sorted, a new cluster begins where a duration exceeds the preceding one by more than the tolerance;
+ * thus the durations of a cluster may together span more than the tolerance, as long as there is no gap.
+ */
+final class DurationCleaner {
+
+    /**
+     * @param durations
+     * @param tolerance Relative gap between clusters, e.g. 0.3.
+     * @return the cleaned durations, as a new array of the same length.
+     */
+    static int[] clean(int[] durations, double tolerance) {
+        if (durations.length == 0)
+            return new int[0];
+
+        int[] sorted = durations.clone();
+        Arrays.sort(sorted);
+        int[] lower = new int[sorted.length];
+        int[] centres = new int[sorted.length];
+        int clusters = 0;
+        long sum = 0L;
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] > (1 + tolerance) * sorted[i - 1]) {
+                if (clusters > 0)
+                    centres[clusters - 1] = (int) Math.round((double) sum / count);
+                lower[clusters++] = sorted[i];
+                sum = 0L;
+                count = 0;
+            }
+            sum += sorted[i];
+            count++;
+        }
+        centres[clusters - 1] = (int) Math.round((double) sum / count);
+
+        int[] result = new int[durations.length];
+        for (int i = 0; i < durations.length; i++) {
+            int position = Arrays.binarySearch(lower, 0, clusters, durations[i]);
+            result[i] = centres[position >= 0 ? position : -position - 2];
+        }
+        return result;
+    }
+
+    private DurationCleaner() {
+    }
+}
@@ -31,17 +31,24 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.harctoolbox.girr.GirrException;
 import org.harctoolbox.harchardware.HarcHardwareException;
 import org.harctoolbox.harchardware.ICommandExecutor;
 import org.harctoolbox.ircore.IrCoreException;
+import org.harctoolbox.irp.IrpDatabase;
 import org.harctoolbox.irp.IrpException;
 import org.harctoolbox.irp.IrpParseException;
 import static org.harctoolbox.jgirs.Parameters.VERBOSITY;
 import org.xml.sax.SAXException;
 
+/**
+ * The command engine. It is not synchronized as a whole: commands for
+ * different hardware execute in parallel, while every GirsHardware serializes
+ * its own use through its lock. Commands not touching hardware take no lock at all.
+ */
 public final class Engine implements ICommandExecutor, Closeable {
 
     private static volatile Engine instance = null;
@@ -68,19 +75,22 @@ public final class Engine implements ICommandExecutor, Closeable {
     }
 
     private final TreeMap<String, GirsHardware> irHardware;
+    private final PrefixIndex<GirsHardware> hardwareIndex;
     private final TreeMap<String, Module> modules;
 
+    private final ConfigFile config;
+    private final Object reloadLock = new Object();
+    private volatile IrpDatabase irpDatabase = null; // shared by all modules
     private Renderer renderer = null;
     private Irp irp = null;
 
-    private final List<String> outBuffer;
-
     private Engine(ConfigFile config) throws FileNotFoundException {
-        outBuffer = new ArrayList<>(8);
+        this.config = config;
         irHardware = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
         config.getIrHardware().stream().forEach((GirsHardware hw) -> {
             irHardware.put(hw.getName(), hw);
         });
+        hardwareIndex = new PrefixIndex<>(irHardware);
 
         modules = new TreeMap<>();
 
@@ -94,12 +104,15 @@ public final class Engine implements ICommandExecutor, Closeable {
                 Utils.sortedString(irHardware.keySet(), " "), "List of available hardware"));
 
         registerModule(Base.newBase());
+        registerModule(Caches.newCaches());
 
         try {
-            renderer = new Renderer(Parameters.getInstance().getString(Parameters.IRPPROTOCOLSXML));
+            irpDatabase = config.getIrpDatabase();
+            renderer = new Renderer(irpDatabase);
             registerModule(renderer);
-        } catch (NoSuchParameterException | IOException | IrpParseException ex) {
-            logger.log(Level.WARNING, Parameters.IRPPROTOCOLSXML + " not defined; rendering will not be available");
+        } catch (IOException | IrpParseException ex) {
+            logger.log(Level.WARNING, "{0} could not be read ({1}); rendering and decoding will not be available",
+                    new Object[]{Parameters.IRPPROTOCOLSXML, ex.getMessage()});
         }
 
         if (config.getRemoteCommandsDataBase() != null)
@@ -111,7 +124,9 @@ public final class Engine implements ICommandExecutor, Closeable {
         registerModule(Transmit.newTransmit(renderer, irp));
         registerModule(Transmitters.newTransmittersModule());
         registerModule(Capture.newCapture());
-        registerModule(Receive.newReceive());
+        registerModule(Receive.newReceive(irpDatabase));
+        registerModule(Subscribe.newSubscribe());
+        registerModule(Reload.newReload());
 
         config.getModuleList().stream().forEach((module) -> {
             try {
@@ -121,41 +136,104 @@ public final class Engine implements ICommandExecutor, Closeable {
             }
         });
 
-        irHardware.values().forEach((GirsHardware ghw) -> {
-            if (ghw.isImmediateOpen()) {
-                ghw.getHardware().setVerbose(isVerbosity());
+        openImmediately();
+    }
+
+    // Opens the immediate-open hardware, all concurrently.
+    private void openImmediately() {
+        boolean verbose = isVerbosity();
+        List<Callable<Void>> tasks = new ArrayList<>(irHardware.size());
+        irHardware.values().stream().filter(GirsHardware::isImmediateOpen).forEach((GirsHardware ghw) -> {
+            tasks.add(() -> {
+                ghw.lock();
                 try {
+                    ghw.getHardware().setVerbose(verbose);
                     ghw.getHardware().open();
                 } catch (HarcHardwareException | IOException ex) {
                     logger.log(Level.WARNING, null, ex);
+                } finally {
+                    ghw.unlock();
                 }
-            }
+                return null;
+            });
         });
+        try {
+            Parallel.invokeAll("jgirs-open", tasks.size(), tasks);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            logger.log(Level.WARNING, "Interrupted while opening hardware");
+        }
     }
 
     public String greet() {
         return getVersion();
     }
 
-    public synchronized GirsHardware getHardware(String name) throws NoSuchHardwareException, AmbigousHardwareException {
-        List<String> candidates = Utils.findStringsWithPrefix(irHardware.keySet(), name);
-        if (candidates.isEmpty())
+    /**
+     * @return the protocol data base shared by the modules, possibly null.
+     */
+    public IrpDatabase getIrpDatabase() {
+        return irpDatabase;
+    }
+
+    /**
+     * @return the decoder used for receiving, of the protocols selected from the shared protocol data base, possibly null.
+     */
+    public ParallelDecoder getDecoder() {
+        return Receive.getInstance() != null ? Receive.getInstance().getDecoder() : null;
+    }
+
+    /**
+     * Reloads the configuration file: the options and the named remotes, and, if changed, the protocol data base.
+     * The new data is built while the old one is still in use, and then replaces it, so that commands
+     * being executed finish with the old data. Hardware and modules are not affected.
+     * @param all If true, all named remotes are read from their sources, otherwise only the changed ones.
+     * @return a summary of the reading of the named remotes.
+     */
+    public String reload(boolean all) throws IOException, SAXException, IrpParseException, IrpException, IrCoreException, ParseException, GirrException {
+        synchronized (reloadLock) {
+            config.reload(all);
+            Parameters.getInstance().update(config.getOptions());
+
+            IrpDatabase newIrpDatabase = config.getIrpDatabase();
+            if (newIrpDatabase != irpDatabase) {
+                irpDatabase = newIrpDatabase;
+                if (renderer != null)
+                    renderer.setIrpDatabase(newIrpDatabase);
+                if (Receive.getInstance() != null)
+                    Receive.getInstance().setIrpDatabase(newIrpDatabase);
+                logger.info("Protocol data base replaced");
+            }
+
+            if (NamedRemotes.getInstance() != null)
+                NamedRemotes.getInstance().setDatabase(config.getRemoteCommandsDataBase());
+            if (Receive.getInstance() != null) {
+                Receive.getInstance().clearCache();
+                Receive.getInstance().getDecoder(); // rebuild it now, if needed, not at the next receive
+            }
+            return config.getLoadSummary();
+        }
+    }
+
+    public GirsHardware getHardware(String name) throws NoSuchHardwareException, AmbigousHardwareException {
+        int position = hardwareIndex.find(name);
+        if (position == PrefixIndex.NOT_FOUND)
             throw new NoSuchHardwareException(name);
-        if (candidates.size() > 1)
+        if (position == PrefixIndex.AMBIGUOUS)
             throw new AmbigousHardwareException(name);
 
-        return irHardware.get(candidates.get(0));
+        return hardwareIndex.get(position);
     }
 
-    public synchronized GirsHardware getTransmitHardware() throws NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException {
+    public GirsHardware getTransmitHardware() throws NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException {
         return getHardware(Parameters.getInstance().getString(Parameters.TRANSMITDEVICE));
     }
 
-    public synchronized GirsHardware getCaptureHardware() throws NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException {
+    public GirsHardware getCaptureHardware() throws NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException {
         return getHardware(Parameters.getInstance().getString(Parameters.CAPTUREDEVICE));
     }
 
-    public synchronized GirsHardware getReceiveHardware() throws NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException {
+    public GirsHardware getReceiveHardware() throws NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException {
         return getHardware(Parameters.getInstance().getString(Parameters.RECEIVEDEVICE));
     }
 
@@ -165,23 +243,23 @@ public final class Engine implements ICommandExecutor, Closeable {
         modules.put(module.getName(), module);
     }
 
-    public synchronized Set<String> getModuleNames() {
+    public Set<String> getModuleNames() {
         return modules.keySet();
     }
 
     @Override
-    public synchronized String getVersion() {
+    public String getVersion() {
         return Version.versionString;
     }
 
     // NOTE: "verbosity" is a silly name for a boolean property, but let's
     // keep it for compatibility with HardHardware.
     @Override
-    public synchronized void setVerbose(boolean verbosity) {
+    public void setVerbose(boolean verbosity) {
         Parameters.getInstance().setBoolean(VERBOSITY, verbosity);
     }
 
-    public synchronized boolean isVerbosity() {
+    public boolean isVerbosity() {
         try {
             return Parameters.getInstance().getBoolean(VERBOSITY);
         } catch (NoSuchParameterException ex) {
@@ -191,10 +269,6 @@ public final class Engine implements ICommandExecutor, Closeable {
         }
     }
 
-    public synchronized void init() {
-        Base.getInstance().setQuitRequested(false);
-    }
-
     // NOTE: This class does not support "debug" as in harchardware.
     // Logging (or the interactive debugger) is to be used instead.
     // Or the debugger...
@@ -204,21 +278,31 @@ public final class Engine implements ICommandExecutor, Closeable {
     }
 
     @Override
-    public synchronized void setTimeout(int timeout) throws IOException {
+    public void setTimeout(int timeout) throws IOException {
         // TODO
     }
 
     @Override
-    public synchronized boolean isValid() {
+    public boolean isValid() {
         return true; //???
     }
 
-    public synchronized boolean isQuitRequested() {
-        return Base.getInstance().isQuitRequested();
+    /**
+     * Ends a client session, cancelling its subscriptions.
+     * @param session
+     */
+    public void endSession(Session session) {
+        session.close();
+        Subscribe.getInstance().unsubscribeAll(session);
+    }
+
+    public boolean isQuitRequested() {
+        Session session = Session.getCurrent();
+        return session != null && session.isQuitRequested();
     }
 
     @Override
-    public synchronized void open() throws HarcHardwareException, IOException {
+    public void open() throws HarcHardwareException, IOException {
     }
 
 //    synchronized void openAll() {
@@ -233,17 +317,20 @@ public final class Engine implements ICommandExecutor, Closeable {
 //    }
 
     @Override
-    public synchronized void close() {
+    public void close() {
         irHardware.values().stream().forEach((hardware) -> {
+            hardware.lock();
             try {
                 hardware.getHardware().close();
             } catch (IOException ex) {
                 logger.log(Level.WARNING, null, ex);
+            } finally {
+                hardware.unlock();
             }
         });
     }
 
-    public synchronized Set<String> getCommandNames() {
+    public Set<String> getCommandNames() {
         return CommandExecuter.getMainExecutor().getCommandNames();
     }
 
@@ -255,12 +342,12 @@ public final class Engine implements ICommandExecutor, Closeable {
 //        return module.getCommandNames();
 //    }
 
-    public synchronized Collection<String> getSubCommandNames(String command) {
+    public Collection<String> getSubCommandNames(String command) {
         return CommandExecuter.getMainExecutor().getSubCommandNames(command);
     }
 
     @Override
-    public synchronized List<String> exec(String command) {
+    public List<String> exec(String command) {
         String[] semicolonSplit = Utils.tokenizer(command, ";");
         List<String> result = new ArrayList<>(2*semicolonSplit.length);
 
@@ -271,7 +358,7 @@ public final class Engine implements ICommandExecutor, Closeable {
         return result;
     }
 
-    private synchronized Collection<String> execAtomic(String command) {
+    private Collection<String> execAtomic(String command) {
         if (command.isEmpty())
             return Utils.singletonArrayList(OK);
 
@@ -279,8 +366,7 @@ public final class Engine implements ICommandExecutor, Closeable {
             return Utils.singletonArrayList(OK);
 
         try {
-            String[] tokens = Utils.tokenizer(command.trim());
-            Collection<String> list = CommandExecuter.getMainExecutor().exec(tokens);
+            Collection<String> list = CommandExecuter.getMainExecutor().exec(command, 0);
             return list;
 
         } catch (JGirsException | IOException | HarcHardwareException | IrCoreException | IrpException | RuntimeException ex) {
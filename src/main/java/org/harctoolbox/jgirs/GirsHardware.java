@@ -27,6 +27,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 import org.harctoolbox.harchardware.HarcHardwareException;
 import org.harctoolbox.harchardware.IHarcHardware;
 import org.w3c.dom.Element;
@@ -66,6 +67,10 @@ public final class GirsHardware {
         return newIrHardware(list.get(0), classArray, objectArray);
     }
 
+    // Serializes the use of the device. It is fair, so that a transmit does not
+    // starve behind a client receiving in a loop.
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private volatile long generation = 0L; // number of times locked
     private IHarcHardware hardware;
     private String url;
     private String description;
@@ -86,21 +91,19 @@ public final class GirsHardware {
     }
 
     public GirsHardware(Element element) throws ClassNotFoundException, NoSuchMethodException, InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, HarcHardwareException, IOException {
-        name = element.getAttribute("name");
-        description = getChildContent(element, "description");
-        url = getChildContent(element, "www");
-        immediateOpen = element.getElementsByTagName("immediate-open").getLength() > 0;
-
-        NodeList args = element.getElementsByTagName("argument");
-        Class<?>[] classArray = new Class<?>[args.getLength()];
-        Object[] objectArray = new Object[args.getLength()];
-        for (int i = 0; i < args.getLength(); i++) {
-            Element e = (Element) args.item(i);
-            String type = e.getAttribute("type");
-            classArray[i] = Utils.name2class(type);
-            objectArray[i] = Utils.parseObject(type, e.getTextContent());
-        }
-        hardware = newIrHardware(element.getAttribute("class"), classArray, objectArray);
+        this(new HardwarePars(element));
+    }
+
+    /**
+     * Instantiates the hardware. As opposed to reading the Element, this may be done in any thread.
+     * @param pars
+     */
+    GirsHardware(HardwarePars pars) throws ClassNotFoundException, NoSuchMethodException, InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, HarcHardwareException, IOException {
+        name = pars.name;
+        description = pars.description;
+        url = pars.url;
+        immediateOpen = pars.immediateOpen;
+        hardware = newIrHardware(pars.className, pars.classArray, pars.objectArray);
     }
 
     GirsHardware(List<String> params, String name) throws ClassNotFoundException, NoSuchMethodException, InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, HarcHardwareException, IOException {
@@ -121,6 +124,27 @@ public final class GirsHardware {
         this.hardware = orig.hardware;
     }
 
+    /**
+     * Acquires exclusive access to the device. Every operation on the hardware
+     * must be performed between lock() and unlock().
+     */
+    public void lock() {
+        lock.lock();
+        generation++; // only written while holding the lock
+    }
+
+    /**
+     * @return the number of times the hardware has been locked; allows a user to
+     * find out if somebody else has used it since last time.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    public void unlock() {
+        lock.unlock();
+    }
+
     /**
      * @return the hardware
      */
@@ -156,6 +180,42 @@ public final class GirsHardware {
         return immediateOpen;
     }
 
+    /**
+     * The contents of a hardware-item element, read from the DOM in the reading thread.
+     */
+    static class HardwarePars {
+
+        private final String name;
+        private final String description;
+        private final String url;
+        private final boolean immediateOpen;
+        private final String className;
+        private final Class<?>[] classArray;
+        private final Object[] objectArray;
+
+        HardwarePars(Element element) throws ClassNotFoundException {
+            name = element.getAttribute("name");
+            description = getChildContent(element, "description");
+            url = getChildContent(element, "www");
+            immediateOpen = element.getElementsByTagName("immediate-open").getLength() > 0;
+            className = element.getAttribute("class");
+
+            NodeList args = element.getElementsByTagName("argument");
+            classArray = new Class<?>[args.getLength()];
+            objectArray = new Object[args.getLength()];
+            for (int i = 0; i < args.getLength(); i++) {
+                Element e = (Element) args.item(i);
+                String type = e.getAttribute("type");
+                classArray[i] = Utils.name2class(type);
+                objectArray[i] = Utils.parseObject(type, e.getTextContent());
+            }
+        }
+
+        String getName() {
+            return name;
+        }
+    }
+
     private static class HardwareParameter {
         private final Class<?> clazz;
         private final Object object;
@@ -0,0 +1,47 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.io.IOException;
+import java.util.Collection;
+import org.harctoolbox.harchardware.HarcHardwareException;
+import org.harctoolbox.ircore.InvalidArgumentException;
+import org.harctoolbox.ircore.IrCoreException;
+import org.harctoolbox.irp.IrpException;
+
+/**
+ * A command that parses its arguments directly from the command line, which is then not split into tokens.
+ * Useful for long lists of numbers.
+ */
+public interface ILineCommand extends ICommand {
+
+    /**
+     * Executes the command
+     * @param line command line
+     * @param start position in line after the name of the command
+     * @return as {@link ICommand#exec(String[])}.
+     * @throws java.io.IOException
+     * @throws org.harctoolbox.harchardware.HarcHardwareException
+     * @throws org.harctoolbox.jgirs.CommandException
+     * @throws org.harctoolbox.jgirs.AmbigousHardwareException
+     * @throws org.harctoolbox.jgirs.AmbigousCommandException
+     * @throws org.harctoolbox.ircore.InvalidArgumentException
+     * @throws org.harctoolbox.irp.IrpException
+     */
+    public Collection<String> exec(CharSequence line, int start) throws IOException, HarcHardwareException, CommandException, AmbigousHardwareException, AmbigousCommandException, InvalidArgumentException, IrCoreException, IrpException;
+}
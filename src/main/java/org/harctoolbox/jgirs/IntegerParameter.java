@@ -22,7 +22,7 @@ package org.harctoolbox.jgirs;
  */
 final class IntegerParameter extends Parameter {
 
-    private int value;
+    private volatile int value;
     //private IntegerParameter() {}
 
     IntegerParameter(String name, int initValue, String documentation) {
@@ -17,6 +17,8 @@ this program. If not, see http://www.gnu.org/licenses/.
 
 package org.harctoolbox.jgirs;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import org.harctoolbox.ircore.IrSignal;
 import org.harctoolbox.irp.DomainViolationException;
@@ -27,17 +29,79 @@ import org.harctoolbox.irp.Protocol;
 import org.harctoolbox.irp.UnsupportedRepeatException;
 
 /**
- *
+ * Rendering of signals given as IRP protocols.
+ * Parsed protocols are cached, keyed by the IRP string.
  */
 public class Irp extends Module {
 
-    public static IrSignal render(String protocolName, Map<String, Long>parameters) throws UnsupportedRepeatException, NameUnassignedException, InvalidNameException, IrpInvalidArgumentException, DomainViolationException {
-        Protocol protocol = new Protocol(protocolName);
-        IrSignal irSignal = protocol.toIrSignal(parameters);
-        return irSignal;
-    }
+    public static final String IRPCACHESIZE = "irpCacheSize";
+    public static final String IRPCACHETTL  = "irpCacheTtl";
+
+    private final IntegerParameter cacheSize;
+    private final IntegerParameter cacheTimeToLive;
+    private final LruCache<String, Protocol> cache;
 
     public Irp() {
         super();
+        cacheSize = new IntegerParameter(IRPCACHESIZE, 64, "Number of parsed IRP protocols to keep in the cache (global)");
+        cacheTimeToLive = new IntegerParameter(IRPCACHETTL, 0, "Seconds a parsed IRP protocol is kept in the cache, 0 for ever (global)");
+        cache = new LruCache<>("irp", cacheSize::getValue, () -> 1000L * cacheTimeToLive.getValue());
+        Caches.register(cache);
+        addParameter(cacheSize);
+        addParameter(cacheTimeToLive);
+        addCommand(new IrpCommand());
+    }
+
+    /**
+     * Parses an IRP protocol, or takes it from the cache.
+     * @param irp
+     * @return Protocol, non-null.
+     */
+    public Protocol compile(String irp) throws UnsupportedRepeatException, NameUnassignedException, InvalidNameException, IrpInvalidArgumentException {
+        Protocol protocol = cache.get(irp);
+        if (protocol == null) {
+            protocol = new Protocol(irp);
+            cache.put(irp, protocol);
+        }
+        return protocol;
+    }
+
+    public IrSignal render(String irp, Map<String, Long> parameters) throws UnsupportedRepeatException, NameUnassignedException, InvalidNameException, IrpInvalidArgumentException, DomainViolationException {
+        Protocol protocol = compile(irp);
+        // A Protocol is not documented as thread safe, and may be shared through the cache.
+        synchronized (protocol) {
+            return protocol.toIrSignal(parameters);
+        }
+    }
+
+    private class IrpCommand extends CommandWithSubcommands implements ICommand {
+
+        private static final String IRP = "irp";
+
+        IrpCommand() {
+            addCommand(new IrpCompileCommand());
+        }
+
+        @Override
+        public String getName() {
+            return IRP;
+        }
+
+        private class IrpCompileCommand implements ICommand {
+
+            private static final String COMPILE = "compile";
+
+            @Override
+            public String getName() {
+                return COMPILE;
+            }
+
+            @Override
+            public List<String> exec(String[] args) throws CommandSyntaxException, UnsupportedRepeatException, NameUnassignedException, InvalidNameException, IrpInvalidArgumentException {
+                checkNoArgs(COMPILE, args.length, 1);
+                compile(args[0]);
+                return new ArrayList<>(0);
+            }
+        }
     }
 }
@@ -25,6 +25,7 @@ import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -38,6 +39,11 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.harctoolbox.girr.GirrException;
@@ -106,28 +112,36 @@ public final class JGirs {
     }
 
     private static ConfigFile readConfig(CommandLineArgs commandLineArgs) throws SAXException, NoSuchMethodException, ClassNotFoundException, InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException, HarcHardwareException, ConfigFile.NoSuchRemoteTypeException, GirrException, IrpException, IrCoreException, IrpParseException, ConfigFile.NonUniqueHardwareName, IOException, ParseException {
-        ConfigFile config = new ConfigFile(commandLineArgs.configFile); // ok also if arg == null
-
-        // Additional Girr files from the command line
-        config.addGirr(commandLineArgs.girr);
-
-        // Some stuff from the command line overrides the data in the configuration file:
+        // Some stuff from the command line overrides the data in the configuration file.
+        // It is given to the constructor, so that it is in effect when the named remotes are read.
+        List<org.harctoolbox.jgirs.Parameter> overrides = new ArrayList<>(5);
         if (commandLineArgs.irpProtocolsXml != null)
-            config.setStringOption(Parameters.IRPPROTOCOLSXML, commandLineArgs.irpProtocolsXml);
+            overrides.add(new StringParameter(Parameters.IRPPROTOCOLSXML, commandLineArgs.irpProtocolsXml, null));
         if (commandLineArgs.verbosity)
-            config.setBooleanOption(Parameters.VERBOSITY, commandLineArgs.verbosity);
+            overrides.add(new BooleanParameter(Parameters.VERBOSITY, commandLineArgs.verbosity, null));
         if (commandLineArgs.transmitDevice != null)
-            config.setStringOption(Parameters.TRANSMITDEVICE, commandLineArgs.transmitDevice);
+            overrides.add(new StringParameter(Parameters.TRANSMITDEVICE, commandLineArgs.transmitDevice, null));
         if (commandLineArgs.captureDevice != null)
-            config.setStringOption(Parameters.CAPTUREDEVICE, commandLineArgs.captureDevice);
+            overrides.add(new StringParameter(Parameters.CAPTUREDEVICE, commandLineArgs.captureDevice, null));
         if (commandLineArgs.receiveDevice != null)
-            config.setStringOption(Parameters.RECEIVEDEVICE, commandLineArgs.receiveDevice);
+            overrides.add(new StringParameter(Parameters.RECEIVEDEVICE, commandLineArgs.receiveDevice, null));
+
+        ConfigFile config = new ConfigFile(commandLineArgs.configFile, commandLineArgs.rebuildCache, overrides); // ok also if arg == null
+
+        // Additional Girr files from the command line
+        config.addGirr(commandLineArgs.girr);
+
+        // Read the protocol data base now, if not already done, reporting errors as configuration errors
+        config.getIrpDatabase();
 
         return config;
     }
 
     private static void doWork(ConfigFile config, CommandLineArgs commandLineArgs) throws IOException, FileNotFoundException {
-        try (Engine engine = Engine.newEngine(config)) {
+        try (Engine engine = Engine.newEngine(config); ConfigWatcher watcher = newConfigWatcher(engine, commandLineArgs)) {
+            if (!commandLineArgs.tcp)
+                Session.setCurrent(new Session(System.out)); // the one and only session
+
             if (commandLineArgs.tcp) {
                 if (!commandLineArgs.parameters.isEmpty()) {
                     logger.log(Level.SEVERE, "Cannot use command arguments together with --tcp.");
@@ -142,6 +156,19 @@ public final class JGirs {
         }
     }
 
+    // Returns null if not requested; try-with-resources accepts that.
+    private static ConfigWatcher newConfigWatcher(Engine engine, CommandLineArgs commandLineArgs) throws IOException {
+        if (!commandLineArgs.watchConfig)
+            return null;
+
+        File file = commandLineArgs.configFile != null ? new File(commandLineArgs.configFile) : null;
+        if (file == null || !file.isFile()) {
+            logger.log(Level.WARNING, "--watch-config requires a local config file; ignored");
+            return null;
+        }
+        return new ConfigWatcher(engine, file);
+    }
+
     private static void readlineWork(Engine engine, CommandLineArgs commandLineArgs) throws IOException {
         final int returnLines = -1;
         engine.greet();
@@ -180,21 +207,46 @@ public final class JGirs {
     private static void tcpServerWork(Engine engine, CommandLineArgs commandLineArgs) throws UnknownHostException, IOException {
         InetAddress ipAddress = InetAddress.getByName(commandLineArgs.ipName);
         ServerSocket serverSocket = new ServerSocket(commandLineArgs.tcpPort, 10, ipAddress);
-        logger.log(Level.INFO, "Listening on IP address {0} at port {1}",
-                new Object[]{commandLineArgs.ipName, commandLineArgs.tcpPort});
+        Semaphore connectionSlots = new Semaphore(commandLineArgs.maxConnections);
+        ExecutorService clientThreads = Executors.newCachedThreadPool(new ClientThreadFactory());
+        logger.log(Level.INFO, "Listening on IP address {0} at port {1}, accepting at most {2} clients",
+                new Object[]{commandLineArgs.ipName, commandLineArgs.tcpPort, commandLineArgs.maxConnections});
         while (true) {
-            try (Socket socket = serverSocket.accept()) {
-                logger.log(Level.INFO, "TCP client connention!");
-                tcpClientSession(engine, socket, commandLineArgs.charset);
+            Socket socket = serverSocket.accept();
+            if (!connectionSlots.tryAcquire()) {
+                logger.log(Level.WARNING, "Refusing TCP client {0}: too many connections", socket.getRemoteSocketAddress());
+                refuseClient(socket, commandLineArgs.charset);
+                continue;
             }
-            logger.log(Level.INFO, "Closing, listening again (Ctrl-C to stop)");
+            logger.log(Level.INFO, "TCP client connection from {0}", socket.getRemoteSocketAddress());
+            clientThreads.execute(() -> {
+                try (Socket clientSocket = socket) {
+                    tcpClientSession(engine, clientSocket, commandLineArgs.charset);
+                } catch (IOException ex) {
+                    logger.log(Level.WARNING, "TCP client session failed: {0}", ex.toString());
+                } finally {
+                    connectionSlots.release();
+                    logger.log(Level.INFO, "TCP client session closed");
+                }
+            });
+        }
+    }
+
+    private static void refuseClient(Socket socket, String charset) {
+        try (Socket clientSocket = socket;
+                PrintStream toClient = new PrintStream(clientSocket.getOutputStream(), true, charset)) {
+            toClient.println(ERROR + ": too many connections");
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, null, ex);
         }
     }
 
     private static void tcpClientSession(Engine engine, Socket socket, String charset) throws IOException {
-        engine.init();
+        Session session = null;
         try (BufferedReader fromClient = new BufferedReader(new InputStreamReader(socket.getInputStream(), charset));
                 PrintStream toClient = new PrintStream(socket.getOutputStream(), true, charset)) {
+            session = new Session(toClient);
+            Session.setCurrent(session);
             toClient.println(engine.getVersion());
             while (!engine.isQuitRequested()) {
                 String line = fromClient.readLine();
@@ -203,24 +255,30 @@ public final class JGirs {
                     break;
                 }
                 Collection<String> out = engine.exec(line);
-                String resultString = packAnswer(out);
+                String resultString = Utils.packAnswer(out);
                 toClient.println(resultString);
             }
+        } finally {
+            if (session != null)
+                engine.endSession(session);
+            Session.setCurrent(null);
         }
     }
 
-    private static String packAnswer(Collection<String> list) {
-        try {
-            return list == null ? ERROR
-                    : list.isEmpty() ? OK
-                    : Utils.pack(list, Parameters.getInstance().getString("listSeparator"));
-        } catch (NoSuchParameterException ex) {
-            throw new RuntimeException();
+    private JGirs() {}
+
+    private static class ClientThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "jgirs-client-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         }
     }
 
-    private JGirs() {}
-
     // NOTE: "verbosity" is a silly name for a boolean property, but let's
     // keep it for compatibility with hardhardware.
     //private boolean verbosity;
@@ -269,6 +327,9 @@ public final class JGirs {
         @Parameter(names = {"-r", "--readline"}, description = "Use the readline library, if available")
         private boolean readLine;
 
+        @Parameter(names = {"--rebuild-cache"}, description = "Read the named remotes from their sources, not from the snapshot")
+        private boolean rebuildCache = false;
+
         @Parameter(names = {"-R", "--receivedevice"}, description = "Device to use as default receiving device")
         private String receiveDevice = null;
 
@@ -278,6 +339,9 @@ public final class JGirs {
         @Parameter(names = {"-t", "--tcp"}, description = "Run as TCP server, using address from --ip and port from --port")
         private boolean tcp = false;
 
+        @Parameter(names = {"--watch-config"}, description = "Reload the config file when it has been changed")
+        private boolean watchConfig = false;
+
         @Parameter(names = {"-V", "--version"}, description = "Display version information")
         private boolean versionRequested;
 
@@ -287,6 +351,9 @@ public final class JGirs {
         @Parameter(names = {"-w", "--waitforanswer"}, description = "Microseconds to wait for answer")
         private int waitForAnswer;
 
+        @Parameter(names = {"-m", "--maxconnections"}, description = "Maximal number of simultaneous TCP clients")
+        private int maxConnections = 10;
+
         @Parameter(names = {"-#", "--count"}, description = "Number of times to send sequence")
         private int count = 1;
 
@@ -0,0 +1,137 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns a stream of received frames into key events. A frame equal to the preceding one (having the same
+ * DecodeSignature), or a short ditto frame, like the repeat frame of NEC1, arriving within the window
+ * after the preceding frame, is a repeat of the key held. A key is pressed by its first frame, held from
+ * its first repeat, and released when no repeat has arrived within the window.
+ *
+ * It is not thread safe; it is meant to be used by the thread receiving the frames.
+ */
+final class KeyEventDetector {
+
+    /**
+     * Frames of at most this many durations are considered as dittos.
+     */
+    static final int DITTO_LENGTH = 4;
+
+    enum Type {
+        press,
+        hold,
+        release;
+    }
+
+    static final class Event {
+
+        private final Type type;
+        private final int repeats;
+
+        private Event(Type type, int repeats) {
+            this.type = type;
+            this.repeats = repeats;
+        }
+
+        Type getType() {
+            return type;
+        }
+
+        /**
+         * @return the number of repeats of the key so far.
+         */
+        int getRepeats() {
+            return repeats;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + repeats;
+        }
+    }
+
+    private boolean active; // a key is held
+    private DecodeSignature signature;
+    private int repeats;
+    private long last;
+
+    KeyEventDetector() {
+        active = false;
+        signature = null;
+        repeats = 0;
+        last = 0L;
+    }
+
+    /**
+     * @return true if a key is held, i.e. a release is pending.
+     */
+    boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Processes a received frame.
+     * @param durations
+     * @param time Time of receiving, in milliseconds.
+     * @param window Maximal time between the frames of a key held, in milliseconds.
+     * @return the events caused by the frame, possibly none: the release of the preceding key, then a press or a hold.
+     */
+    List<Event> frame(int[] durations, long time, long window) {
+        List<Event> events = new ArrayList<>(2);
+        boolean ditto = durations.length <= DITTO_LENGTH;
+        DecodeSignature sig = ditto ? null : DecodeSignature.of(durations);
+        if (active && time - last <= window && (ditto || (sig != null && sig.equals(signature)))) {
+            repeats++;
+            last = time;
+            if (repeats == 1)
+                events.add(new Event(Type.hold, repeats));
+            return events;
+        }
+
+        if (active)
+            events.add(release());
+        if (!ditto) {
+            active = true;
+            signature = sig; // if null, it cannot be repeated
+            repeats = 0;
+            last = time;
+            events.add(new Event(Type.press, 0));
+        } // else a ditto without a key to repeat; ignored
+        return events;
+    }
+
+    /**
+     * To be called when no frame has arrived.
+     * @param time
+     * @param window
+     * @return the release of the key, if the window has elapsed, otherwise null.
+     */
+    Event timeout(long time, long window) {
+        return active && time - last > window ? release() : null;
+    }
+
+    private Event release() {
+        Event event = new Event(Type.release, repeats);
+        active = false;
+        signature = null;
+        return event;
+    }
+}
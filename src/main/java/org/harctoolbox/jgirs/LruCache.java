@@ -0,0 +1,141 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * A bounded cache, evicting the least recently used entries.
+ * Entries may optionally expire after a time to live.
+ * Capacity and time to live are read through suppliers, so they may follow parameters.
+ * The cache keeps counters for hits, misses, and evictions. It is thread safe.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+public final class LruCache<K, V> {
+
+    private final String name;
+    private final IntSupplier capacity;
+    private final LongSupplier timeToLive;
+    private final LinkedHashMap<K, Entry<V>> map;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param name Name of the cache, used in statistics.
+     * @param capacity Maximal number of entries; a non-positive value disables the cache.
+     * @param timeToLive Milliseconds an entry is valid; a non-positive value means for ever.
+     */
+    public LruCache(String name, IntSupplier capacity, LongSupplier timeToLive) {
+        this.name = name;
+        this.capacity = capacity;
+        this.timeToLive = timeToLive;
+        this.map = new LinkedHashMap<>(16, 0.75f, true);
+        this.hits = 0L;
+        this.misses = 0L;
+        this.evictions = 0L;
+    }
+
+    public LruCache(String name, IntSupplier capacity) {
+        this(name, capacity, () -> 0L);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param key
+     * @return the value cached for the key, or null.
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = map.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        long ttl = timeToLive.getAsLong();
+        if (ttl > 0L && System.currentTimeMillis() - entry.created > ttl) {
+            map.remove(key);
+            evictions++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        int max = capacity.getAsInt();
+        if (max <= 0) {
+            evictions += map.size();
+            map.clear();
+            return;
+        }
+        map.put(key, new Entry<>(value));
+        Iterator<Map.Entry<K, Entry<V>>> iterator = map.entrySet().iterator();
+        while (map.size() > max) {
+            iterator.next();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + " size=" + map.size() + " capacity=" + capacity.getAsInt()
+                + " hits=" + hits + " misses=" + misses + " evictions=" + evictions;
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long created;
+
+        Entry(V value) {
+            this.value = value;
+            this.created = System.currentTimeMillis();
+        }
+    }
+}
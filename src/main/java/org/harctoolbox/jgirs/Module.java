@@ -40,6 +40,10 @@ public abstract class Module {
             throw new CommandSyntaxException(name, required);
     }
 
+    /**
+     * Checks the type of the hardware and opens it if necessary.
+     * The caller must hold the lock of the GirsHardware.
+     */
     protected static void initializeHardware(GirsHardware girsHardware, Class<?> requiredClass) throws IncompatibleHardwareException, HarcHardwareException, IOException, NoSuchParameterException {
         IHarcHardware hardware = girsHardware.getHardware();
         if (!(requiredClass.isInstance(hardware)))
@@ -61,7 +65,7 @@ public abstract class Module {
     }
 
     protected final void addParameter(Parameter parameter) {
-        Parameters.getInstance().add(parameter);
+        Parameters.getInstance().register(parameter);
     }
 
 //    List<String> getCommandNames() {
@@ -21,18 +21,20 @@ import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import org.harctoolbox.girr.GirrException;
-import org.harctoolbox.girr.Remote;
 import org.harctoolbox.girr.RemoteSet;
 import org.harctoolbox.ircore.IrCoreException;
+import org.harctoolbox.ircore.IrSequence;
 import org.harctoolbox.ircore.IrSignal;
+import org.harctoolbox.irp.InvalidNameException;
 import org.harctoolbox.irp.IrpException;
+import org.harctoolbox.irp.NameEngine;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
@@ -72,9 +74,13 @@ public class NamedRemotes extends Module {
         return instance;
     }
 
-    private final RemoteCommandDataBase database;
+    public static final String NAMEDCACHESIZE = "namedCacheSize";
 
-    private NamedRemotes(Iterable<RemoteSet> remoteSets) throws IrCoreException, IrpException {
+    private volatile RemoteCommandDataBase database;
+    private final IntegerParameter cacheSize;
+    private final LruCache<List<String>, IrSignal> cache; // key: remote name, command name
+
+    private NamedRemotes(Iterable<RemoteSet> remoteSets) throws IrCoreException, IrpException, GirrException {
         this(new RemoteCommandDataBase(remoteSets, caseInsensitive));
 
     }
@@ -86,7 +92,14 @@ public class NamedRemotes extends Module {
     private NamedRemotes(RemoteCommandDataBase remoteCommandsDataBase) {
         super();
         this.database = remoteCommandsDataBase;
+        cacheSize = new IntegerParameter(NAMEDCACHESIZE, 256, "Number of signals of named commands to keep in the cache (global)");
+        cache = new LruCache<>("named", cacheSize::getValue);
+        Caches.register(cache);
+        addParameter(cacheSize);
         addCommand(new RemotesCommand());
+        addCommand(new FootprintCommand());
+        addCommand(new SearchCommand());
+        addCommand(new FindCommand());
         //addCommand(new CommandsCommand());
     }
 
@@ -94,38 +107,118 @@ public class NamedRemotes extends Module {
         return database.getRemoteCommand(protocolParameters);
     }
 
+    public RemoteCommandDataBase.RemoteCommand getRemoteCommand(String protocol, Map<String, Long> parameters) {
+        return database.getRemoteCommand(protocol, parameters);
+    }
+
+    /**
+     * Finds the command without protocol closest to a received sequence.
+     * @param irSequence
+     * @param tolerance relative tolerance of every duration.
+     * @return the command, or null if there is none within the tolerance.
+     */
+    public RemoteCommandDataBase.RemoteCommand match(IrSequence irSequence, double tolerance) {
+        return database.match(irSequence.toInts(), tolerance);
+    }
+
     public IrSignal render(String remotePrefix, String commandPrefix) throws NoSuchRemoteException, NoSuchCommandException, AmbigousRemoteException, AmbigousCommandException, IrCoreException, IrpException {
-        Remote remote = database.getRemote(remotePrefix);
-        List<String> commandCandidates = Utils.findStringsWithPrefix(remote.getCommands().keySet(), commandPrefix);
-        if (commandCandidates.isEmpty())
-            throw new NoSuchCommandException(commandPrefix);
-        if (commandCandidates.size() > 1)
-            throw new AmbigousCommandException(commandPrefix);
-
-        org.harctoolbox.girr.Command command = remote.getCommand(commandCandidates.get(0));
-        IrSignal irSignal = command.toIrSignal();
+        RemoteCommandDataBase db = database;
+        CompactRemote remote = db.getRemote(remotePrefix);
+        int command = db.getCommand(remote, commandPrefix);
+        List<String> key = Arrays.asList(remote.getName(), remote.getCommandName(command));
+        IrSignal irSignal = cache.get(key);
+        if (irSignal == null) {
+            irSignal = remote.toIrSignal(command);
+            if (database == db) // not replaced meanwhile
+                cache.put(key, irSignal);
+        }
         return irSignal;
     }
 
+    /**
+     * Replaces the data base of remotes, invalidating the cache of rendered signals.
+     * @param remoteCommandsDataBase
+     */
+    public void setDatabase(RemoteCommandDataBase remoteCommandsDataBase) {
+        database = remoteCommandsDataBase;
+        cache.clear();
+    }
+
+    void clearCache() {
+        cache.clear();
+    }
+
+    RemoteCommandDataBase getDatabase() {
+        return database;
+    }
+
     public boolean isEmpty() {
         return database.isEmpty();
     }
 
     public List<String> remotes(String remoteNameFragment) throws AmbigousRemoteException, NoSuchRemoteException {
-        Remote remote = database.getRemote(remoteNameFragment);
-        if (remote == null)
-            throw new NoSuchRemoteException(remoteNameFragment);
-        return Utils.toSortedList(remote.getCommands().keySet());
+        CompactRemote remote = database.getRemote(remoteNameFragment);
+        return new ArrayList<>(remote.getCommandNames()); // already sorted
     }
 
     public List<String> remotes() {
-        Collection<Remote> collection = database.getRemotes();
-        List<String> result = new ArrayList<>(collection.size());
-        collection.stream().forEach((remote) -> {
-            result.add(remote.getName());
+        return database.getRemoteNames();
+    }
+
+    /**
+     * Searches the named commands, see RemoteCommandDataBase.search.
+     * @param text
+     * @param offset Number of matches to skip.
+     * @param count Max number of matches to return.
+     * @return matches as remote/command, best matches first.
+     */
+    public List<String> search(String text, int offset, int count) {
+        List<RemoteCommandDataBase.RemoteCommand> matches = database.search(text, offset, count);
+        List<String> result = new ArrayList<>(matches.size());
+        matches.forEach((match) -> {
+            result.add(match.toString());
         });
+        return result;
+    }
+
+    /**
+     * Finds commands by protocol and parameters, see RemoteCommandDataBase.query.
+     * @param protocol
+     * @param parameters
+     * @return matches as remote/command.
+     */
+    public List<String> query(String protocol, Map<String, Long> parameters) {
+        List<RemoteCommandDataBase.RemoteCommand> matches = database.query(protocol, parameters);
+        List<String> result = new ArrayList<>(matches.size());
+        matches.forEach((match) -> {
+            result.add(match.toString());
+        });
+        return result;
+    }
+
+    /**
+     * @return the protocols used by the named commands, with their numbers of commands.
+     */
+    public List<String> protocols() {
+        Map<String, Integer> protocols = database.getProtocols();
+        List<String> result = new ArrayList<>(protocols.size());
+        protocols.forEach((protocol, count) -> {
+            result.add(protocol + " " + count);
+        });
+        return result;
+    }
 
-        Collections.sort(result, String.CASE_INSENSITIVE_ORDER);
+    /**
+     * @return the size of the data base, and an estimate of the heap it uses, as well as the heap usage of the JVM.
+     */
+    public List<String> memory() {
+        RemoteCommandDataBase db = database;
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        List<String> result = new ArrayList<>(2);
+        result.add(String.format("remotes=%d commands=%d compact=%b estimated=%dkB",
+                db.getRemotes().size(), db.getCommandCount(), db.isCompact(), db.memory() / 1024));
+        result.add(String.format("heap used=%dkB total=%dkB max=%dkB", used / 1024, runtime.totalMemory() / 1024, runtime.maxMemory() / 1024));
         return result;
     }
 
@@ -144,4 +237,65 @@ public class NamedRemotes extends Module {
             return args.length == 0 ? remotes() : remotes(args[0]);
         }
     }
+
+    private class FootprintCommand implements ICommand {
+
+        private static final String FOOTPRINT = "footprint"; // not "memory", which would make "m" for "modules" ambiguous
+
+        @Override
+        public String getName() {
+            return FOOTPRINT;
+        }
+
+        @Override
+        public List<String> exec(String[] args) throws CommandSyntaxException {
+            checkNoArgs(FOOTPRINT, args.length, 0);
+            return memory();
+        }
+    }
+
+    private class SearchCommand implements ICommand {
+
+        private static final String SEARCH = "search";
+        private static final int DEFAULT_COUNT = 20;
+
+        @Override
+        public String getName() {
+            return SEARCH;
+        }
+
+        @Override
+        public List<String> exec(String[] args) throws CommandSyntaxException {
+            checkNoArgs(SEARCH, args.length, 1, 3);
+            try {
+                int offset = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+                int count = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_COUNT;
+                if (offset < 0 || count < 0)
+                    throw new CommandSyntaxException(SEARCH, "offset and count must be non-negative");
+                return search(args[0], offset, count);
+            } catch (NumberFormatException ex) {
+                throw new CommandSyntaxException(SEARCH, "offset and count must be integers");
+            }
+        }
+    }
+
+    private class FindCommand implements ICommand {
+
+        private static final String FIND = "find"; // not "query", which would make "q" for "quit" ambiguous
+
+        @Override
+        public String getName() {
+            return FIND;
+        }
+
+        @Override
+        public List<String> exec(String[] args) throws InvalidNameException {
+            if (args.length == 0)
+                return protocols();
+
+            String[] defs = new String[args.length - 1];
+            System.arraycopy(args, 1, defs, 0, defs.length);
+            return query(args[0], NameEngine.parse(defs).toMap());
+        }
+    }
 }
@@ -32,13 +32,24 @@ public class OpenClose extends Module {
 
     public static void open(String name) throws NoSuchHardwareException, HarcHardwareException, IncompatibleHardwareException, IOException, NoSuchParameterException, AmbigousHardwareException {
         GirsHardware ghw = Engine.getInstance().getHardware(name);
-        initializeHardware(ghw, IHarcHardware.class); // calls open
+        ghw.lock();
+        try {
+            initializeHardware(ghw, IHarcHardware.class); // calls open
+        } finally {
+            ghw.unlock();
+        }
     }
 
     public static void close(String name) throws NoSuchHardwareException, HarcHardwareException, IncompatibleHardwareException, IOException, NoSuchParameterException, AmbigousHardwareException {
-        IHarcHardware hardware = Engine.getInstance().getHardware(name).getHardware();
-        if (hardware.isValid())
-            hardware.close();
+        GirsHardware ghw = Engine.getInstance().getHardware(name);
+        ghw.lock();
+        try {
+            IHarcHardware hardware = ghw.getHardware();
+            if (hardware.isValid())
+                hardware.close();
+        } finally {
+            ghw.unlock();
+        }
     }
 
     public static List<String> status(String name) throws NoSuchHardwareException, HarcHardwareException, IncompatibleHardwareException, IOException, NoSuchParameterException, AmbigousHardwareException {
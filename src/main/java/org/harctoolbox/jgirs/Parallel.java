@@ -0,0 +1,58 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs independent tasks, like loading of data bases and opening of hardware, concurrently.
+ */
+final class Parallel {
+
+    /**
+     * Runs the tasks on at most maxThreads threads, and waits for all of them to finish.
+     * @param <T> type of the results
+     * @param name Name of the threads, for diagnostics.
+     * @param maxThreads Maximal number of threads to use.
+     * @param tasks
+     * @return the Futures of the tasks, in the order of the tasks, all done.
+     * @throws InterruptedException
+     */
+    static <T> List<Future<T>> invokeAll(String name, int maxThreads, List<? extends Callable<T>> tasks) throws InterruptedException {
+        int threads = Math.max(1, Math.min(maxThreads, tasks.size()));
+        AtomicInteger counter = new AtomicInteger(0);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, (Runnable runnable) -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            return executor.invokeAll(tasks);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Parallel() {
+    }
+}
@@ -0,0 +1,256 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.harctoolbox.ircore.ModulatedIrSequence;
+import org.harctoolbox.irp.Decoder;
+import org.harctoolbox.irp.IrpDatabase;
+import org.harctoolbox.irp.IrpParseException;
+
+/**
+ * Decoder trying the protocols of a data base in parallel, on a fork-join pool shared by all instances.
+ * Every protocol has its own Decoder. A decoding is carried out by a number of workers, taking the protocols
+ * one at a time, in the order of the data base, from a shared counter. In first-match mode, when a protocol
+ * has given an accepted decode, no later protocol is taken, so the work left is bounded by the protocols
+ * already started. If the calling thread is interrupted, the workers stop before their next protocol.
+ *
+ * Since a Decoder only can prefer one protocol over another if both are in it, the exhaustive mode decodes
+ * anew, with only the protocols found, when more than one is found. Decoders for such sets of protocols are cached.
+ */
+public final class ParallelDecoder {
+
+    private static final Logger logger = Logger.getLogger(ParallelDecoder.class.getName());
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int RESOLVERS = 32;
+
+    private static final ForkJoinPool pool;
+
+    static {
+        AtomicInteger counter = new AtomicInteger(0);
+        pool = new ForkJoinPool(THREADS, (ForkJoinPool forkJoinPool) -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("jgirs-decode-" + counter.incrementAndGet());
+            return thread;
+        }, null, false);
+    }
+
+    private static List<Decoder.Decode> trunks(Decoder.DecodeTree decodeTree) {
+        List<Decoder.Decode> result = new ArrayList<>(4);
+        for (Decoder.TrunkDecodeTree trunkDecodeTree : decodeTree)
+            result.add(trunkDecodeTree.getTrunk());
+        return result;
+    }
+
+    private final IrpDatabase irpDatabase;
+    private final Decoder[] decoders; // one per protocol, in the order of the data base
+    private final Map<String, Integer> order; // position of the protocols in the data base
+    private final int workers;
+    private final LruCache<List<String>, Decoder> resolvers;
+    private final AtomicLong protocolsTried;
+
+    /**
+     * @param irpDatabase
+     * @throws IrpParseException if a protocol cannot be parsed.
+     */
+    public ParallelDecoder(IrpDatabase irpDatabase) throws IrpParseException {
+        this(irpDatabase, irpDatabase.getNames());
+    }
+
+    /**
+     * @param irpDatabase
+     * @param protocols Names of the protocols to decode, as in the data base. If empty, nothing is decoded.
+     * @throws IrpParseException if a protocol cannot be parsed.
+     */
+    public ParallelDecoder(IrpDatabase irpDatabase, Collection<String> protocols) throws IrpParseException {
+        this(irpDatabase, protocols, THREADS);
+    }
+
+    ParallelDecoder(IrpDatabase irpDatabase, Collection<String> protocols, int workers) throws IrpParseException {
+        this.irpDatabase = irpDatabase;
+        List<String> names = new ArrayList<>(protocols);
+        order = new HashMap<>(2 * names.size());
+        decoders = new Decoder[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            order.put(names.get(i), i);
+            decoders[i] = new Decoder(irpDatabase, Collections.singletonList(names.get(i)));
+        }
+        this.workers = Math.max(1, Math.min(workers, names.size()));
+        resolvers = new LruCache<>("resolve", () -> RESOLVERS);
+        protocolsTried = new AtomicLong(0L);
+    }
+
+    /**
+     * @return the number of workers used for a decoding.
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * @return the number of protocols tried by all decodings so far.
+     */
+    public long getProtocolsTried() {
+        return protocolsTried.get();
+    }
+
+    /**
+     * Exhaustive mode: decodes with all protocols.
+     * @param irSequence
+     * @param decoderParameters
+     * @return all decodes, in the order of their protocols in the data base; empty if interrupted.
+     */
+    public List<Decoder.Decode> decode(ModulatedIrSequence irSequence, Decoder.DecoderParameters decoderParameters) {
+        List<Decoder.Decode> decodes = run(irSequence, decoderParameters, null);
+        if (decodes.size() > 1)
+            decodes = resolve(decodes, irSequence, decoderParameters);
+        Collections.sort(decodes, (d1, d2) -> Integer.compare(position(d1), position(d2)));
+        return decodes;
+    }
+
+    /**
+     * First-match mode: returns the accepted decode whose protocol comes first in the data base.
+     * Protocols after it are not tried, unless they were already started. The result does not depend on the timing.
+     * Preferences between protocols are not considered in this mode.
+     * @param irSequence
+     * @param decoderParameters
+     * @param accept Predicate selecting the decodes of interest; called from the workers.
+     * @return the first accepted decode, or null if there is none, or if interrupted.
+     */
+    public Decoder.Decode decodeFirst(ModulatedIrSequence irSequence, Decoder.DecoderParameters decoderParameters, Predicate<Decoder.Decode> accept) {
+        List<Decoder.Decode> decodes = run(irSequence, decoderParameters, accept);
+        return decodes.isEmpty() ? null : decodes.get(0);
+    }
+
+    // With accept == null, all decodes, otherwise at most one, accepted, the one with the lowest position.
+    private List<Decoder.Decode> run(ModulatedIrSequence irSequence, Decoder.DecoderParameters decoderParameters, Predicate<Decoder.Decode> accept) {
+        Run run = new Run(accept);
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++)
+            futures.add(pool.submit(() -> work(run, irSequence, decoderParameters)));
+
+        try {
+            for (Future<?> future : futures)
+                future.get();
+            return run.result();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return new ArrayList<>(0);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        } finally {
+            run.cancelled = true;
+        }
+    }
+
+    private void work(Run run, ModulatedIrSequence irSequence, Decoder.DecoderParameters decoderParameters) {
+        while (!run.cancelled) {
+            int position = run.next.getAndIncrement();
+            if (position >= decoders.length || position > run.bound.get())
+                return;
+
+            protocolsTried.incrementAndGet();
+            run.add(position, trunks(decoders[position].decode(irSequence, decoderParameters)));
+        }
+    }
+
+    private List<Decoder.Decode> resolve(List<Decoder.Decode> decodes, ModulatedIrSequence irSequence, Decoder.DecoderParameters decoderParameters) {
+        List<String> names = new ArrayList<>(decodes.size());
+        decodes.stream().map(Decoder.Decode::getName).distinct().forEach(names::add);
+        if (names.size() == 1)
+            return decodes;
+
+        Collections.sort(names);
+        Decoder decoder = resolvers.get(names);
+        if (decoder == null) {
+            try {
+                decoder = new Decoder(irpDatabase, names);
+            } catch (IrpParseException ex) {
+                logger.log(Level.WARNING, "Could not create decoder for {0}: {1}", new Object[]{names, ex.getMessage()});
+                return decodes;
+            }
+            resolvers.put(names, decoder);
+        }
+        return trunks(decoder.decode(irSequence, decoderParameters));
+    }
+
+    private int position(Decoder.Decode decode) {
+        return order.getOrDefault(decode.getName(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * State of one decoding, shared by its workers.
+     */
+    private final class Run {
+
+        private final Predicate<Decoder.Decode> accept;
+        private final AtomicInteger next;
+        private final AtomicInteger bound; // lowest position with an accepted decode
+        private final AtomicReferenceArray<List<Decoder.Decode>> decodes; // by position
+        private volatile boolean cancelled;
+
+        Run(Predicate<Decoder.Decode> accept) {
+            this.accept = accept;
+            this.next = new AtomicInteger(0);
+            this.bound = new AtomicInteger(Integer.MAX_VALUE);
+            this.decodes = new AtomicReferenceArray<>(decoders.length);
+            this.cancelled = false;
+        }
+
+        void add(int position, List<Decoder.Decode> list) {
+            if (accept != null) {
+                list.removeIf(accept.negate());
+                if (!list.isEmpty())
+                    bound.accumulateAndGet(position, Math::min);
+            }
+            decodes.set(position, list);
+        }
+
+        List<Decoder.Decode> result() {
+            List<Decoder.Decode> result = new ArrayList<>(4);
+            for (int i = 0; i < decodes.length(); i++) {
+                List<Decoder.Decode> list = decodes.get(i);
+                if (list == null || list.isEmpty())
+                    continue;
+                if (accept != null) {
+                    result.add(list.get(0));
+                    break;
+                }
+                result.addAll(list);
+            }
+            return result;
+        }
+    }
+}
@@ -20,7 +20,7 @@ package org.harctoolbox.jgirs;
 import java.io.Serializable;
 import java.util.Comparator;
 
-public abstract class Parameter /*implements IParameter*/ {
+public abstract class Parameter implements Cloneable /*, IParameter*/ {
 
     protected String name;
     protected String documentation;
@@ -43,6 +43,18 @@ public abstract class Parameter /*implements IParameter*/ {
         return name + "=" + get();
     }
 
+    /**
+     * @return a copy of the parameter, to be given a value of its own, e.g. in a Session.
+     */
+    @Override
+    public Parameter clone() {
+        try {
+            return (Parameter) super.clone();
+        } catch (CloneNotSupportedException ex) {
+            throw new InternalError(ex); // cannot happen, we implement Cloneable
+        }
+    }
+
     public abstract void set(String value);
 
     public abstract void set(Object value);
@@ -19,16 +19,22 @@ package org.harctoolbox.jgirs;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import static org.harctoolbox.jgirs.Utils.BOOLEAN;
 import static org.harctoolbox.jgirs.Utils.INT;
 import static org.harctoolbox.jgirs.Utils.STRING;
 
 /**
  * Models parameters in the Girs server.
+ * The values stored here are the global ones; a value set from within a Session
+ * is stored in that session, and overrides the global value there.
  */
 public class Parameters extends Module {
 
@@ -38,6 +44,9 @@ public class Parameters extends Module {
     public static final String TRANSMITDEVICE   = "transmitDevice";
     public static final String CAPTUREDEVICE    = "captureDevice";
     public static final String RECEIVEDEVICE    = "receiveDevice";
+    public static final String ASYNCHRONOUS     = "asynchronous";
+
+    private static final Logger logger = Logger.getLogger(Parameters.class.getName());
 
     private static volatile Parameters instance = null;
 
@@ -54,52 +63,127 @@ public class Parameters extends Module {
     }
 
     private final Map<String, Parameter> parameterMap;
+    private volatile PrefixIndex<Parameter> parameterIndex; // built at first use after add
+    private final Map<String, String> defaults; // values in the code of the parameters overridden by the configuration
+    private volatile Set<String> configuredNames; // names of the options of the configuration
 
     private Parameters() {
         super();
-        this.parameterMap = new HashMap<>(8);
+        this.parameterMap = new ConcurrentHashMap<>(16);
+        this.defaults = new ConcurrentHashMap<>(16);
+        this.configuredNames = Collections.emptySet();
         addCommand(new ParameterCommand());
 
         // In this constructor, use add instead of addParameter.
         add(new StringParameter(LISTSEPARATOR, " ", "String to be used between entries in list"));
         add(new BooleanParameter(VERBOSITY, false, "Execute commands verbosely"));
+        add(new BooleanParameter(ASYNCHRONOUS, false, "Let receive and analyze return at once, delivering the result to the session later"));
     }
 
     public final void add(Parameter parameter) {
         parameterMap.put(parameter.getName(), parameter);
+        parameterIndex = null;
+    }
+
+    /**
+     * Adds a parameter declared by a module.
+     * A value given for it in the configuration file, already present, takes precedence over its default.
+     * @param parameter
+     */
+    public final void register(Parameter parameter) {
+        Parameter configured = parameterMap.get(parameter.getName());
+        if (configured != null) {
+            defaults.putIfAbsent(parameter.getName(), parameter.get());
+            setConfigured(parameter, configured.get());
+        }
+        add(parameter);
+    }
+
+    private static void setConfigured(Parameter parameter, String value) {
+        try {
+            parameter.set(value);
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Ignoring configured value of {0}: {1}", new Object[]{parameter.getName(), ex.getMessage()});
+        }
     }
 
     public void addAll(Map<String, Parameter> newParameters) {
         parameterMap.putAll(newParameters);
+        parameterIndex = null;
     }
 
+    /**
+     * Takes the options of the configuration, overriding the values in the code.
+     * @param options
+     */
     public void addAll(Iterable<Parameter> options) {
+        Set<String> names = new HashSet<>(16);
         for (Parameter parameter : options) {
+            Parameter inCode = parameterMap.get(parameter.getName());
+            if (inCode != null)
+                defaults.putIfAbsent(parameter.getName(), inCode.get());
             add(parameter);
+            names.add(parameter.getName());
         }
+        configuredNames = names;
+    }
+
+    /**
+     * Takes over the global values from a reloaded configuration.
+     * Existing parameters are updated in place, so that their users see the new values; new ones are added.
+     * A parameter whose option has been removed from the configuration gets its value in the code back;
+     * if it has none, i.e. it is not used by the code, it keeps its value.
+     * Values set in sessions are not affected.
+     * @param options
+     */
+    public void update(Iterable<Parameter> options) {
+        Set<String> names = new HashSet<>(16);
+        for (Parameter option : options) {
+            names.add(option.getName());
+            Parameter global = parameterMap.get(option.getName());
+            if (global == null)
+                add(option);
+            else if (global != option) {
+                if (!configuredNames.contains(option.getName()))
+                    defaults.putIfAbsent(option.getName(), global.get()); // not configured before, so the value in the code
+                setConfigured(global, option.get());
+            }
+        }
+        for (String name : configuredNames) {
+            Parameter global = parameterMap.get(name);
+            String value = defaults.get(name);
+            if (!names.contains(name) && global != null && value != null) {
+                setConfigured(global, value);
+                logger.log(Level.INFO, "Option {0} removed, reset to {1}", new Object[]{name, value});
+            }
+        }
+        configuredNames = names;
     }
 
     public Parameter get(String name) {
-        return parameterMap.get(name);
+        Session session = Session.getCurrent();
+        Parameter local = session != null ? session.getParameter(name) : null;
+        return local != null ? local : parameterMap.get(name);
     }
 
     public Parameter find(String str) throws AmbigousParameterException {
-        if (parameterMap.containsKey(str))
-            return get(str);
-
-        Parameter candidate = null;
-        for (Map.Entry<String, Parameter> kvp : parameterMap.entrySet()) {
-            if (kvp.getKey().toLowerCase(Locale.US).startsWith(str.toLowerCase(Locale.US))) {
-                if (candidate != null)
-                    throw new AmbigousParameterException(str);
-                candidate = kvp.getValue();
-            }
+        Parameter parameter = parameterMap.get(str);
+        if (parameter != null)
+            return parameter;
+
+        PrefixIndex<Parameter> index = parameterIndex;
+        if (index == null) {
+            index = new PrefixIndex<>(parameterMap);
+            parameterIndex = index;
         }
-        return candidate; // possibly null
+        int position = index.find(str);
+        if (position == PrefixIndex.AMBIGUOUS)
+            throw new AmbigousParameterException(str);
+        return position == PrefixIndex.NOT_FOUND ? null : index.get(position);
     }
 
     private Parameter getParameter(String name) throws NoSuchParameterException {
-        Parameter param = parameterMap.get(name);
+        Parameter param = get(name);
         if (param == null)
             throw new NoSuchParameterException(name);
         return param;
@@ -124,27 +208,46 @@ public class Parameters extends Module {
         Parameter param = parameterMap.get(name);
         if (!(param instanceof IntegerParameter))
             throw new Parameter.IncorrectParameterType(INT);
-        ((IntegerParameter) param).set(value);
+        set(param, value);
     }
 
     public void setBoolean(String name, boolean value) throws Parameter.IncorrectParameterType {
         Parameter param = parameterMap.get(name);
         if (!(param instanceof BooleanParameter))
             throw new Parameter.IncorrectParameterType(BOOLEAN);
-        ((BooleanParameter) param).set(value);
+        set(param, value);
     }
 
     public void setString(String name, String value) throws Parameter.IncorrectParameterType {
         Parameter param = parameterMap.get(name);
         if (!(param instanceof StringParameter))
             throw new Parameter.IncorrectParameterType(STRING);
-        param.set(value);
+        set(param, value);
+    }
+
+    // Within a session, the session gets its own value; otherwise the global one is changed.
+    private Parameter set(Parameter global, Object value) {
+        Session session = Session.getCurrent();
+        if (session != null)
+            return session.setParameter(global, value);
+
+        global.set(value);
+        return global;
+    }
+
+    private Parameter set(Parameter global, String value) {
+        Session session = Session.getCurrent();
+        if (session != null)
+            return session.setParameter(global, value);
+
+        global.set(value);
+        return global;
     }
 
     public List<String> getParameters() {
         List<String> result = new ArrayList<>(parameterMap.size());
-        parameterMap.values().stream().forEach((param) -> {
-            result.add(param.toString());
+        parameterMap.keySet().stream().forEach((name) -> {
+            result.add(get(name).toString());
         });
         Collections.sort(result, String.CASE_INSENSITIVE_ORDER);
         return result;
@@ -152,9 +255,9 @@ public class Parameters extends Module {
 
     public List<String> getParameterString(String fragment) throws NoSuchParameterException {
         ArrayList<String> result = new ArrayList<>(4);
-        parameterMap.values().stream().forEach((param) -> {
-            if (param.getName().toLowerCase(Locale.US).startsWith(fragment.toLowerCase(Locale.US)))
-                result.add(param.toString());
+        parameterMap.keySet().stream().forEach((name) -> {
+            if (name.toLowerCase(Locale.US).startsWith(fragment.toLowerCase(Locale.US)))
+                result.add(get(name).toString());
         });
         if (result.isEmpty())
             throw new NoSuchParameterException(fragment);
@@ -166,8 +269,7 @@ public class Parameters extends Module {
         Parameter parameter = find(fragment);
         if (parameter == null)
             throw new NoSuchParameterException(fragment);
-        parameter.set(newValue);
-        return parameter.toString();
+        return set(parameter, newValue).toString();
     }
 
     private class ParameterCommand implements ICommand {
@@ -0,0 +1,115 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable index of names, for resolving a name given by a prefix, case insensitively.
+ * The prefix denotes a name if it is equal to it (ignoring case), or if it is the prefix of that name only.
+ * The names are kept in a sorted array, so a lookup is a binary search,
+ * not allocating any memory.
+ *
+ * @param <T> type of the values associated with the names.
+ */
+public final class PrefixIndex<T> {
+
+    public static final int NOT_FOUND = -1;
+    public static final int AMBIGUOUS = -2;
+
+    private static boolean startsWithIgnoreCase(String string, String prefix) {
+        return string.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    private final String[] names;
+    private final Object[] values;
+
+    /**
+     * @param map Map of names to values. The names should be unique when compared case insensitively.
+     */
+    public PrefixIndex(Map<String, T> map) {
+        names = map.keySet().toArray(new String[map.size()]);
+        Arrays.sort(names, String.CASE_INSENSITIVE_ORDER);
+        values = new Object[names.length];
+        for (int i = 0; i < names.length; i++)
+            values[i] = map.get(names[i]);
+    }
+
+    /**
+     * Resolves a prefix.
+     * @param prefix
+     * @return index of the denoted name, or NOT_FOUND or AMBIGUOUS.
+     */
+    public int find(String prefix) {
+        return find(names, prefix);
+    }
+
+    /**
+     * Resolves a prefix in an array of names, sorted by String.CASE_INSENSITIVE_ORDER.
+     * @param names
+     * @param prefix
+     * @return index of the denoted name, or NOT_FOUND or AMBIGUOUS.
+     */
+    static int find(String[] names, String prefix) {
+        int low = 0;
+        int high = names.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(names[mid], prefix) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        // Now low is the first name not smaller than prefix;
+        // all names starting with prefix follow it immediately.
+        if (low == names.length || !startsWithIgnoreCase(names[low], prefix))
+            return NOT_FOUND;
+
+        if (names[low].length() == prefix.length()) {
+            // Exact match; if there are several differing only in case, prefer an exact one.
+            for (int i = low; i < names.length && names[i].equalsIgnoreCase(prefix); i++)
+                if (names[i].equals(prefix))
+                    return i;
+            return low;
+        }
+
+        return low + 1 < names.length && startsWithIgnoreCase(names[low + 1], prefix) ? AMBIGUOUS : low;
+    }
+
+    /**
+     * @param index as returned by find
+     * @return the name with the index.
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * @param index as returned by find
+     * @return the value associated with the name with the index.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) values[index];
+    }
+
+    public int size() {
+        return names.length;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+
+package org.harctoolbox.jgirs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.harctoolbox.irp.Expression;
+import org.harctoolbox.irp.InvalidNameException;
+import org.harctoolbox.irp.NameEngine;
+import org.harctoolbox.irp.NameUnassignedException;
+import org.harctoolbox.irp.ParameterSpec;
+import org.harctoolbox.irp.Protocol;
+
+/**
+ * The default values of the parameters of a protocol, evaluated once.
+ * Constant defaults, like T=0, are kept as values. Defaults depending on other parameters,
+ * like S=255-D, are kept as expressions, together with the parameters they depend on,
+ * and evaluated against the given parameters in a NameEngine reused by the thread.
+ * Instances are immutable, and can be used concurrently.
+ */
+final class ProtocolDefaults implements ProtocolParameterIndex.DependentDefaults {
+
+    static final ProtocolDefaults NONE = new ProtocolDefaults(Collections.emptyMap(), Collections.emptyMap());
+
+    // Only the parameters an expression depends on are defined before it is evaluated,
+    // so the values left from earlier evaluations are never used.
+    private static final ThreadLocal<NameEngine> nameEngine = ThreadLocal.withInitial(NameEngine::new);
+
+    /**
+     * @param protocol, may be null.
+     * @return the defaults of the protocol, NONE if null.
+     */
+    static ProtocolDefaults of(Protocol protocol) {
+        if (protocol == null)
+            return NONE;
+
+        List<String> names = new ArrayList<>(4);
+        Map<String, Long> constants = new HashMap<>(4);
+        Map<String, Expression> expressions = new HashMap<>(4);
+        NameEngine empty = new NameEngine();
+        for (ParameterSpec parameterSpec : protocol.getParameterSpecs()) {
+            names.add(parameterSpec.getName());
+            Expression deflt = parameterSpec.getDefault();
+            if (deflt == null)
+                continue;
+            try {
+                constants.put(parameterSpec.getName(), deflt.toLong(empty));
+            } catch (NameUnassignedException ex) {
+                expressions.put(parameterSpec.getName(), deflt);
+            }
+        }
+        if (constants.isEmpty() && expressions.isEmpty())
+            return NONE;
+
+        Map<String, Dependent> dependents = new HashMap<>(expressions.size());
+        expressions.forEach((name, expression) -> {
+            dependents.put(name, new Dependent(expression, dependencies(expression, names)));
+        });
+        return new ProtocolDefaults(Collections.unmodifiableMap(constants), Collections.unmodifiableMap(dependents));
+    }
+
+    /**
+     * Finds the parameters an expression depends on, by leaving them out one at a time.
+     * @param expression
+     * @param names the parameters of the protocol.
+     * @return the names, or null if the expression cannot be evaluated from the parameters.
+     */
+    private static String[] dependencies(Expression expression, List<String> names) {
+        Map<String, Long> all = new HashMap<>(names.size());
+        names.forEach((name) -> {
+            all.put(name, 1L);
+        });
+        try {
+            expression.toLong(new NameEngine(all));
+        } catch (NameUnassignedException | RuntimeException ex) {
+            return null;
+        }
+
+        List<String> result = new ArrayList<>(2);
+        for (String name : names) {
+            all.remove(name);
+            try {
+                expression.toLong(new NameEngine(all));
+            } catch (NameUnassignedException | RuntimeException ex) {
+                result.add(name);
+            }
+            all.put(name, 1L);
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    private final Map<String, Long> constants;
+    private final Map<String, Dependent> dependents;
+
+    private ProtocolDefaults(Map<String, Long> constants, Map<String, Dependent> dependents) {
+        this.constants = constants;
+        this.dependents = dependents;
+    }
+
+    /**
+     * @return the parameters having constant defaults, with their default values; unmodifiable.
+     */
+    Map<String, Long> getConstants() {
+        return constants;
+    }
+
+    /**
+     * @param name
+     * @param value
+     * @param parameters all the parameters, for evaluating defaults depending on others.
+     * @return true if the parameter has its default value.
+     */
+    @Override
+    public boolean isDefault(String name, long value, Map<String, Long> parameters) {
+        Long constant = constants.get(name);
+        if (constant != null)
+            return constant == value;
+
+        Dependent dependent = dependents.get(name);
+        if (dependent == null)
+            return false;
+        NameEngine engine = bind(dependent, parameters);
+        if (engine == null)
+            return false; // depends on a parameter not given
+        try {
+            return dependent.expression.toLong(engine) == value;
+        } catch (NameUnassignedException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Adds the parameters not given, but having defaults, with their default values.
+     * @param parameters, modified.
+     * @return parameters
+     */
+    Map<String, Long> addDefaults(Map<String, Long> parameters) {
+        constants.forEach(parameters::putIfAbsent);
+        for (Map.Entry<String, Dependent> entry : dependents.entrySet()) {
+            if (parameters.containsKey(entry.getKey()))
+                continue;
+            NameEngine engine = bind(entry.getValue(), parameters);
+            if (engine == null)
+                continue; // depends on a parameter not given, left out
+            try {
+                parameters.put(entry.getKey(), entry.getValue().expression.toLong(engine));
+            } catch (NameUnassignedException ex) {
+                // left out
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Defines the parameters a default depends on in the engine of the thread.
+     * @return the engine, or null if a parameter it depends on is not given.
+     */
+    private static NameEngine bind(Dependent dependent, Map<String, Long> parameters) {
+        if (dependent.names == null)
+            return null;
+
+        NameEngine engine = nameEngine.get();
+        try {
+            for (String name : dependent.names) {
+                Long value = parameters.get(name);
+                if (value == null)
+                    return null;
+                engine.define(name, value);
+            }
+        } catch (InvalidNameException ex) {
+            return null;
+        }
+        return engine;
+    }
+
+    private static final class Dependent {
+
+        private final Expression expression;
+        private final String[] names; // the parameters the expression depends on, null if it cannot be evaluated
+
+        Dependent(Expression expression, String[] names) {
+            this.expression = expression;
+            this.names = names;
+        }
+    }
+}
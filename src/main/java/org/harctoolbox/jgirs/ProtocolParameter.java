@@ -17,6 +17,8 @@ this program. If not, see http://www.gnu.org/licenses/.
 
 package org.harctoolbox.jgirs;
 
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
@@ -28,8 +30,12 @@ public class ProtocolParameter implements Comparable<ProtocolParameter>, Cloneab
     private final TreeMap<String, Long> parameters; // Case preserving
     private final String protocol; // folded to lowercase
 
+    /**
+     * Parameters having their default values are not removed here, see RemoteCommandDataBase.
+     * @param protocol
+     * @param parameters
+     */
     public ProtocolParameter(String protocol, Map<String, Long> parameters) {
-        // TODO: check for defaults: eliminate all parameters equals to their defaults.
         this.protocol = protocol.toLowerCase(Locale.US);
         this.parameters = new TreeMap<>(parameters);
     }
@@ -77,27 +83,31 @@ public class ProtocolParameter implements Comparable<ProtocolParameter>, Cloneab
         return str.toString();
     }
 
+    /**
+     * Orders by protocol, then by the number of parameters, then by the parameters pairwise
+     * in name order, comparing first the names, then the values. This is consistent with equals.
+     * @param other
+     * @return negative, 0, or positive
+     */
     @Override
     public int compareTo(ProtocolParameter other) {
         int c1 = protocol.compareTo(other.protocol);
         if (c1 != 0)
             return c1;
 
-        for (String parameterName : parameters.keySet()) {
-            if (!other.parameters.containsKey(parameterName))
-                return -1;
-        }
-
-        if (other.parameters.size() > parameters.size())
-            return -1;
+        int c2 = Integer.compare(parameters.size(), other.parameters.size());
+        if (c2 != 0)
+            return c2;
 
+        Iterator<Map.Entry<String, Long>> otherIterator = other.parameters.entrySet().iterator();
         for (Map.Entry<String, Long> entry : parameters.entrySet()) {
-            String parameterName = entry.getKey();
-            Long parameterValue = entry.getValue();
-            Long otherValue = other.parameters.get(parameterName);
-            int c2 = Long.compare(parameterValue, otherValue);
-            if (c2 != 0)
-                return c2;
+            Map.Entry<String, Long> otherEntry = otherIterator.next();
+            int c3 = entry.getKey().compareTo(otherEntry.getKey());
+            if (c3 != 0)
+                return c3;
+            int c4 = Long.compare(entry.getValue(), otherEntry.getValue());
+            if (c4 != 0)
+                return c4;
         }
 
         return 0;
@@ -118,6 +128,13 @@ public class ProtocolParameter implements Comparable<ProtocolParameter>, Cloneab
         return parameters.get(parameterName);
     }
 
+    /**
+     * @return the parameters, read only
+     */
+    public Map<String, Long> getParameters() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
     /**
      * @return the protocol
      */
@@ -0,0 +1,311 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Hash index from a protocol and its parameters to a value.
+ * Protocol names (case insensitively) and parameter names are interned to small integers,
+ * and a key is stored packed in a long array: the protocol id, followed by the pairs
+ * (parameter id, value), ordered by parameter id. The table uses open addressing.
+ * Parameters having the default values declared for their protocol are left out of the key,
+ * as are those having defaults depending on other parameters, as told by the DependentDefaults given.
+ * A lookup does not allocate any memory, apart from what the DependentDefaults does.
+ *
+ * Building the index is not thread safe; after it has been built, lookups can be made concurrently.
+ *
+ * @param <V> type of the values.
+ */
+public final class ProtocolParameterIndex<V> {
+
+    /**
+     * Tells whether a parameter has a default value depending on the other parameters, like S=255-D.
+     */
+    public interface DependentDefaults {
+
+        /**
+         * @param name
+         * @param value
+         * @param parameters all the parameters.
+         * @return true if the parameter has its default value, and can be left out.
+         */
+        boolean isDefault(String name, long value, Map<String, Long> parameters);
+    }
+
+    private static final int INITIAL_CAPACITY = 64; // power of two
+    private static final int NO_ID = -1;
+
+    private static int hash(long[] key, int offset, int length) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (int i = offset; i < offset + length; i++)
+            h = (h ^ key[i]) * 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 31));
+    }
+
+    private final Map<String, Integer> protocolIds;
+    private final Map<String, Integer> parameterIds;
+    private final ThreadLocal<long[]> scratch;
+    private long[][] defaults; // indexed by protocol id: pairs (parameter id, default value); null for none
+
+    // Entries; the key of entry i is pool[keyOffset[i]] ... pool[keyOffset[i] + keyLength[i] - 1]
+    private long[] pool;
+    private int poolSize;
+    private int[] keyOffset;
+    private int[] keyLength;
+    private int[] keyHash;
+    private Object[] values;
+    private int size;
+
+    private int[] table; // entry number + 1; 0 is empty
+
+    public ProtocolParameterIndex() {
+        protocolIds = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        parameterIds = new TreeMap<>();
+        scratch = ThreadLocal.withInitial(() -> new long[16]);
+        defaults = new long[4][];
+        pool = new long[8 * INITIAL_CAPACITY];
+        poolSize = 0;
+        keyOffset = new int[INITIAL_CAPACITY];
+        keyLength = new int[INITIAL_CAPACITY];
+        keyHash = new int[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+        size = 0;
+        table = new int[2 * INITIAL_CAPACITY];
+    }
+
+    private static int id(Map<String, Integer> ids, String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = ids.size();
+            ids.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Declares the default values of the parameters of a protocol.
+     * A parameter having its default value is not part of the key, so it need not be given,
+     * neither when entering, nor when looking up. To be called before the protocol is entered.
+     * @param protocol
+     * @param parameterDefaults parameter names and their default values.
+     */
+    public void setDefaults(String protocol, Map<String, Long> parameterDefaults) {
+        int protocolId = id(protocolIds, protocol);
+        if (protocolId >= defaults.length)
+            defaults = Arrays.copyOf(defaults, Math.max(2 * defaults.length, protocolId + 1));
+        if (parameterDefaults.isEmpty()) {
+            defaults[protocolId] = null;
+            return;
+        }
+
+        long[] pairs = new long[2 * parameterDefaults.size()];
+        int n = 0;
+        for (Map.Entry<String, Long> entry : parameterDefaults.entrySet()) {
+            pairs[n++] = id(parameterIds, entry.getKey());
+            pairs[n++] = entry.getValue();
+        }
+        defaults[protocolId] = pairs;
+    }
+
+    private boolean isDefault(int protocolId, long parameterId, long value) {
+        long[] pairs = protocolId < defaults.length ? defaults[protocolId] : null;
+        if (pairs == null)
+            return false;
+        for (int i = 0; i < pairs.length; i += 2)
+            if (pairs[i] == parameterId)
+                return pairs[i + 1] == value;
+        return false;
+    }
+
+    /**
+     * Enters a value. If the key is already present, its value is replaced.
+     * @param protocol
+     * @param parameters
+     * @param value
+     */
+    public void put(String protocol, Map<String, Long> parameters, V value) {
+        put(protocol, parameters, null, value);
+    }
+
+    /**
+     * Enters a value. If the key is already present, its value is replaced.
+     * @param protocol
+     * @param parameters
+     * @param dependentDefaults parameters with defaults depending on others; may be null.
+     * @param value
+     */
+    public void put(String protocol, Map<String, Long> parameters, DependentDefaults dependentDefaults, V value) {
+        long[] key = new long[1 + 2 * parameters.size()];
+        int protocolId = id(protocolIds, protocol);
+        key[0] = protocolId;
+        int n = 1;
+        for (Map.Entry<String, Long> entry : parameters.entrySet()) {
+            int parameterId = id(parameterIds, entry.getKey());
+            long parameterValue = entry.getValue();
+            if (isDefault(protocolId, parameterId, parameterValue)
+                    || dependentDefaults != null && dependentDefaults.isDefault(entry.getKey(), parameterValue, parameters))
+                continue;
+            key[n++] = parameterId;
+            key[n++] = parameterValue;
+        }
+        sortPairs(key, n);
+        int h = hash(key, 0, n);
+        int entry = findEntry(key, n, h);
+        if (entry >= 0) {
+            values[entry] = value;
+            return;
+        }
+
+        if (size == values.length)
+            growEntries();
+        if (poolSize + n > pool.length)
+            pool = Arrays.copyOf(pool, Math.max(2 * pool.length, poolSize + n));
+        System.arraycopy(key, 0, pool, poolSize, n);
+        keyOffset[size] = poolSize;
+        keyLength[size] = n;
+        keyHash[size] = h;
+        values[size] = value;
+        poolSize += n;
+        size++;
+        if (2 * size > table.length)
+            rehash(2 * table.length);
+        else
+            insert(size - 1);
+    }
+
+    /**
+     * Looks up the value entered for the protocol and the parameters.
+     * @param protocol
+     * @param parameters
+     * @return the value, or null if not present.
+     */
+    public V get(String protocol, Map<String, Long> parameters) {
+        return get(protocol, parameters, null);
+    }
+
+    /**
+     * Looks up the value entered for the protocol and the parameters.
+     * @param protocol
+     * @param parameters
+     * @param dependentDefaults parameters with defaults depending on others; may be null.
+     * @return the value, or null if not present.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(String protocol, Map<String, Long> parameters, DependentDefaults dependentDefaults) {
+        Integer protocolId = protocolIds.get(protocol);
+        if (protocolId == null)
+            return null;
+
+        int capacity = 1 + 2 * parameters.size();
+        long[] key = scratch.get();
+        if (key.length < capacity) {
+            key = new long[2 * capacity];
+            scratch.set(key);
+        }
+        key[0] = protocolId;
+        int n = 1;
+        for (Map.Entry<String, Long> entry : parameters.entrySet()) {
+            Integer parameterId = parameterIds.get(entry.getKey());
+            if (parameterId == null)
+                return null; // a parameter never seen cannot match
+            long value = entry.getValue();
+            if (isDefault(protocolId, parameterId, value)
+                    || dependentDefaults != null && dependentDefaults.isDefault(entry.getKey(), value, parameters))
+                continue;
+            key[n++] = parameterId;
+            key[n++] = value;
+        }
+        sortPairs(key, n);
+        int entry = findEntry(key, n, hash(key, 0, n));
+        return entry >= 0 ? (V) values[entry] : null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a rough estimate of the heap used by the index, in bytes, not counting the values.
+     */
+    public long memory() {
+        long defaultsBytes = 8L * defaults.length;
+        for (long[] pairs : defaults)
+            if (pairs != null)
+                defaultsBytes += 8L * pairs.length;
+        return defaultsBytes + 8L * pool.length + 4L * (keyOffset.length + keyLength.length + keyHash.length + values.length + table.length)
+                + 64L * (protocolIds.size() + parameterIds.size());
+    }
+
+    // Insertion sort of the (id, value) pairs starting at position 1; there are only a few.
+    private static void sortPairs(long[] key, int length) {
+        for (int i = 3; i < length; i += 2) {
+            long id = key[i];
+            long value = key[i + 1];
+            int j = i - 2;
+            while (j >= 1 && key[j] > id) {
+                key[j + 2] = key[j];
+                key[j + 3] = key[j + 1];
+                j -= 2;
+            }
+            key[j + 2] = id;
+            key[j + 3] = value;
+        }
+    }
+
+    private int findEntry(long[] key, int length, int h) {
+        int mask = table.length - 1;
+        for (int slot = h & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int entry = table[slot] - 1;
+            if (keyHash[entry] == h && keyLength[entry] == length && keyEquals(key, length, keyOffset[entry]))
+                return entry;
+        }
+        return NO_ID;
+    }
+
+    private boolean keyEquals(long[] key, int length, int offset) {
+        for (int i = 0; i < length; i++)
+            if (pool[offset + i] != key[i])
+                return false;
+        return true;
+    }
+
+    private void insert(int entry) {
+        int mask = table.length - 1;
+        int slot = keyHash[entry] & mask;
+        while (table[slot] != 0)
+            slot = (slot + 1) & mask;
+        table[slot] = entry + 1;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int entry = 0; entry < size; entry++)
+            insert(entry);
+    }
+
+    private void growEntries() {
+        int capacity = 2 * values.length;
+        keyOffset = Arrays.copyOf(keyOffset, capacity);
+        keyLength = Arrays.copyOf(keyLength, capacity);
+        keyHash = Arrays.copyOf(keyHash, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+}
@@ -0,0 +1,347 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Immutable index of commands by protocol and (some of) their parameters.
+ * Per protocol, there are indexes on every parameter, and on the combination of D and S,
+ * so that a query gives its result with work proportional to the size of the (most selective) index entry.
+ * A parameter omitted in a command is taken with its default value, if the protocol defines one;
+ * so e.g. a NEC1 command without S matches a query for S=255-D.
+ * The indexes consist of primitive arrays: the distinct values, sorted, and the command numbers per value.
+ */
+final class QueryIndex {
+
+    private static final String D = "D";
+    private static final String S = "S";
+
+    private static Long get(Map<String, Long> parameters, String name) {
+        for (Map.Entry<String, Long> entry : parameters.entrySet())
+            if (entry.getKey().equalsIgnoreCase(name))
+                return entry.getValue();
+        return null;
+    }
+
+    private final Map<String, ProtocolEntry> protocols;
+
+    /**
+     * @param remotes
+     * @param defaults gives the defaults of a protocol, from its name.
+     */
+    QueryIndex(Collection<CompactRemote> remotes, Function<String, ProtocolDefaults> defaults) {
+        Map<String, ProtocolEntry.Builder> builders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (CompactRemote remote : remotes) {
+            for (int i = 0; i < remote.size(); i++) {
+                String protocol = remote.getProtocol(i);
+                if (protocol != null)
+                    builders.computeIfAbsent(protocol, (p) -> new ProtocolEntry.Builder(defaults.apply(p))).add(remote, i);
+            }
+        }
+        protocols = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        builders.forEach((name, builder) -> {
+            protocols.put(name, builder.build());
+        });
+    }
+
+    /**
+     * Finds the commands having the protocol and the parameter values given.
+     * @param protocol protocol name, case insensitive
+     * @param parameters Parameters that must match; others are arbitrary. May be empty.
+     * @return the matching commands, in the order of the data base.
+     */
+    List<RemoteCommandDataBase.RemoteCommand> query(String protocol, Map<String, Long> parameters) {
+        ProtocolEntry entry = protocols.get(protocol);
+        return entry != null ? entry.query(parameters) : new ArrayList<>(0);
+    }
+
+    /**
+     * @return the protocols, sorted case insensitively, with their numbers of commands.
+     */
+    Map<String, Integer> getProtocols() {
+        Map<String, Integer> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        protocols.forEach((name, entry) -> {
+            result.put(name, entry.size());
+        });
+        return result;
+    }
+
+    /**
+     * @return a rough estimate of the heap used, in bytes, not counting the remotes.
+     */
+    long memory() {
+        long bytes = 0;
+        for (ProtocolEntry entry : protocols.values())
+            bytes += entry.memory();
+        return bytes;
+    }
+
+    private static final class ProtocolEntry {
+
+        private final CompactRemote[] remotes; // command number -> remote
+        private final int[] indexes;           // command number -> index of the command in its remote
+        private final Map<String, Column> byParameter;
+        private final Column byDS;
+
+        private ProtocolEntry(CompactRemote[] remotes, int[] indexes, Map<String, Column> byParameter, Column byDS) {
+            this.remotes = remotes;
+            this.indexes = indexes;
+            this.byParameter = byParameter;
+            this.byDS = byDS;
+        }
+
+        int size() {
+            return indexes.length;
+        }
+
+        long memory() {
+            long bytes = 16 + 4L * remotes.length + 16 + 4L * indexes.length + byDS.memory();
+            for (Column column : byParameter.values())
+                bytes += 64 + column.memory();
+            return bytes;
+        }
+
+        List<RemoteCommandDataBase.RemoteCommand> query(Map<String, Long> query) {
+            if (query.isEmpty()) {
+                List<RemoteCommandDataBase.RemoteCommand> result = new ArrayList<>(indexes.length);
+                for (int number = 0; number < indexes.length; number++)
+                    result.add(new RemoteCommandDataBase.RemoteCommand(remotes[number], indexes[number]));
+                return result;
+            }
+
+            // Find the group of every parameter; the smallest one gives the candidates.
+            Column[] columns = new Column[query.size()];
+            int[] groups = new int[query.size()];
+            int n = 0;
+            Column smallest = null;
+            int smallestGroup = 0;
+            for (Map.Entry<String, Long> entry : query.entrySet()) {
+                Column column = byParameter.get(entry.getKey());
+                int group = column != null ? column.find(entry.getValue(), 0L) : Column.NOT_FOUND;
+                if (group == Column.NOT_FOUND)
+                    return new ArrayList<>(0);
+                columns[n] = column;
+                groups[n] = group;
+                n++;
+                if (smallest == null || column.size(group) < smallest.size(smallestGroup)) {
+                    smallest = column;
+                    smallestGroup = group;
+                }
+            }
+            Long d = get(query, D);
+            Long s = get(query, S);
+            if (d != null && s != null) {
+                int group = byDS.find(d, s);
+                if (group == Column.NOT_FOUND)
+                    return new ArrayList<>(0);
+                if (byDS.size(group) < smallest.size(smallestGroup)) {
+                    smallest = byDS;
+                    smallestGroup = group;
+                }
+            }
+
+            List<RemoteCommandDataBase.RemoteCommand> result = new ArrayList<>(smallest.size(smallestGroup));
+            for (int k = smallest.starts[smallestGroup]; k < smallest.starts[smallestGroup + 1]; k++) {
+                int number = smallest.numbers[k];
+                if (matches(columns, groups, n, number))
+                    result.add(new RemoteCommandDataBase.RemoteCommand(remotes[number], indexes[number]));
+            }
+            return result;
+        }
+
+        private static boolean matches(Column[] columns, int[] groups, int n, int number) {
+            for (int c = 0; c < n; c++)
+                if (!columns[c].contains(groups[c], number))
+                    return false;
+            return true;
+        }
+
+        private static final class Builder {
+
+            private final ProtocolDefaults defaults;
+            private final List<CompactRemote> remotes;
+            private final List<Integer> indexes;
+            private final Map<String, Column.Builder> parameterColumns;
+            private final Column.Builder dsColumn;
+
+            Builder(ProtocolDefaults defaults) {
+                this.defaults = defaults;
+                remotes = new ArrayList<>(16);
+                indexes = new ArrayList<>(16);
+                parameterColumns = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                dsColumn = new Column.Builder(2);
+            }
+
+            void add(CompactRemote remote, int index) {
+                int number = remotes.size();
+                remotes.add(remote);
+                indexes.add(index);
+                Map<String, Long> parameters = defaults.addDefaults(remote.getParameters(index));
+                parameters.forEach((name, value) -> {
+                    parameterColumns.computeIfAbsent(name, (n) -> new Column.Builder(1)).add(number, value, 0L);
+                });
+                Long d = get(parameters, D);
+                Long s = get(parameters, S);
+                if (d != null && s != null)
+                    dsColumn.add(number, d, s);
+            }
+
+            ProtocolEntry build() {
+                int[] indexArray = new int[indexes.size()];
+                for (int i = 0; i < indexArray.length; i++)
+                    indexArray[i] = indexes.get(i);
+                Map<String, Column> byParameter = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                parameterColumns.forEach((name, builder) -> {
+                    byParameter.put(name, builder.build());
+                });
+                return new ProtocolEntry(remotes.toArray(new CompactRemote[remotes.size()]), indexArray, byParameter, dsColumn.build());
+            }
+        }
+    }
+
+    /**
+     * Commands grouped by their values of one or two parameters (the key).
+     * The key of group g is keys[arity * g] (and keys[arity * g + 1]); groups are sorted by their keys.
+     * The numbers of the commands in group g are numbers[starts[g]] ... numbers[starts[g + 1] - 1], ascending.
+     */
+    private static final class Column {
+
+        static final int NOT_FOUND = -1;
+
+        private final int arity;
+        private final long[] keys;
+        private final int[] starts;
+        private final int[] numbers;
+
+        private Column(int arity, long[] keys, int[] starts, int[] numbers) {
+            this.arity = arity;
+            this.keys = keys;
+            this.starts = starts;
+            this.numbers = numbers;
+        }
+
+        private int compare(int group, long first, long second) {
+            int cmp = Long.compare(keys[arity * group], first);
+            return cmp != 0 || arity == 1 ? cmp : Long.compare(keys[arity * group + 1], second);
+        }
+
+        /**
+         * @param first
+         * @param second ignored if the arity is 1.
+         * @return the group having the key, or NOT_FOUND.
+         */
+        int find(long first, long second) {
+            int low = 0;
+            int high = starts.length - 2;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int cmp = compare(middle, first, second);
+                if (cmp < 0)
+                    low = middle + 1;
+                else if (cmp > 0)
+                    high = middle - 1;
+                else
+                    return middle;
+            }
+            return NOT_FOUND;
+        }
+
+        int size(int group) {
+            return starts[group + 1] - starts[group];
+        }
+
+        boolean contains(int group, int number) {
+            return Arrays.binarySearch(numbers, starts[group], starts[group + 1], number) >= 0;
+        }
+
+        long memory() {
+            return 3 * 16 + 8L * keys.length + 4L * (starts.length + numbers.length);
+        }
+
+        private static final class Builder {
+
+            private final int arity;
+            private long[] rows; // per row: the key, then the command number
+            private int size;
+
+            Builder(int arity) {
+                this.arity = arity;
+                rows = new long[16 * (arity + 1)];
+                size = 0;
+            }
+
+            void add(int number, long first, long second) {
+                int stride = arity + 1;
+                if ((size + 1) * stride > rows.length)
+                    rows = Arrays.copyOf(rows, 2 * rows.length);
+                rows[size * stride] = first;
+                if (arity == 2)
+                    rows[size * stride + 1] = second;
+                rows[size * stride + arity] = number;
+                size++;
+            }
+
+            private int compareKeys(int i, int j) {
+                int stride = arity + 1;
+                for (int k = 0; k < arity; k++) {
+                    int cmp = Long.compare(rows[i * stride + k], rows[j * stride + k]);
+                    if (cmp != 0)
+                        return cmp;
+                }
+                return 0;
+            }
+
+            Column build() {
+                // The rows are added with ascending numbers, and the sort is stable.
+                Integer[] order = new Integer[size];
+                for (int i = 0; i < size; i++)
+                    order[i] = i;
+                Arrays.sort(order, this::compareKeys);
+
+                int noGroups = 0;
+                for (int n = 0; n < size; n++)
+                    if (n == 0 || compareKeys(order[n - 1], order[n]) != 0)
+                        noGroups++;
+
+                int stride = arity + 1;
+                long[] keys = new long[arity * noGroups];
+                int[] starts = new int[noGroups + 1];
+                int[] numbers = new int[size];
+                int group = -1;
+                for (int n = 0; n < size; n++) {
+                    int row = order[n];
+                    if (n == 0 || compareKeys(order[n - 1], row) != 0) {
+                        group++;
+                        System.arraycopy(rows, row * stride, keys, arity * group, arity);
+                        starts[group] = n;
+                    }
+                    numbers[n] = (int) rows[row * stride + arity];
+                }
+                starts[noGroups] = size;
+                return new Column(arity, keys, starts, numbers);
+            }
+        }
+    }
+}
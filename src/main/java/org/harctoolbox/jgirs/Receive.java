@@ -19,8 +19,13 @@ package org.harctoolbox.jgirs;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.harctoolbox.harchardware.HarcHardwareException;
@@ -30,7 +35,6 @@ import org.harctoolbox.ircore.IrSignal;
 import org.harctoolbox.ircore.ModulatedIrSequence;
 import org.harctoolbox.ircore.OddSequenceLengthException;
 import org.harctoolbox.ircore.Pronto;
-import org.harctoolbox.ircore.ThisCannotHappenException;
 import org.harctoolbox.irp.Decoder;
 import org.harctoolbox.irp.IrpDatabase;
 import org.harctoolbox.irp.IrpParseException;
@@ -38,37 +42,65 @@ import static org.harctoolbox.jgirs.Engine.TIMEOUT;
 
 /**
  * This class implements the receiving commands.
+ * Results of decoding and of identifying named commands are cached, keyed by the signature of the received sequence
+ * (see DecodeSignature), since a button pressed repeatedly gives nearly identical sequences.
+ * Only the protocols selected by decodeProtocols are decoded; the decoder is rebuilt when the selection,
+ * or what it is derived from, changes.
  */
 public class Receive extends Module {
+    private static final Logger logger = Logger.getLogger(Receive.class.getName());
+
     private static final int defaultReceiveBeginTimeout     = 2000;
     private static final int defaultReceiveEndingTimeout    = 30;
     private static final int defaultReceiveLength           = 400;
     private static final ReceiveFormat defaultReceiveFormat = ReceiveFormat.raw;
+    private static final int defaultMatchTolerance          = 20;
+    private static final int defaultDecodeCacheSize         = 128;
+    private static final String defaultDecodeProtocols      = "all";
+    private static final int defaultReceiveCleanTolerance   = 30;
 
     public static final String RECEIVEBEGINTIMEOUT  = "receiveBeginTimeout";
     public static final String RECEIVEENDINGTIMEOUT = "receiveEndingTimeout";
     public static final String RECEIVELENGTH        = "receiveLength";
     public static final String FALLBACKFREQUENCY    = "fallbackFrequency";
     public static final String RECEIVEFORMAT        = "receiveFormat";
+    public static final String MATCHTOLERANCE       = "matchTolerance";
+    public static final String DECODECACHESIZE      = "decodeCacheSize";
+    public static final String DECODEPROTOCOLS      = "decodeProtocols";
+    public static final String RECEIVECLEAN         = "receiveClean";
+    public static final String RECEIVECLEANTOLERANCE = "receiveCleanTolerance";
+
+    public static final String ALLPROTOCOLS         = "all";
+    public static final String AUTOPROTOCOLS        = "auto";
 
     private static volatile Receive instance;
 
-    public static Module newReceive() {
+    static Receive getInstance() {
+        return instance;
+    }
+
+    static Module newReceive(IrpDatabase irpDatabase) {
         if (instance != null)
             throw new InvalidMultipleInstantiation();
 
-        instance = new Receive();
+        instance = new Receive(irpDatabase);
         return instance;
     }
 
     public static IrSequence receive(GirsHardware hardware) throws IncompatibleHardwareException, HarcHardwareException, IOException, NoSuchParameterException, OddSequenceLengthException {
-        initializeHardware(hardware, IReceive.class);
-        IReceive receiver = (IReceive) hardware.getHardware();
-        receiver.setBeginTimeout(Parameters.getInstance().getInteger(RECEIVEBEGINTIMEOUT));
-        receiver.setEndingTimeout(Parameters.getInstance().getInteger(RECEIVEBEGINTIMEOUT));
-        receiver.setBeginTimeout(Parameters.getInstance().getInteger(RECEIVEBEGINTIMEOUT));
-        IrSequence irSequence = receiver.receive();
-        return irSequence;
+        int beginTimeout = Parameters.getInstance().getInteger(RECEIVEBEGINTIMEOUT);
+        int endingTimeout = Parameters.getInstance().getInteger(RECEIVEENDINGTIMEOUT);
+        hardware.lock();
+        try {
+            initializeHardware(hardware, IReceive.class);
+            IReceive receiver = (IReceive) hardware.getHardware();
+            receiver.setBeginTimeout(beginTimeout);
+            receiver.setEndingTimeout(endingTimeout);
+            IrSequence irSequence = receiver.receive();
+            return irSequence;
+        } finally {
+            hardware.unlock();
+        }
     }
 
     public static IrSequence receive() throws NoSuchHardwareException, NoSuchParameterException, IncompatibleHardwareException, HarcHardwareException, IOException, AmbigousHardwareException, OddSequenceLengthException {
@@ -92,72 +124,306 @@ public class Receive extends Module {
 //        boolean success = DecodeIR.loadLibrary();
 //        if (!success)
 //            return null;
-        ModulatedIrSequence modulatedIrSequence = new ModulatedIrSequence(irSequence, Double.valueOf(Parameters.getInstance().getInteger(FALLBACKFREQUENCY)));
-        Decoder.DecodeTree decodes = instance.decoder.decode(modulatedIrSequence, instance.decoderParams);
-        List<String> result = new ArrayList<>(10);
-        Iterator<Decoder.TrunkDecodeTree> iterator = decodes.iterator();
-        while (iterator.hasNext()) {
-            Decoder.Decode decode = iterator.next().getTrunk();
-            result.add(decode.toString());
-        }
+        int frequency = Parameters.getInstance().getInteger(FALLBACKFREQUENCY);
+        ParallelDecoder decoder = instance.getDecoder();
+        if (decoder == null)
+            return new ArrayList<>(0);
+        return instance.cached(irSequence, () -> decode(decoder, irSequence, frequency),
+                ReceiveFormat.protocolparameter.ordinal(), frequency, cleanTolerance());
+    }
 
+    // Exhaustive: all protocols are tried.
+    private static List<String> decode(ParallelDecoder decoder, IrSequence irSequence, int frequency) {
+        ModulatedIrSequence modulatedIrSequence = new ModulatedIrSequence(irSequence, Double.valueOf(frequency));
+        List<Decoder.Decode> decodes = decoder.decode(modulatedIrSequence, instance.decoderParams);
+        List<String> result = new ArrayList<>(decodes.size());
+        decodes.forEach((decode) -> {
+            result.add(decode.toString());
+        });
         return result;
     }
 
+    /**
+     * Identifies a received sequence as a named command. The protocols are tried in parallel, and the decoding
+     * stops as soon as a decode is found that is a named command.
+     * If there is none, the closest command without protocol, if within
+     * the tolerance given by matchTolerance, is taken.
+     * @param irSequence
+     * @return list containing the name as remote/command, empty if not found.
+     * @throws NoSuchParameterException
+     */
     public static List<String> formatAsNamedCommands(IrSequence irSequence) throws NoSuchParameterException {
-//        boolean success = DecodeIR.loadLibrary();
-//        if (!success)
-//            return null;
-        ModulatedIrSequence modulatedIrSequence = new ModulatedIrSequence(irSequence, Double.valueOf(Parameters.getInstance().getInteger(FALLBACKFREQUENCY)));
-        Decoder.DecodeTree decodes = instance.decoder.decode(modulatedIrSequence, instance.decoderParams);
-        Iterator<Decoder.TrunkDecodeTree> iterator = decodes.iterator();
-        if (!iterator.hasNext())
-            return null;
+        NamedRemotes namedRemotes = NamedRemotes.getInstance();
+        if (namedRemotes == null)
+            return new ArrayList<>(0);
+
+        int frequency = Parameters.getInstance().getInteger(FALLBACKFREQUENCY);
+        int tolerance = Parameters.getInstance().getInteger(MATCHTOLERANCE);
+        ParallelDecoder decoder = instance.getDecoder();
+        return instance.cached(irSequence, () -> identify(namedRemotes, decoder, irSequence, frequency, tolerance),
+                ReceiveFormat.namedcommand.ordinal(), frequency, tolerance, cleanTolerance());
+    }
 
-        Decoder.Decode decode = iterator.next().getTrunk();
-        ProtocolParameter protocolParameters = new ProtocolParameter(decode.getName(), decode.getMap());
-        RemoteCommandDataBase.RemoteCommand cmd = NamedRemotes.getInstance().getRemoteCommand(protocolParameters);
+    private static List<String> identify(NamedRemotes namedRemotes, ParallelDecoder decoder, IrSequence irSequence, int frequency, int tolerance) {
         List<String> list = new ArrayList<>(1);
+        if (decoder != null) {
+            ModulatedIrSequence modulatedIrSequence = new ModulatedIrSequence(irSequence, Double.valueOf(frequency));
+            Decoder.Decode decode = decoder.decodeFirst(modulatedIrSequence, instance.decoderParams,
+                    (d) -> namedRemotes.getRemoteCommand(d.getName(), d.getMap()) != null);
+            RemoteCommandDataBase.RemoteCommand cmd = decode != null ? namedRemotes.getRemoteCommand(decode.getName(), decode.getMap()) : null;
+            if (cmd != null) {
+                list.add(cmd.toString());
+                return list;
+            }
+        }
+
+        RemoteCommandDataBase.RemoteCommand cmd = namedRemotes.match(irSequence, tolerance / 100.0);
         if (cmd != null)
             list.add(cmd.toString());
         return list;
     }
 
+    public static ReceiveFormat getReceiveFormat() {
+        return ((ReceiveFormatParameter) Parameters.getInstance().get(RECEIVEFORMAT)).getValue();
+    }
+
+    /**
+     * Formats a received sequence, after cleaning it, if receiveClean is set.
+     * @param irSequence Received sequence, or null for timeout.
+     * @param receiveFormat
+     * @return the formatted sequence.
+     * @throws NoSuchParameterException
+     */
     public static List<String> format(IrSequence irSequence, ReceiveFormat receiveFormat)
             throws NoSuchParameterException {
+        if (irSequence == null)
+            return Utils.singletonArrayList(TIMEOUT);
+
+        IrSequence sequence = clean(irSequence);
         return
-                irSequence == null ? Utils.singletonArrayList(TIMEOUT)
-                : receiveFormat == ReceiveFormat.raw ? Utils.singletonArrayList(formatAsRaw(irSequence))
-                : receiveFormat == ReceiveFormat.ccf ? Utils.singletonArrayList(formatAsCcf(irSequence))
-                : receiveFormat == ReceiveFormat.protocolparameter ? formatAsDecode(irSequence)
-                : formatAsNamedCommands(irSequence);
+                receiveFormat == ReceiveFormat.raw ? Utils.singletonArrayList(formatAsRaw(sequence))
+                : receiveFormat == ReceiveFormat.ccf ? Utils.singletonArrayList(formatAsCcf(sequence))
+                : receiveFormat == ReceiveFormat.protocolparameter ? formatAsDecode(sequence)
+                : formatAsNamedCommands(sequence);
     }
 
-    private final Decoder decoder;
-    private final Decoder.DecoderParameters decoderParams;
+    /**
+     * Cleans a sequence from measuring jitter, see DurationCleaner, if receiveClean is set.
+     * @param irSequence
+     * @return the cleaned sequence, or the sequence itself, if it is not to be cleaned.
+     * @throws NoSuchParameterException
+     */
+    public static IrSequence clean(IrSequence irSequence) throws NoSuchParameterException {
+        int tolerance = cleanTolerance();
+        if (tolerance <= 0)
+            return irSequence;
 
-    public Receive() {
-        super();
         try {
-            IrpDatabase irpDatabase = new IrpDatabase((String) null);
-            decoder = new Decoder(irpDatabase);
-        } catch (IOException | IrpParseException ex) {
-            // If I get here, it is an internal problem; don't expect a user to be able to do anything.
-            Logger.getLogger(Receive.class.getName()).log(Level.SEVERE, null, ex);
-            throw new ThisCannotHappenException();
+            return new IrSequence(DurationCleaner.clean(irSequence.toInts(), tolerance / 100.0));
+        } catch (OddSequenceLengthException ex) {
+            throw new IllegalStateException(ex); // cannot happen, the length is unchanged
         }
+    }
+
+    // 0 if not cleaning.
+    private static int cleanTolerance() throws NoSuchParameterException {
+        return Parameters.getInstance().getBoolean(RECEIVECLEAN) ? Parameters.getInstance().getInteger(RECEIVECLEANTOLERANCE) : 0;
+    }
 
+    private volatile IrpDatabase irpDatabase;
+    private volatile Selection selection; // the decoder, and what it was built from
+    private final Object selectionLock = new Object();
+    private final StringParameter decodeProtocols;
+    private final Decoder.DecoderParameters decoderParams;
+    private final IntegerParameter decodeCacheSize;
+    private final LruCache<DecodeSignature, List<String>> cache;
+    private volatile long generation; // incremented when the cache is invalidated
+    private long decodes;
+    private long decodeNanos;
+
+    /**
+     * @param irpDatabase Protocol data base, normally the one shared through the Engine; if null, no decoding is done.
+     */
+    private Receive(IrpDatabase irpDatabase) {
+        super();
+        this.irpDatabase = irpDatabase;
+        this.selection = null;
         decoderParams = new Decoder.DecoderParameters();
+        decodeCacheSize = new IntegerParameter(DECODECACHESIZE, defaultDecodeCacheSize,
+                "Number of results of decoding received signals to keep in the cache (global)");
+        cache = new LruCache<>("decode", decodeCacheSize::getValue);
+        Caches.register(cache);
+        generation = 0L;
+        decodes = 0L;
+        decodeNanos = 0L;
 
         addCommand(new ReceiveCommand());
+        addCommand(new DecodeStatisticsCommand());
 
         addParameter(new IntegerParameter(RECEIVEBEGINTIMEOUT, defaultReceiveBeginTimeout, "begin timeout for receive"));
         addParameter(new IntegerParameter(RECEIVELENGTH, defaultReceiveLength, "max number of durations in receive"));
         addParameter(new IntegerParameter(RECEIVEENDINGTIMEOUT, defaultReceiveEndingTimeout, "ending timeout for receive"));
         addParameter(new IntegerParameter(FALLBACKFREQUENCY, (int) ModulatedIrSequence.DEFAULT_FREQUENCY,
                 "Fallback frequency (in Hz) to be used in absence of a measurement."));
+        addParameter(new IntegerParameter(MATCHTOLERANCE, defaultMatchTolerance,
+                "Tolerance (in percent, at most " + Math.round(100 * SignalFingerprintIndex.MAX_TOLERANCE)
+                + ") of every duration when matching a received signal against named commands without protocol"));
         addParameter(new ReceiveFormatParameter(RECEIVEFORMAT, defaultReceiveFormat,
                 "Format of received codes (to the extent possible). Possible values are: raw, ccf, protocolparameter, namedcommand"));
+        addParameter(decodeCacheSize);
+        addParameter(new BooleanParameter(RECEIVECLEAN, false,
+                "Clean received signals, replacing similar durations by their mean, before decoding and output"));
+        addParameter(new IntegerParameter(RECEIVECLEANTOLERANCE, defaultReceiveCleanTolerance,
+                "Gap (in percent) between sorted durations, starting a new cluster, when cleaning"));
+        decodeProtocols = new StringParameter(DECODEPROTOCOLS, defaultDecodeProtocols,
+                "Protocols to decode, separated by commas; \"" + ALLPROTOCOLS + "\" for all, or \"" + AUTOPROTOCOLS
+                + "\" for those of the named remotes (global)");
+        addParameter(decodeProtocols);
+        getDecoder(); // build it now, not at the first receive
+    }
+
+    /**
+     * @return the decoder of the protocols selected by decodeProtocols, rebuilt if the selection, the protocol data base,
+     * or (for auto) the named remotes have changed; null if there is no protocol data base.
+     */
+    ParallelDecoder getDecoder() {
+        IrpDatabase database = irpDatabase;
+        if (database == null)
+            return null;
+
+        String value = decodeProtocols.getValue().trim();
+        NamedRemotes namedRemotes = NamedRemotes.getInstance();
+        RemoteCommandDataBase remotes = value.equalsIgnoreCase(AUTOPROTOCOLS) && namedRemotes != null ? namedRemotes.getDatabase() : null;
+        Selection current = selection;
+        if (current != null && current.isFor(database, value, remotes))
+            return current.decoder;
+
+        synchronized (selectionLock) {
+            current = selection;
+            if (current != null && current.isFor(database, value, remotes))
+                return current.decoder;
+
+            ParallelDecoder decoder;
+            try {
+                Collection<String> protocols = selectProtocols(database, value, remotes);
+                decoder = protocols == null ? new ParallelDecoder(database) : new ParallelDecoder(database, protocols);
+                logger.log(Level.INFO, "Decoding {0}", protocols == null ? "all protocols" : protocols);
+            } catch (IrpParseException ex) {
+                logger.log(Level.WARNING, "Decoder could not be built: {0}", ex.getMessage());
+                decoder = null;
+            }
+            selection = new Selection(database, value, remotes, decoder);
+            clearCache();
+            return decoder;
+        }
+    }
+
+    /**
+     * @return the names of the selected protocols, as in the data base, or null for all.
+     */
+    private static Collection<String> selectProtocols(IrpDatabase database, String value, RemoteCommandDataBase remotes) {
+        if (value.isEmpty() || value.equalsIgnoreCase(ALLPROTOCOLS))
+            return null;
+
+        Collection<String> wanted;
+        if (value.equalsIgnoreCase(AUTOPROTOCOLS)) {
+            if (remotes == null)
+                return null; // no named remotes to derive from
+            wanted = remotes.getProtocols().keySet();
+        } else
+            wanted = Arrays.asList(value.split("[,\\s]+"));
+
+        Map<String, String> names = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        database.getNames().forEach((name) -> {
+            names.put(name, name);
+        });
+        List<String> result = new ArrayList<>(wanted.size());
+        for (String protocol : wanted) {
+            String name = names.get(protocol);
+            if (name == null)
+                logger.log(Level.WARNING, "Unknown protocol {0} in {1}, ignored", new Object[]{protocol, DECODEPROTOCOLS});
+            else if (!result.contains(name))
+                result.add(name);
+        }
+        return result;
+    }
+
+    /**
+     * Takes the result from the cache, or computes and caches it.
+     * @param irSequence
+     * @param decoding Computes the result, when not cached.
+     * @param context Values the result depends on, besides the sequence.
+     * @return the result, as a new list.
+     */
+    private List<String> cached(IrSequence irSequence, Supplier<List<String>> decoding, int... context) {
+        DecodeSignature signature = DecodeSignature.of(irSequence.toInts(), context);
+        List<String> result = signature != null ? cache.get(signature) : null;
+        if (result == null) {
+            long gen = generation;
+            long start = System.nanoTime();
+            result = Collections.unmodifiableList(decoding.get());
+            long time = System.nanoTime() - start;
+            synchronized (this) {
+                decodes++;
+                decodeNanos += time;
+            }
+            if (signature != null && gen == generation) // not invalidated meanwhile
+                cache.put(signature, result);
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Invalidates the cached results, to be called when the protocols or the named remotes have been replaced.
+     */
+    synchronized void clearCache() {
+        generation++;
+        cache.clear();
+    }
+
+    /**
+     * @return statistics of the decoding: number of decodes (i.e. cache misses), their average time,
+     * and the hit rate of the cache.
+     */
+    public String decodeStatistics() {
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        long n;
+        long nanos;
+        synchronized (this) {
+            n = decodes;
+            nanos = decodeNanos;
+        }
+        return String.format("decodes=%d averageTime=%.3fms cacheHits=%d cacheMisses=%d hitRate=%.1f%%",
+                n, n > 0 ? nanos / (1e6 * n) : 0.0, hits, misses, hits + misses > 0 ? 100.0 * hits / (hits + misses) : 0.0);
+    }
+
+    /**
+     * Replaces the protocol data base, for example after it has been reloaded. The decoder is rebuilt when next used.
+     * @param irpDatabase New data base; if null, no decoding is done.
+     */
+    void setIrpDatabase(IrpDatabase irpDatabase) {
+        this.irpDatabase = irpDatabase;
+        clearCache();
+    }
+
+    private static final class Selection {
+
+        private final IrpDatabase irpDatabase;
+        private final String value;
+        private final RemoteCommandDataBase remotes;
+        private final ParallelDecoder decoder;
+
+        Selection(IrpDatabase irpDatabase, String value, RemoteCommandDataBase remotes, ParallelDecoder decoder) {
+            this.irpDatabase = irpDatabase;
+            this.value = value;
+            this.remotes = remotes;
+            this.decoder = decoder;
+        }
+
+        boolean isFor(IrpDatabase irpDatabase, String value, RemoteCommandDataBase remotes) {
+            return this.irpDatabase == irpDatabase && this.value.equals(value) && this.remotes == remotes;
+        }
     }
 
     public static enum ReceiveFormat {
@@ -169,7 +435,7 @@ public class Receive extends Module {
 
     private static class ReceiveFormatParameter extends Parameter {
 
-        ReceiveFormat value;
+        private volatile ReceiveFormat value;
 
         ReceiveFormatParameter(String name, ReceiveFormat initValue, String documentation) {
             super(name, documentation);
@@ -205,6 +471,22 @@ public class Receive extends Module {
         }
     }
 
+    private class DecodeStatisticsCommand implements ICommand {
+
+        private static final String DECODESTATISTICS = "decodestatistics";
+
+        @Override
+        public String getName() {
+            return DECODESTATISTICS;
+        }
+
+        @Override
+        public List<String> exec(String[] args) throws CommandSyntaxException {
+            checkNoArgs(DECODESTATISTICS, args.length, 0, 0);
+            return Utils.singletonArrayList(decodeStatistics());
+        }
+    }
+
     private static class ReceiveCommand implements ICommand {
         private static final String RECEIVE = "receive";
 
@@ -216,8 +498,12 @@ public class Receive extends Module {
         @Override
         public List<String> exec(String[] args) throws HarcHardwareException, IOException, IncompatibleHardwareException, NoSuchHardwareException, NoSuchParameterException, CommandSyntaxException, AmbigousHardwareException, OddSequenceLengthException {
             checkNoArgs(RECEIVE, args.length, 0, 1);
-            IrSequence irSequence = args.length == 0 ? receive() : receive(args[0]);
-            return format(irSequence, ((ReceiveFormatParameter) Parameters.getInstance().get(RECEIVEFORMAT)).getValue());
+            GirsHardware hardware = args.length == 0 ? Engine.getInstance().getReceiveHardware() : Engine.getInstance().getHardware(args[0]);
+            if (Session.isAsynchronous()) {
+                Session.getCurrent().submit(RECEIVE, () -> format(receive(hardware), getReceiveFormat()));
+                return new ArrayList<>(0);
+            }
+            return format(receive(hardware), getReceiveFormat());
         }
     }
 }
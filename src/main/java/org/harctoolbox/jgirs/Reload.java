@@ -0,0 +1,83 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.List;
+import org.harctoolbox.girr.GirrException;
+import org.harctoolbox.ircore.IrCoreException;
+import org.harctoolbox.irp.IrpException;
+import org.harctoolbox.irp.IrpParseException;
+import org.xml.sax.SAXException;
+
+/**
+ * Module for reloading the configuration file without restarting the server.
+ */
+public class Reload extends Module {
+
+    private static volatile Reload instance = null;
+
+    static Reload newReload() {
+        if (instance != null)
+            throw new InvalidMultipleInstantiation();
+
+        instance = new Reload();
+        return instance;
+    }
+
+    public static Reload getInstance() {
+        return instance;
+    }
+
+    private Reload() {
+        super();
+        addCommand(new ReloadCommand());
+    }
+
+    private static class ReloadCommand implements ICommand {
+
+        private static final String RELOAD = "reload";
+        private static final String ALL = "all";
+
+        @Override
+        public String getName() {
+            return RELOAD;
+        }
+
+        @Override
+        public List<String> exec(String[] args) throws CommandSyntaxException, IOException, IrpException, IrCoreException, ReloadFailedException {
+            checkNoArgs(RELOAD, args.length, 0, 1);
+            if (args.length == 1 && !args[0].equalsIgnoreCase(ALL))
+                throw new CommandSyntaxException(RELOAD, "unknown argument " + args[0]);
+
+            try {
+                return Utils.singletonArrayList(Engine.getInstance().reload(args.length == 1));
+            } catch (SAXException | ParseException | GirrException | IrpParseException ex) {
+                throw new ReloadFailedException(ex);
+            }
+        }
+    }
+
+    public static class ReloadFailedException extends CommandException {
+
+        ReloadFailedException(Exception ex) {
+            super("Reload failed: " + ex.toString());
+        }
+    }
+}
@@ -20,73 +20,169 @@ package org.harctoolbox.jgirs;
 import java.io.IOException;
 import java.net.URL;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.harctoolbox.girr.GirrException;
 import org.harctoolbox.girr.Remote;
 import org.harctoolbox.girr.RemoteSet;
 import org.harctoolbox.ircore.IrCoreException;
+import org.harctoolbox.ircore.IrSequence;
+import org.harctoolbox.ircore.IrSignal;
+import org.harctoolbox.irp.IrpDatabase;
 import org.harctoolbox.irp.IrpException;
+import org.harctoolbox.irp.Protocol;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
 /**
- * This class implements a data base for Remotes and Commands. It is not claimed to be very efficient,
- * and may be replaced by a more efficient implementation, should the need arise.
- *
- * TODO: take default parameters into account: remove them if they have the default values.
+ * This class implements a data base for Remotes and Commands.
+ * Commands are also indexed by their protocol and parameters, for identifying received signals.
+ * If a protocol data base is given, parameters having their default values are removed,
+ * both when indexing and when looking up, so that e.g. a command given with an explicit
+ * default S matches a decode without S.
+ * Commands without protocol are instead indexed by a fingerprint of their signals,
+ * for finding the one closest to a received signal.
  */
 public class RemoteCommandDataBase {
 
+    private static final Logger logger = Logger.getLogger(RemoteCommandDataBase.class.getName());
+
     private static RemoteSet parseGirr(URL url) throws java.text.ParseException, IOException, SAXException, GirrException {
         Document doc = Utils.openXmlUrl(url, null, true, true);
         RemoteSet remoteSet = new RemoteSet(doc);
         return remoteSet;
     }
 
-    private TreeMap<String, Remote> remotes;
-    private TreeMap<ProtocolParameter, RemoteCommand> data;
+    private TreeMap<String, CompactRemote> remotes;
+    private final ProtocolParameterIndex<RemoteCommand> data;
+    private final SignalFingerprintIndex fingerprints; // commands without protocol
+    private final IrpDatabase irpDatabase; // for removing defaulted parameters; may be null
+    private final Map<String, ProtocolDefaults> defaults; // evaluated from irpDatabase, for the protocols added
+    private final boolean compact;
+    private volatile PrefixIndex<CompactRemote> remoteIndex; // built at first use after add
+    private volatile SearchIndex searchIndex; // ditto
+    private volatile QueryIndex queryIndex; // ditto
+    private volatile List<String> remoteNames; // ditto
 
     public RemoteCommandDataBase() {
         this(true);
     }
 
     public RemoteCommandDataBase(boolean caseInsensitive) {
-        this.data = new TreeMap<>();
+        this(caseInsensitive, null);
+    }
+
+    /**
+     * @param caseInsensitive
+     * @param irpDatabase Protocol data base, used to remove parameters having their default values. May be null.
+     */
+    public RemoteCommandDataBase(boolean caseInsensitive, IrpDatabase irpDatabase) {
+        this(caseInsensitive, irpDatabase, false);
+    }
+
+    /**
+     * @param caseInsensitive
+     * @param irpDatabase Protocol data base, used to remove parameters having their default values. May be null.
+     * @param compact If true, remotes added as Girr Remotes are stored in compact mode, see CompactRemote.
+     */
+    public RemoteCommandDataBase(boolean caseInsensitive, IrpDatabase irpDatabase, boolean compact) {
+        this.data = new ProtocolParameterIndex<>();
+        this.fingerprints = new SignalFingerprintIndex();
+        this.irpDatabase = irpDatabase;
+        this.defaults = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        this.compact = compact;
         this.remotes = caseInsensitive ? new TreeMap<>(String.CASE_INSENSITIVE_ORDER) : new TreeMap<>();
+        this.remoteIndex = null;
+        this.searchIndex = null;
+        this.queryIndex = null;
+        this.remoteNames = null;
+    }
+
+    public RemoteCommandDataBase(Iterable<RemoteSet> remoteSets, boolean caseInsensitive) throws IrpException, IrCoreException, GirrException {
+        this(remoteSets, caseInsensitive, null);
     }
 
-    public RemoteCommandDataBase(Iterable<RemoteSet> remoteSets, boolean caseInsensitive) throws IrpException, IrCoreException {
-        this(caseInsensitive);
+    public RemoteCommandDataBase(Iterable<RemoteSet> remoteSets, boolean caseInsensitive, IrpDatabase irpDatabase) throws IrpException, IrCoreException, GirrException {
+        this(caseInsensitive, irpDatabase);
         for (RemoteSet remoteSet : remoteSets)
             add(remoteSet);
     }
 
-    public RemoteCommandDataBase(Iterable<RemoteSet> remoteSets) throws IrpException, IrCoreException {
+    public RemoteCommandDataBase(Iterable<RemoteSet> remoteSets) throws IrpException, IrCoreException, GirrException {
         this(true);
         for (RemoteSet remoteSet : remoteSets)
             add(remoteSet);
     }
 
-    private void add(RemoteSet remoteSet) throws IrpException, IrCoreException {
+    private void add(RemoteSet remoteSet) throws IrpException, IrCoreException, GirrException {
         for (Remote remote : remoteSet.getRemotes()) {
-            add(remote);
+            add(CompactRemote.of(remote, compact));
         }
     }
 
-    private void add(Remote remote) throws IrpException, IrCoreException {
+    /**
+     * Adds remotes, replacing those with the same names.
+     * @param remotes
+     */
+    void addRemotes(Iterable<CompactRemote> remotes) {
+        for (CompactRemote remote : remotes)
+            add(remote);
+    }
+
+    private void add(CompactRemote remote) {
         remotes.put(remote.getName(), remote);
-        for (org.harctoolbox.girr.Command command : remote.getCommands().values()) {
-            RemoteCommand remoteCommand = new RemoteCommand(remote, command);
-            String protocol = command.getProtocolName();
-            Map<String, Long> parameters = command.getParameters();
-            ProtocolParameter params = new ProtocolParameter(protocol, parameters);
-            data.put(params, remoteCommand);
+        remoteIndex = null;
+        searchIndex = null;
+        queryIndex = null;
+        remoteNames = null;
+        for (int i = 0; i < remote.size(); i++) {
+            String protocol = remote.getProtocol(i);
+            if (protocol == null) {
+                addFingerprint(remote, i); // raw signal, not decodable
+                continue;
+            }
+
+            ProtocolDefaults protocolDefaults = getDefaults(protocol); // before the protocol is entered
+            data.put(protocol, remote.getParameters(i), protocolDefaults, new RemoteCommand(remote, i));
         }
     }
 
+    private void addFingerprint(CompactRemote remote, int index) {
+        try {
+            IrSignal irSignal = remote.toIrSignal(index);
+            IrSequence leading = irSignal.getIntroLength() > 0 ? irSignal.getIntroSequence() : irSignal.getRepeatSequence();
+            if (!fingerprints.add(new RemoteCommand(remote, index), leading.toInts()))
+                logger.log(Level.FINE, "{0}/{1} too short to be matched", new Object[]{remote.getName(), remote.getCommandName(index)});
+        } catch (IrpException | IrCoreException | RuntimeException ex) {
+            logger.log(Level.WARNING, "{0}/{1} cannot be rendered: {2}", new Object[]{remote.getName(), remote.getCommandName(index), ex.toString()});
+        }
+    }
+
+    /**
+     * Evaluates the defaults of a protocol at its first use, and declares the constant ones to the index.
+     */
+    private ProtocolDefaults getDefaults(String protocolName) {
+        ProtocolDefaults protocolDefaults = defaults.get(protocolName);
+        if (protocolDefaults == null) {
+            Protocol protocol;
+            try {
+                protocol = irpDatabase != null ? irpDatabase.getProtocol(protocolName) : null;
+            } catch (IrpException ex) {
+                protocol = null; // unknown protocol, parameters are used as they are
+            }
+            protocolDefaults = ProtocolDefaults.of(protocol);
+            defaults.put(protocolName, protocolDefaults);
+            data.setDefaults(protocolName, protocolDefaults.getConstants());
+        }
+        return protocolDefaults;
+    }
+
     public void add(Iterable<String> urls) throws ParseException, IOException, SAXException, IrpException, IrCoreException, GirrException {
         for (String url : urls) {
             RemoteSet remoteSet = parseGirr(new URL(url));
@@ -94,23 +190,160 @@ public class RemoteCommandDataBase {
         }
     }
 
-    public Remote getRemote(String remoteNamePrefix) throws NoSuchRemoteException, AmbigousRemoteException {
-        List<String> list = Utils.findStringsWithPrefix(remotes.keySet(), remoteNamePrefix);
-        if (list.isEmpty())
+    /**
+     * Builds the indexes now, instead of at first use. To be called when the data base is complete.
+     */
+    void buildIndexes() {
+        getRemoteIndex();
+        getSearchIndex();
+        getQueryIndex();
+        getRemoteNames();
+    }
+
+    private PrefixIndex<CompactRemote> getRemoteIndex() {
+        PrefixIndex<CompactRemote> index = remoteIndex;
+        if (index == null) {
+            index = new PrefixIndex<>(remotes);
+            remoteIndex = index;
+        }
+        return index;
+    }
+
+    private SearchIndex getSearchIndex() {
+        SearchIndex index = searchIndex;
+        if (index == null) {
+            index = new SearchIndex(remotes.values());
+            searchIndex = index;
+        }
+        return index;
+    }
+
+    private QueryIndex getQueryIndex() {
+        QueryIndex index = queryIndex;
+        if (index == null) {
+            index = new QueryIndex(remotes.values(), (protocol) -> defaults.getOrDefault(protocol, ProtocolDefaults.NONE));
+            queryIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Finds the commands with the given protocol and parameter values.
+     * Parameters not given in a command are taken with their default values, if the protocol data base defines them.
+     * @param protocol name of the protocol, case insensitive.
+     * @param parameters Parameters to match, possibly empty; the other parameters are arbitrary.
+     * @return the matching commands, ordered by remote and command name.
+     */
+    public List<RemoteCommand> query(String protocol, Map<String, Long> parameters) {
+        return getQueryIndex().query(protocol, parameters);
+    }
+
+    /**
+     * @return the protocols used in the data base, sorted case insensitively, with their numbers of commands.
+     */
+    public Map<String, Integer> getProtocols() {
+        return getQueryIndex().getProtocols();
+    }
+
+    /**
+     * @return the names of the remotes, sorted case insensitively, unmodifiable.
+     */
+    public List<String> getRemoteNames() {
+        List<String> names = remoteNames;
+        if (names == null) {
+            List<String> list = new ArrayList<>(remotes.keySet());
+            Collections.sort(list, String.CASE_INSENSITIVE_ORDER);
+            names = Collections.unmodifiableList(list);
+            remoteNames = names;
+        }
+        return names;
+    }
+
+    /**
+     * Searches the commands by the names of the commands, their remotes, and their protocols.
+     * All words of the text have to match, as a whole, as a prefix, or as a substring, case insensitively.
+     * @param text
+     * @return matching commands, best matches first.
+     */
+    public List<RemoteCommand> search(String text) {
+        return getSearchIndex().search(text);
+    }
+
+    /**
+     * Searches like search(text), returning only a part of the matches.
+     * @param text
+     * @param offset Number of matches to skip, non-negative.
+     * @param count Max number of matches to return, non-negative.
+     * @return matching commands, best matches first.
+     */
+    public List<RemoteCommand> search(String text, int offset, int count) {
+        List<RemoteCommand> matches = search(text);
+        int start = Math.min(offset, matches.size());
+        int end = (int) Math.min(matches.size(), (long) offset + count);
+        return new ArrayList<>(matches.subList(start, end));
+    }
+
+    public CompactRemote getRemote(String remoteNamePrefix) throws NoSuchRemoteException, AmbigousRemoteException {
+        PrefixIndex<CompactRemote> index = getRemoteIndex();
+        int position = index.find(remoteNamePrefix);
+        if (position == PrefixIndex.NOT_FOUND)
             throw new NoSuchRemoteException(remoteNamePrefix);
-        if (list.size() > 1)
+        if (position == PrefixIndex.AMBIGUOUS)
             throw new AmbigousRemoteException(remoteNamePrefix);
 
-        return remotes.get(list.get(0));
+        return index.get(position);
+    }
+
+    /**
+     * Finds a command in a remote from the data base, given the prefix of its name.
+     * @param remote
+     * @param commandNamePrefix
+     * @return the index of the command in the remote.
+     * @throws NoSuchCommandException
+     * @throws AmbigousCommandException
+     */
+    public int getCommand(CompactRemote remote, String commandNamePrefix) throws NoSuchCommandException, AmbigousCommandException {
+        int position = remote.find(commandNamePrefix);
+        if (position == PrefixIndex.NOT_FOUND)
+            throw new NoSuchCommandException(commandNamePrefix);
+        if (position == PrefixIndex.AMBIGUOUS)
+            throw new AmbigousCommandException(commandNamePrefix);
+
+        return position;
     }
 
-    public Collection<Remote> getRemotes() {
+    public Collection<CompactRemote> getRemotes() {
         return remotes.values();
     }
 
-    public org.harctoolbox.girr.Command getCommand(String remoteName, String commandName) {
-        Remote remote = remotes.get(remoteName);
-        return remote.getCommand(commandName);
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * @return number of commands.
+     */
+    public int getCommandCount() {
+        int count = 0;
+        for (CompactRemote remote : remotes.values())
+            count += remote.size();
+        return count;
+    }
+
+    /**
+     * @return a rough estimate of the heap used by the data base, in bytes, including the indexes built.
+     */
+    public long memory() {
+        long bytes = data.memory() + fingerprints.memory();
+        SearchIndex search = searchIndex;
+        if (search != null)
+            bytes += search.memory();
+        QueryIndex query = queryIndex;
+        if (query != null)
+            bytes += query.memory();
+        for (CompactRemote remote : remotes.values())
+            bytes += remote.memory();
+        return bytes;
     }
 
 //    public RemoteCommand getRemoteCommand(String protocol, Map<String, Long>parameters) {
@@ -119,7 +352,29 @@ public class RemoteCommandDataBase {
 //    }
 
     public RemoteCommand getRemoteCommand(ProtocolParameter params) {
-        return data.get(params);
+        return getRemoteCommand(params.getProtocol(), params.getParameters());
+    }
+
+    /**
+     * Identifies a command from its protocol and parameters, typically from a decode.
+     * Parameters having their default values need not be present.
+     * @param protocol
+     * @param parameters
+     * @return the command, or null if not found.
+     */
+    public RemoteCommand getRemoteCommand(String protocol, Map<String, Long> parameters) {
+        ProtocolDefaults protocolDefaults = defaults.get(protocol);
+        return protocolDefaults != null ? data.get(protocol, parameters, protocolDefaults) : null;
+    }
+
+    /**
+     * Finds the command without protocol whose signal is closest to the captured one, see SignalFingerprintIndex.
+     * @param durations captured durations in microseconds, starting with a flash.
+     * @param tolerance relative tolerance of each duration, e.g. 0.2; at most SignalFingerprintIndex.MAX_TOLERANCE.
+     * @return the closest command, or null if there is none within the tolerance.
+     */
+    public RemoteCommand match(int[] durations, double tolerance) {
+        return fingerprints.match(durations, tolerance, (command) -> remotes.get(command.getRemoteName()) == command.remote);
     }
 
     public boolean isEmpty() {
@@ -128,12 +383,12 @@ public class RemoteCommandDataBase {
 
     public static class RemoteCommand {
 
-        private final Remote remote;
-        private final org.harctoolbox.girr.Command command;
+        private final CompactRemote remote;
+        private final int index;
 
-        public RemoteCommand(Remote remote, org.harctoolbox.girr.Command command) {
+        RemoteCommand(CompactRemote remote, int index) {
             this.remote = remote;
-            this.command = command;
+            this.index = index;
         }
 
         @Override
@@ -143,35 +398,55 @@ public class RemoteCommandDataBase {
             if (getClass() != obj.getClass())
                 return false;
             final RemoteCommand other = (RemoteCommand) obj;
-            return this.command.getName().equals(other.command.getName())
-                    && this.remote.getName().equals(other.remote.getName());
+            return getCommandName().equals(other.getCommandName())
+                    && getRemoteName().equals(other.getRemoteName());
         }
 
         @Override
         public int hashCode() {
             int hash = 5;
-            hash = 19 * hash + this.remote.getName().hashCode();
-            hash = 19 * hash + this.command.getName().hashCode();
+            hash = 19 * hash + getRemoteName().hashCode();
+            hash = 19 * hash + getCommandName().hashCode();
             return hash;
         }
 
+        public String getRemoteName() {
+            return remote.getName();
+        }
+
+        public String getCommandName() {
+            return remote.getCommandName(index);
+        }
+
         /**
-         * @return the remote
+         * @return the protocol name, null if none.
          */
-        public Remote getRemote() {
-            return remote;
+        public String getProtocol() {
+            return remote.getProtocol(index);
+        }
+
+        /**
+         * @return the parameters, as given in the command.
+         */
+        public Map<String, Long> getParameters() {
+            return remote.getParameters(index);
+        }
+
+        Long getParameter(String name) {
+            return remote.getParameter(index, name);
         }
 
         /**
-         * @return the command
+         * @return the command, created if not kept.
+         * @throws IrpException
          */
-        public org.harctoolbox.girr.Command getCommand() {
-            return command;
+        public org.harctoolbox.girr.Command getCommand() throws IrpException {
+            return remote.getCommand(index);
         }
 
         @Override
         public String toString() {
-            return remote.getName() + "/" + command.getName();
+            return getRemoteName() + "/" + getCommandName();
         }
     }
 }
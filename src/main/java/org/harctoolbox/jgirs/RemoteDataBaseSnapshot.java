@@ -0,0 +1,347 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import org.harctoolbox.girr.Command;
+import org.harctoolbox.girr.GirrException;
+import org.harctoolbox.girr.Remote;
+import org.harctoolbox.ircore.IrCoreException;
+import org.harctoolbox.ircore.IrSequence;
+import org.harctoolbox.ircore.IrSignal;
+import org.harctoolbox.irp.IrpException;
+
+/**
+ * Binary snapshot of the remotes read from the named-remote sources, allowing a fast start
+ * without reading the sources. The file starts with a magic number and a format version,
+ * followed by the sources, each identified by its key (the canonical form of its attributes)
+ * and a stamp telling whether it has been changed since. This way, only changed sources need to be read.
+ * Remotes are stored with their meta data and comment, commands with their comments,
+ * as protocol and parameters when possible, otherwise as raw signals, with their frequency and duty cycle, if any.
+ * Thus, a remote read from a snapshot equals the CompactRemote written.
+ */
+final class RemoteDataBaseSnapshot {
+
+    private static final Logger logger = Logger.getLogger(RemoteDataBaseSnapshot.class.getName());
+
+    private static final int MAGIC = 0x4A47524D; // "JGRM"
+    private static final int VERSION = 3;
+    private static final byte PROTOCOL = 0;
+    private static final byte RAW = 1;
+
+    /**
+     * @param attributes Attributes of a named-remote element.
+     * @return a canonical form of the attributes, identifying the source.
+     */
+    static String key(Map<String, String> attributes) {
+        StringBuilder str = new StringBuilder(128);
+        new TreeMap<>(attributes).forEach((name, value) -> {
+            str.append(name).append('=').append(value).append(';');
+        });
+        return str.toString();
+    }
+
+    /**
+     * Computes a stamp of a source: a hash of its attributes, and, for local files, their modification times and sizes.
+     * Other sources are not accessed, so that a snapshot can be used also when they are not reachable.
+     * @param attributes Attributes of the named-remote element.
+     * @param urlAttribute Name of the attribute containing the URL.
+     * @return stamp, changing when the source is changed.
+     */
+    static long stamp(Map<String, String> attributes, String urlAttribute) {
+        StringBuilder str = new StringBuilder(key(attributes));
+        File file = localFile(attributes.get(urlAttribute));
+        if (file != null && file.isDirectory())
+            appendTree(str, file);
+        else if (file != null)
+            str.append(file.lastModified()).append(';').append(file.length());
+
+        long hash = 0xcbf29ce484222325L; // FNV-1a
+        for (byte b : str.toString().getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // For a directory source, all its files count.
+    private static void appendTree(StringBuilder str, File directory) {
+        try (Stream<Path> stream = Files.walk(directory.toPath())) {
+            stream.filter(Files::isRegularFile).sorted().forEach((path) -> {
+                File f = path.toFile();
+                str.append(path).append(';').append(f.lastModified()).append(';').append(f.length()).append(';');
+            });
+        } catch (IOException | UncheckedIOException ex) {
+            str.append(ex.toString()); // read it next time again
+        }
+    }
+
+    private static File localFile(String url) {
+        if (url == null)
+            return null;
+        try {
+            URL u = new URL(url);
+            return u.getProtocol().equals("file") ? new File(u.getPath()) : null;
+        } catch (MalformedURLException ex) {
+            return new File(url);
+        }
+    }
+
+    /**
+     * Reads a snapshot.
+     * @param file
+     * @param compact If true, the remotes are created in compact mode.
+     * @return the sources, by their keys, in the order written; empty if the file is missing or unreadable.
+     */
+    static Map<String, Source> read(File file, boolean compact) {
+        Map<String, Source> result = new LinkedHashMap<>(16);
+        if (!file.canRead())
+            return result;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger.log(Level.INFO, "Snapshot {0} has another format, ignored", file);
+                return result;
+            }
+            int noSources = in.readInt();
+            for (int s = 0; s < noSources; s++) {
+                String key = in.readUTF();
+                long stamp = in.readLong();
+                int noRemotes = in.readInt();
+                List<CompactRemote> remotes = new ArrayList<>(noRemotes);
+                for (int r = 0; r < noRemotes; r++)
+                    remotes.add(readRemote(in, compact));
+                result.put(key, new Source(stamp, remotes));
+            }
+            return result;
+        } catch (IOException | GirrException | IrCoreException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Snapshot {0} could not be read: {1}", new Object[]{file, ex.toString()});
+            result.clear();
+            return result;
+        }
+    }
+
+    private static CompactRemote readRemote(DataInputStream in, boolean compact) throws IOException, GirrException, IrCoreException {
+        String name = in.readUTF();
+        String displayName = readOptionalUTF(in);
+        String manufacturer = readOptionalUTF(in);
+        String model = readOptionalUTF(in);
+        String deviceClass = readOptionalUTF(in);
+        String remoteName = readOptionalUTF(in);
+        Remote.MetaData metaData = new Remote.MetaData(name, displayName, manufacturer, model, deviceClass, remoteName);
+        String comment = readOptionalUTF(in);
+        int noCommands = in.readInt();
+        CompactRemote.Builder builder = new CompactRemote.Builder(metaData, comment, noCommands);
+        for (int c = 0; c < noCommands; c++)
+            readCommand(in, builder);
+        return builder.build(compact);
+    }
+
+    private static void readCommand(DataInputStream in, CompactRemote.Builder builder) throws IOException, IrCoreException {
+        String name = in.readUTF();
+        String comment = readOptionalUTF(in);
+        byte kind = in.readByte();
+        if (kind == PROTOCOL) {
+            String protocol = in.readUTF();
+            int noParameters = in.readInt();
+            Map<String, Long> parameters = new HashMap<>(2 * noParameters);
+            for (int p = 0; p < noParameters; p++)
+                parameters.put(in.readUTF(), in.readLong());
+            builder.add(name, comment, protocol, parameters, null);
+            return;
+        }
+        if (kind != RAW)
+            throw new IOException("Unknown command kind " + kind);
+
+        Double frequency = readOptionalDouble(in);
+        Double dutyCycle = readOptionalDouble(in);
+        IrSequence intro = readDurations(in);
+        IrSequence repeat = readDurations(in);
+        IrSequence ending = readDurations(in);
+        builder.add(new Command(name, comment, new IrSignal(intro, repeat, ending, frequency, dutyCycle)));
+    }
+
+    private static IrSequence readDurations(DataInputStream in) throws IOException, IrCoreException {
+        int[] durations = new int[in.readInt()];
+        for (int i = 0; i < durations.length; i++)
+            durations[i] = in.readInt();
+        return new IrSequence(durations);
+    }
+
+    private static String readOptionalUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static Double readOptionalDouble(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readDouble() : null;
+    }
+
+    /**
+     * Writes a snapshot, atomically replacing an existing one.
+     * @param file
+     * @param sources The sources, by their keys.
+     * @return success
+     */
+    static boolean write(File file, Map<String, Source> sources) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 65536))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(sources.size());
+                for (Map.Entry<String, Source> source : sources.entrySet()) {
+                    out.writeUTF(source.getKey());
+                    out.writeLong(source.getValue().getStamp());
+                    out.writeInt(source.getValue().getRemotes().size());
+                    for (CompactRemote remote : source.getValue().getRemotes())
+                        writeRemote(out, remote);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | IrpException | IrCoreException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Snapshot {0} could not be written: {1}", new Object[]{file, ex.toString()});
+            if (!tmp.delete())
+                logger.log(Level.FINE, "Could not remove {0}", tmp);
+            return false;
+        }
+    }
+
+    private static void writeRemote(DataOutputStream out, CompactRemote remote) throws IOException, IrpException, IrCoreException {
+        Remote.MetaData metaData = remote.getMetaData();
+        out.writeUTF(metaData.getName());
+        writeOptionalUTF(out, metaData.getDisplayName());
+        writeOptionalUTF(out, metaData.getManufacturer());
+        writeOptionalUTF(out, metaData.getModel());
+        writeOptionalUTF(out, metaData.getDeviceClass());
+        writeOptionalUTF(out, metaData.getRemoteName());
+        writeOptionalUTF(out, remote.getComment());
+        out.writeInt(remote.size());
+        for (int i = 0; i < remote.size(); i++)
+            writeCommand(out, remote, i);
+    }
+
+    private static void writeCommand(DataOutputStream out, CompactRemote remote, int index) throws IOException, IrpException, IrCoreException {
+        out.writeUTF(remote.getCommandName(index));
+        writeOptionalUTF(out, remote.getComment(index));
+
+        String protocol = remote.getProtocol(index);
+        if (protocol != null) {
+            out.writeByte(PROTOCOL);
+            out.writeUTF(protocol);
+            Map<String, Long> parameters = remote.getParameters(index);
+            out.writeInt(parameters.size());
+            for (Map.Entry<String, Long> parameter : parameters.entrySet()) {
+                out.writeUTF(parameter.getKey());
+                out.writeLong(parameter.getValue());
+            }
+        } else {
+            IrSignal irSignal = remote.toIrSignal(index);
+            out.writeByte(RAW);
+            writeOptionalDouble(out, irSignal.getFrequency());
+            writeOptionalDouble(out, irSignal.getDutyCycle());
+            writeDurations(out, irSignal.getIntroSequence());
+            writeDurations(out, irSignal.getRepeatSequence());
+            writeDurations(out, irSignal.getEndingSequence());
+        }
+    }
+
+    private static void writeDurations(DataOutputStream out, IrSequence irSequence) throws IOException {
+        int[] durations = irSequence.toInts();
+        out.writeInt(durations.length);
+        for (int duration : durations)
+            out.writeInt(duration);
+    }
+
+    private static void writeOptionalUTF(DataOutputStream out, String string) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null)
+            out.writeUTF(string);
+    }
+
+    private static void writeOptionalDouble(DataOutputStream out, Double value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeDouble(value);
+    }
+
+    private RemoteDataBaseSnapshot() {
+    }
+
+    /**
+     * The remotes read from a source, with the stamp of the source at the time of reading.
+     */
+    static final class Source {
+
+        private final long stamp;
+        private final List<CompactRemote> remotes;
+
+        Source(long stamp, Collection<CompactRemote> remotes) {
+            this.stamp = stamp;
+            this.remotes = Collections.unmodifiableList(new ArrayList<>(remotes));
+        }
+
+        long getStamp() {
+            return stamp;
+        }
+
+        List<CompactRemote> getRemotes() {
+            return remotes;
+        }
+
+        /**
+         * @param compact
+         * @return an equivalent Source with remotes of the given compactness; possibly this.
+         * @throws GirrException if the commands cannot be created.
+         */
+        Source withCompact(boolean compact) throws GirrException {
+            if (remotes.stream().allMatch((remote) -> remote.isCompact() == compact))
+                return this;
+
+            List<CompactRemote> list = new ArrayList<>(remotes.size());
+            for (CompactRemote remote : remotes)
+                list.add(remote.withCompact(compact));
+            return new Source(stamp, list);
+        }
+    }
+}
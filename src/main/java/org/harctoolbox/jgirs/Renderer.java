@@ -20,7 +20,9 @@ package org.harctoolbox.jgirs;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
 import org.harctoolbox.ircore.IrSignal;
 import org.harctoolbox.irp.IrpDatabase;
 import org.harctoolbox.irp.IrpException;
@@ -29,33 +31,68 @@ import org.harctoolbox.irp.NameEngine;
 
 /**
  * Implements rendering commands.
+ * Rendered signals are cached, keyed by the protocol name and the parameters.
  */
 public class Renderer extends Module {
 
-    private IrpDatabase irpDatabase;
+    public static final String RENDERCACHESIZE = "renderCacheSize";
+
+    private static String cacheKey(String protocol, Map<String, Long> params) {
+        return protocol.toLowerCase(Locale.US) + new TreeMap<>(params).toString();
+    }
+
+    private volatile IrpDatabase irpDatabase;
+    private final IntegerParameter cacheSize;
+    private final LruCache<String, IrSignal> cache;
 
     public Renderer(String irpProtocolsName) throws FileNotFoundException, IOException, IrpParseException {
+        this(new IrpDatabase(irpProtocolsName));
+    }
+
+    public Renderer(IrpDatabase irpDatabase) {
         super();
-        if (irpProtocolsName == null)
+        if (irpDatabase == null)
             throw new NullPointerException();
-        irpDatabase = new IrpDatabase(irpProtocolsName);
-        org.harctoolbox.girr.Command.setIrpMaster(irpDatabase);
+        cacheSize = new IntegerParameter(RENDERCACHESIZE, 256, "Number of rendered signals to keep in the cache (global)");
+        cache = new LruCache<>("render", cacheSize::getValue);
+        setIrpDatabase(irpDatabase);
+        Caches.register(cache);
+        addParameter(cacheSize);
         addCommand(new ProtocolsCommand());
     }
 
+    /**
+     * Replaces the protocol data base, invalidating the cache of rendered signals.
+     * @param irpDatabase
+     */
+    public final void setIrpDatabase(IrpDatabase irpDatabase) {
+        this.irpDatabase = irpDatabase;
+        org.harctoolbox.girr.Command.setIrpMaster(irpDatabase);
+        cache.clear();
+        if (NamedRemotes.getInstance() != null)
+            NamedRemotes.getInstance().clearCache(); // commands in protocol/parameter form depend on it
+    }
+
     public IrSignal render(String[] args, int skip) throws IrpException {
         int index = skip;
         String protocol = args[index];
         index++;
         String[] defs = new String[args.length - index];
         System.arraycopy(args, index, defs, 0, args.length - index);
-        NameEngine params = NameEngine.parse(args);
+        NameEngine params = NameEngine.parse(defs);
         return render(protocol, params.toMap());
     }
 
     public IrSignal render(String protocol, Map<String, Long> params) throws IrpException {
-        return irpDatabase.render(protocol, params);
-        //Master.newProtocol(protocol).renderIrSignal(params);
+        String key = cacheKey(protocol, params);
+        IrSignal irSignal = cache.get(key);
+        if (irSignal == null) {
+            IrpDatabase database = irpDatabase;
+            irSignal = database.render(protocol, params);
+            if (database == irpDatabase) // do not cache a signal rendered with a replaced data base
+                cache.put(key, irSignal);
+        }
+        return irSignal;
     }
 
     public List<String> protocols() {
@@ -0,0 +1,274 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable full text index over the remote names, command names, and protocol names of a set of remotes.
+ * Names are split into tokens at characters other than letters and digits, and compared case insensitively.
+ * A search term matches a token if it is equal to it, a prefix of it, or a substring of it, in falling order of rank.
+ * Substrings are found through an index of the trigrams of the tokens.
+ */
+final class SearchIndex {
+
+    private static final int EXACT = 3;
+    private static final int PREFIX = 2;
+    private static final int SUBSTRING = 1;
+
+    private static final int COMMAND_WEIGHT = 3;
+    private static final int REMOTE_WEIGHT = 2;
+    private static final int PROTOCOL_WEIGHT = 1;
+
+    /**
+     * Splits a string into lower case tokens, consisting of letters and digits.
+     * @param string
+     * @return tokens, possibly empty.
+     */
+    static List<String> tokenize(String string) {
+        List<String> result = new ArrayList<>(4);
+        int start = -1;
+        for (int i = 0; i <= string.length(); i++) {
+            boolean letter = i < string.length() && Character.isLetterOrDigit(string.charAt(i));
+            if (letter && start < 0)
+                start = i;
+            else if (!letter && start >= 0) {
+                result.add(string.substring(start, i).toLowerCase(Locale.US));
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    private final CompactRemote[] remotes;
+    private final int[] commandRemote; // command document -> remote document
+    private final int[] firstCommand;  // remote document -> its first command document; the commands are consecutive
+    private final TokenIndex remoteNames;
+    private final TokenIndex commandNames;
+    private final TokenIndex protocols;
+
+    SearchIndex(Collection<CompactRemote> remoteCollection) {
+        remotes = remoteCollection.toArray(new CompactRemote[remoteCollection.size()]);
+        int noCommands = 0;
+        for (CompactRemote remote : remotes)
+            noCommands += remote.size();
+
+        commandRemote = new int[noCommands];
+        firstCommand = new int[remotes.length + 1];
+        TokenIndex.Builder remoteBuilder = new TokenIndex.Builder();
+        TokenIndex.Builder commandBuilder = new TokenIndex.Builder();
+        TokenIndex.Builder protocolBuilder = new TokenIndex.Builder();
+        int command = 0;
+        for (int r = 0; r < remotes.length; r++) {
+            CompactRemote remote = remotes[r];
+            firstCommand[r] = command;
+            remoteBuilder.add(r, tokenize(remote.getName()));
+            for (int c = 0; c < remote.size(); c++) {
+                commandRemote[command] = r;
+                commandBuilder.add(command, tokenize(remote.getCommandName(c)));
+                String protocol = remote.getProtocol(c);
+                if (protocol != null)
+                    protocolBuilder.add(command, tokenize(protocol));
+                command++;
+            }
+        }
+        firstCommand[remotes.length] = command;
+        remoteNames = remoteBuilder.build();
+        commandNames = commandBuilder.build();
+        protocols = protocolBuilder.build();
+    }
+
+    /**
+     * Searches for commands matching all the terms of the text, either in their own names,
+     * the names of their protocols, or the names of their remotes.
+     * @param text
+     * @return matching commands, best matches first.
+     */
+    List<RemoteCommandDataBase.RemoteCommand> search(String text) {
+        List<String> terms = tokenize(text);
+        Map<Integer, Integer> scores = null; // command document -> score
+        for (String term : terms) {
+            Map<Integer, Integer> termScores = commandNames.match(term, COMMAND_WEIGHT);
+            protocols.match(term, PROTOCOL_WEIGHT).forEach((command, score) -> termScores.merge(command, score, Math::max));
+            Map<Integer, Integer> remoteScores = remoteNames.match(term, REMOTE_WEIGHT);
+
+            if (scores == null) {
+                // First term: all commands of the matching remotes are candidates
+                remoteScores.forEach((remote, score) -> {
+                    for (int command = firstCommand[remote]; command < firstCommand[remote + 1]; command++)
+                        termScores.merge(command, score, Math::max);
+                });
+                scores = termScores;
+            } else {
+                Map<Integer, Integer> remaining = new HashMap<>(scores.size());
+                for (Map.Entry<Integer, Integer> entry : scores.entrySet()) {
+                    int command = entry.getKey();
+                    int score = Math.max(termScores.getOrDefault(command, 0), remoteScores.getOrDefault(commandRemote[command], 0));
+                    if (score > 0)
+                        remaining.put(command, entry.getValue() + score);
+                }
+                scores = remaining;
+            }
+            if (scores.isEmpty())
+                break;
+        }
+
+        if (scores == null)
+            return new ArrayList<>(0);
+
+        List<Map.Entry<Integer, Integer>> hits = new ArrayList<>(scores.entrySet());
+        hits.sort((a, b) -> {
+            int cmp = Integer.compare(b.getValue(), a.getValue());
+            return cmp != 0 ? cmp : Integer.compare(a.getKey(), b.getKey());
+        });
+        List<RemoteCommandDataBase.RemoteCommand> result = new ArrayList<>(hits.size());
+        hits.forEach((hit) -> {
+            int command = hit.getKey();
+            int remote = commandRemote[command];
+            result.add(new RemoteCommandDataBase.RemoteCommand(remotes[remote], command - firstCommand[remote]));
+        });
+        return result;
+    }
+
+    /**
+     * @return a rough estimate of the heap used, in bytes, not counting the remotes.
+     */
+    long memory() {
+        return 16 + 4L * remotes.length + 16 + 4L * commandRemote.length + 16 + 4L * firstCommand.length
+                + remoteNames.memory() + commandNames.memory() + protocols.memory();
+    }
+
+    /**
+     * Maps tokens to the documents (numbers) containing them.
+     */
+    private static final class TokenIndex {
+
+        private final String[] tokens;  // sorted
+        private final int[][] postings; // documents of each token, ascending
+        private final Map<String, int[]> trigrams; // tokens (by number) containing the trigram
+
+        private TokenIndex(String[] tokens, int[][] postings, Map<String, int[]> trigrams) {
+            this.tokens = tokens;
+            this.postings = postings;
+            this.trigrams = trigrams;
+        }
+
+        /**
+         * @param term lower case search term
+         * @param weight factor for the rank
+         * @return the matching documents, with their ranks
+         */
+        Map<Integer, Integer> match(String term, int weight) {
+            Map<Integer, Integer> result = new HashMap<>(16);
+            // Tokens starting with the term are consecutive
+            int position = Arrays.binarySearch(tokens, term);
+            for (int t = position >= 0 ? position : -position - 1; t < tokens.length && tokens[t].startsWith(term); t++)
+                addPostings(result, t, weight * (tokens[t].length() == term.length() ? EXACT : PREFIX));
+
+            if (term.length() >= 3) {
+                int[] candidates = null;
+                for (int i = 0; i + 3 <= term.length(); i++) {
+                    int[] tokenList = trigrams.get(term.substring(i, i + 3));
+                    if (tokenList == null)
+                        return result;
+                    if (candidates == null || tokenList.length < candidates.length)
+                        candidates = tokenList; // the shortest list is checked
+                }
+                for (int t : candidates)
+                    if (!tokens[t].startsWith(term) && tokens[t].contains(term))
+                        addPostings(result, t, weight * SUBSTRING);
+            } else {
+                // too short for the trigrams; only a few short tokens are affected anyhow
+                for (int t = 0; t < tokens.length; t++)
+                    if (!tokens[t].startsWith(term) && tokens[t].contains(term))
+                        addPostings(result, t, weight * SUBSTRING);
+            }
+            return result;
+        }
+
+        long memory() {
+            long bytes = 16 + 4L * tokens.length + 16 + 4L * postings.length;
+            for (int t = 0; t < tokens.length; t++)
+                bytes += 40 + 2L * tokens[t].length() + 16 + 4L * postings[t].length;
+            for (int[] tokenList : trigrams.values())
+                bytes += 48 + 46 + 16 + 4L * tokenList.length; // entry, trigram, list
+            return bytes;
+        }
+
+        private void addPostings(Map<Integer, Integer> result, int token, int score) {
+            for (int document : postings[token])
+                result.merge(document, score, Math::max);
+        }
+
+        private static final class Builder {
+
+            private final TreeMap<String, IntList> map = new TreeMap<>();
+
+            void add(int document, List<String> tokens) {
+                for (String token : tokens) {
+                    IntList list = map.computeIfAbsent(token, (t) -> new IntList());
+                    if (list.size == 0 || list.data[list.size - 1] != document)
+                        list.add(document);
+                }
+            }
+
+            TokenIndex build() {
+                String[] tokens = map.keySet().toArray(new String[map.size()]);
+                int[][] postings = new int[tokens.length][];
+                Map<String, IntList> trigramLists = new HashMap<>(4 * tokens.length);
+                for (int t = 0; t < tokens.length; t++) {
+                    postings[t] = map.get(tokens[t]).toArray();
+                    String token = tokens[t];
+                    for (int i = 0; i + 3 <= token.length(); i++) {
+                        IntList list = trigramLists.computeIfAbsent(token.substring(i, i + 3), (s) -> new IntList());
+                        if (list.size == 0 || list.data[list.size - 1] != t)
+                            list.add(t);
+                    }
+                }
+                Map<String, int[]> trigrams = new HashMap<>(2 * trigramLists.size());
+                trigramLists.forEach((trigram, list) -> {
+                    trigrams.put(trigram, list.toArray());
+                });
+                return new TokenIndex(tokens, postings, trigrams);
+            }
+        }
+    }
+
+    private static final class IntList {
+
+        private int[] data = new int[4];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, 2 * size);
+            data[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static org.harctoolbox.jgirs.Engine.ERROR;
+
+/**
+ * The state of one client session. Parameter values set within a session are
+ * kept here, overriding the global values in Parameters for this session only.
+ * The session executing on the current thread is found with getCurrent().
+ * Answers of asynchronously executed commands are delivered to the output of the session.
+ */
+public final class Session {
+
+    private static final Logger logger = Logger.getLogger(Session.class.getName());
+
+    private static final ThreadLocal<Session> current = new ThreadLocal<>();
+
+    private static final ExecutorService asyncExecutor = Executors.newCachedThreadPool((Runnable runnable) -> {
+        Thread thread = new Thread(runnable, "jgirs-async");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @return the session of the current thread, or null if there is none.
+     */
+    public static Session getCurrent() {
+        return current.get();
+    }
+
+    static void setCurrent(Session session) {
+        if (session == null)
+            current.remove();
+        else
+            current.set(session);
+    }
+
+    /**
+     * @return true if the current session has asked for commands waiting for a signal to be executed asynchronously.
+     * @throws NoSuchParameterException
+     */
+    static boolean isAsynchronous() throws NoSuchParameterException {
+        Session session = getCurrent();
+        return session != null && session.output != null
+                && Parameters.getInstance().getBoolean(Parameters.ASYNCHRONOUS);
+    }
+
+    private final Map<String, Parameter> localParameters;
+    private final PrintStream output;
+    private volatile boolean quitRequested;
+    private volatile boolean closed;
+
+    /**
+     * @param output Stream to which asynchronous answers are written; null if not supported.
+     */
+    public Session(PrintStream output) {
+        localParameters = new ConcurrentHashMap<>(8);
+        this.output = output;
+        quitRequested = false;
+        closed = false;
+    }
+
+    public Session() {
+        this(null);
+    }
+
+    /**
+     * Ends the session; answers arriving later are discarded.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Executes a command in the background, on behalf of this session.
+     * The command returns at once; its answer is later delivered to the output,
+     * as a line consisting of the command name followed by the answer.
+     * @param commandName
+     * @param job
+     */
+    void submit(String commandName, Callable<Collection<String>> job) {
+        asyncExecutor.execute(() -> {
+            setCurrent(this);
+            try {
+                Collection<String> answer;
+                try {
+                    answer = job.call();
+                } catch (Exception ex) {
+                    answer = Utils.singletonArrayList(ERROR + ": " + ex.toString());
+                }
+                deliver(commandName, answer);
+            } finally {
+                setCurrent(null);
+            }
+        });
+    }
+
+    /**
+     * Writes an answer, not requested by a command line, to the output of the session.
+     * Must be called from a thread having this session as the current one.
+     * @param commandName
+     * @param answer
+     */
+    void deliver(String commandName, Collection<String> answer) {
+        if (closed || output == null)
+            return;
+
+        String line = commandName + " " + Utils.packAnswer(answer);
+        output.println(line);
+        if (output.checkError())
+            logger.log(Level.INFO, "Could not deliver answer to {0}, client gone?", commandName);
+    }
+
+    public boolean isQuitRequested() {
+        return quitRequested;
+    }
+
+    public void setQuitRequested(boolean quitRequested) {
+        this.quitRequested = quitRequested;
+    }
+
+    /**
+     * @param name
+     * @return the session local value of the parameter, or null if it has not been set in this session.
+     */
+    Parameter getParameter(String name) {
+        return localParameters.get(name);
+    }
+
+    Collection<Parameter> getParameters() {
+        return localParameters.values();
+    }
+
+    /**
+     * Sets a session local value of a parameter.
+     * @param global The global parameter, serving as template.
+     * @param value New value, as String.
+     * @return the session local parameter.
+     */
+    Parameter setParameter(Parameter global, String value) {
+        Parameter local = global.clone();
+        local.set(value);
+        localParameters.put(local.getName(), local);
+        return local;
+    }
+
+    Parameter setParameter(Parameter global, Object value) {
+        Parameter local = global.clone();
+        local.set(value);
+        localParameters.put(local.getName(), local);
+        return local;
+    }
+}
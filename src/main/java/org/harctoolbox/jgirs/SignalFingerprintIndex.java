@@ -0,0 +1,164 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Index for finding the command whose signal is closest to a captured one.
+ * Every command is represented by its leading sequence (the intro sequence if present, otherwise the repeat sequence)
+ * without its final gap. The first durations are quantized on a logarithmic scale, and hashed to a key.
+ * The buckets are wide enough that the durations within the tolerance of a duration fall in at most two buckets,
+ * so a lookup probes every combination of the possible buckets (multi-probe locality sensitive hashing),
+ * without missing any candidate. The candidates are then compared over their full length.
+ *
+ * Adding is not thread safe; after the index has been built, lookups can be made concurrently.
+ */
+final class SignalFingerprintIndex {
+
+    /**
+     * Largest relative tolerance supported by the index.
+     */
+    static final double MAX_TOLERANCE = 0.25;
+
+    private static final int KEY_LENGTH = 12; // durations; shorter sequences are not indexed
+
+    // Factor 3 between the buckets. Must not be less than (1 + MAX_TOLERANCE) / (1 - MAX_TOLERANCE).
+    // Common durations, like 560 and 1690, or 889 and 1778, then all fit within a bucket, also with the tolerance.
+    private static final double BUCKET_WIDTH = Math.log(3.0);
+
+    private static int bucket(double duration) {
+        return (int) Math.floor(Math.log(Math.max(duration, 1.0)) / BUCKET_WIDTH);
+    }
+
+    private static long mix(long key, int bucket) {
+        return key * 0x9E3779B97F4A7C15L + bucket;
+    }
+
+    private final Map<Long, List<Integer>> table;
+    private final List<RemoteCommandDataBase.RemoteCommand> commands;
+    private final List<int[]> references;
+
+    SignalFingerprintIndex() {
+        table = new HashMap<>(64);
+        commands = new ArrayList<>(64);
+        references = new ArrayList<>(64);
+    }
+
+    /**
+     * Adds a command.
+     * @param command
+     * @param durations leading sequence of its signal, in microseconds.
+     * @return false if the sequence is too short to be indexed.
+     */
+    boolean add(RemoteCommandDataBase.RemoteCommand command, int[] durations) {
+        int length = durations.length - 1; // the final gap is not compared, captures end with a timeout
+        if (length < KEY_LENGTH)
+            return false;
+
+        int[] reference = Arrays.copyOf(durations, length);
+        long key = 0L;
+        for (int i = 0; i < KEY_LENGTH; i++)
+            key = mix(key, bucket(reference[i]));
+        table.computeIfAbsent(key, (k) -> new ArrayList<>(1)).add(commands.size());
+        commands.add(command);
+        references.add(reference);
+        return true;
+    }
+
+    int size() {
+        return commands.size();
+    }
+
+    /**
+     * Finds the command closest to a captured sequence, within the tolerance.
+     * @param captured durations in microseconds, starting with a flash.
+     * @param tolerance relative tolerance for every duration, at most MAX_TOLERANCE.
+     * @param valid Only commands accepted by this are considered.
+     * @return the command with the smallest mean relative deviation, or null if none is within the tolerance.
+     */
+    RemoteCommandDataBase.RemoteCommand match(int[] captured, double tolerance, Predicate<RemoteCommandDataBase.RemoteCommand> valid) {
+        if (captured.length < KEY_LENGTH || commands.isEmpty())
+            return null;
+
+        double t = Math.min(Math.max(tolerance, 0.0), MAX_TOLERANCE);
+        int[] low = new int[KEY_LENGTH];
+        int[] high = new int[KEY_LENGTH];
+        for (int i = 0; i < KEY_LENGTH; i++) {
+            low[i] = bucket(captured[i] / (1 + t));
+            high[i] = bucket(captured[i] / (1 - t));
+        }
+
+        Best best = new Best();
+        probe(captured, t, valid, low, high, 0, 0L, best);
+        return best.command;
+    }
+
+    private void probe(int[] captured, double tolerance, Predicate<RemoteCommandDataBase.RemoteCommand> valid,
+            int[] low, int[] high, int position, long key, Best best) {
+        if (position == KEY_LENGTH) {
+            List<Integer> entries = table.get(key);
+            if (entries != null)
+                for (int entry : entries)
+                    compare(captured, tolerance, valid, entry, best);
+            return;
+        }
+        for (int b = low[position]; b <= high[position]; b++)
+            probe(captured, tolerance, valid, low, high, position + 1, mix(key, b), best);
+    }
+
+    private void compare(int[] captured, double tolerance, Predicate<RemoteCommandDataBase.RemoteCommand> valid, int entry, Best best) {
+        int[] reference = references.get(entry);
+        if (captured.length < reference.length)
+            return;
+
+        double sum = 0.0;
+        for (int i = 0; i < reference.length; i++) {
+            double deviation = Math.abs(captured[i] - reference[i]) / (double) reference[i];
+            if (deviation > tolerance)
+                return;
+            sum += deviation;
+        }
+        double score = sum / reference.length;
+        if (score < best.score && valid.test(commands.get(entry))) {
+            best.score = score;
+            best.command = commands.get(entry);
+        }
+    }
+
+    /**
+     * @return a rough estimate of the heap used, in bytes.
+     */
+    long memory() {
+        long bytes = 48L * table.size() + 40L * commands.size();
+        for (int[] reference : references)
+            bytes += 16 + 4L * reference.length;
+        return bytes;
+    }
+
+    private static final class Best {
+
+        private double score = Double.MAX_VALUE;
+        private RemoteCommandDataBase.RemoteCommand command = null;
+    }
+}
@@ -22,7 +22,7 @@ package org.harctoolbox.jgirs;
  */
 final class StringParameter extends Parameter {
 
-    private String value;
+    private volatile String value;
 
     StringParameter(String name, String initValue, String documentation) {
         super(name, documentation);
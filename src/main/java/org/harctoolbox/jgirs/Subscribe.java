@@ -0,0 +1,331 @@
+/*
+Copyright (C) 2016 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.jgirs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.harctoolbox.harchardware.HarcHardwareException;
+import org.harctoolbox.harchardware.ir.IReceive;
+import org.harctoolbox.ircore.IrCoreException;
+import org.harctoolbox.ircore.IrSequence;
+import org.harctoolbox.ircore.OddSequenceLengthException;
+import org.harctoolbox.irp.IrpException;
+import static org.harctoolbox.jgirs.Engine.ERROR;
+
+/**
+ * Subscriptions to received signals. For every receiving hardware with subscribers,
+ * a reader thread keeps receiving, and pushes every received signal to all the subscribed sessions,
+ * formatted according to the receiveFormat of the session.
+ * Sessions having receiveEvents set instead get key events: press, hold, and release (see KeyEventDetector);
+ * the repeats of a key held are then neither decoded nor sent.
+ */
+public class Subscribe extends Module {
+
+    private static final Logger logger = Logger.getLogger(Subscribe.class.getName());
+
+    private static final String RECEIVE = "receive";
+    private static final int defaultRepeatWindow = 250;
+
+    public static final String RECEIVEEVENTS       = "receiveEvents";
+    public static final String RECEIVEREPEATWINDOW = "receiveRepeatWindow";
+
+    private static volatile Subscribe instance = null;
+
+    static Subscribe newSubscribe() {
+        if (instance != null)
+            throw new InvalidMultipleInstantiation();
+
+        instance = new Subscribe();
+        return instance;
+    }
+
+    public static Subscribe getInstance() {
+        return instance;
+    }
+
+    private static Session getSubscriber() throws ExecutionException {
+        Session session = Session.getCurrent();
+        if (session == null)
+            throw new ExecutionException("Subscriptions require a client session");
+        return session;
+    }
+
+    private final Map<String, ReceiverLoop> receivers;
+
+    private Subscribe() {
+        super();
+        receivers = new HashMap<>(4);
+        addCommand(new SubscribeCommand());
+        addCommand(new UnsubscribeCommand());
+        addParameter(new BooleanParameter(RECEIVEEVENTS, false,
+                "Deliver the signals of subscriptions as key events (press, hold, release) instead of every frame"));
+        addParameter(new IntegerParameter(RECEIVEREPEATWINDOW, defaultRepeatWindow,
+                "Maximal time (in milliseconds) between the frames of a key held, for receiveEvents (global)"));
+    }
+
+    public synchronized void subscribeReceive(GirsHardware hardware, Session session) throws IncompatibleHardwareException {
+        if (!(hardware.getHardware() instanceof IReceive))
+            throw new IncompatibleHardwareException(IReceive.class.getSimpleName());
+
+        ReceiverLoop receiver = receivers.get(hardware.getName());
+        if (receiver == null) {
+            receiver = new ReceiverLoop(hardware);
+            receivers.put(hardware.getName(), receiver);
+            receiver.subscribers.add(session);
+            receiver.start();
+        } else if (!receiver.subscribers.contains(session))
+            receiver.subscribers.add(session);
+    }
+
+    public synchronized void unsubscribeReceive(GirsHardware hardware, Session session) {
+        ReceiverLoop receiver = receivers.get(hardware.getName());
+        if (receiver != null)
+            receiver.subscribers.remove(session);
+    }
+
+    public synchronized void unsubscribeAll(Session session) {
+        receivers.values().forEach((receiver) -> {
+            receiver.subscribers.remove(session);
+        });
+    }
+
+    public synchronized List<String> subscriptions(Session session) {
+        List<String> result = new ArrayList<>(receivers.size());
+        receivers.values().stream().filter((receiver) -> (receiver.subscribers.contains(session))).forEach((receiver) -> {
+            result.add(RECEIVE + " " + receiver.hardware.getName());
+        });
+        return result;
+    }
+
+    // Called by the reader thread; it terminates if true is returned.
+    private synchronized boolean retire(ReceiverLoop receiver) {
+        if (!receiver.subscribers.isEmpty())
+            return false;
+
+        receivers.remove(receiver.hardware.getName());
+        return true;
+    }
+
+    private synchronized void retireForcibly(ReceiverLoop receiver) {
+        receivers.remove(receiver.hardware.getName());
+    }
+
+    private class ReceiverLoop extends Thread {
+
+        private final GirsHardware hardware;
+        private final List<Session> subscribers;
+        private final KeyEventDetector detector;
+        private final Map<Session, List<String>> pressed; // formatted signal of the key held, per session
+        private int beginTimeout;
+        private int endingTimeout;
+        private int repeatWindow;
+        private int currentBeginTimeout;
+        private long generation;
+
+        ReceiverLoop(GirsHardware hardware) {
+            super("jgirs-receive-" + hardware.getName());
+            setDaemon(true);
+            this.hardware = hardware;
+            this.subscribers = new CopyOnWriteArrayList<>();
+            this.detector = new KeyEventDetector();
+            this.pressed = new HashMap<>(4);
+            this.generation = -1L;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // The values are the global ones, read once, instead of for every signal.
+                beginTimeout = Parameters.getInstance().getInteger(Receive.RECEIVEBEGINTIMEOUT);
+                endingTimeout = Parameters.getInstance().getInteger(Receive.RECEIVEENDINGTIMEOUT);
+                repeatWindow = Parameters.getInstance().getInteger(RECEIVEREPEATWINDOW);
+                while (!retire(this)) {
+                    IrSequence irSequence = receive();
+                    long now = System.nanoTime() / 1000000L;
+                    if (irSequence != null)
+                        publish(irSequence, detector.frame(irSequence.toInts(), now, repeatWindow));
+                    else {
+                        KeyEventDetector.Event release = detector.timeout(now, repeatWindow);
+                        if (release != null)
+                            publish(null, Collections.singletonList(release));
+                    }
+                }
+            } catch (NoSuchParameterException | IncompatibleHardwareException | HarcHardwareException | IOException | OddSequenceLengthException | RuntimeException ex) {
+                logger.log(Level.WARNING, "Receiving from {0} failed: {1}", new Object[]{hardware.getName(), ex.toString()});
+                retireForcibly(this);
+                publishError(ex);
+            }
+        }
+
+        private IrSequence receive() throws IncompatibleHardwareException, HarcHardwareException, IOException, NoSuchParameterException, OddSequenceLengthException {
+            hardware.lock();
+            try {
+                IReceive receiver = (IReceive) hardware.getHardware();
+                // While a key is held, wait only for its next repeat, so that its release is noticed in time.
+                int timeout = detector.isActive() ? Math.min(repeatWindow, beginTimeout) : beginTimeout;
+                // Only if somebody else has used the hardware since our last turn,
+                // it has to be initialized and its timeouts set again.
+                if (hardware.getGeneration() != generation + 1) {
+                    initializeHardware(hardware, IReceive.class);
+                    receiver.setBeginTimeout(timeout);
+                    receiver.setEndingTimeout(endingTimeout);
+                } else if (timeout != currentBeginTimeout)
+                    receiver.setBeginTimeout(timeout);
+                currentBeginTimeout = timeout;
+                generation = hardware.getGeneration();
+                return receiver.receive();
+            } finally {
+                hardware.unlock();
+            }
+        }
+
+        /**
+         * @param irSequence Received frame, or null if none.
+         * @param events Events caused by the frame, or by its absence.
+         */
+        private void publish(IrSequence irSequence, List<KeyEventDetector.Event> events) {
+            subscribers.forEach((session) -> {
+                if (session.isClosed()) {
+                    subscribers.remove(session);
+                    pressed.remove(session);
+                    return;
+                }
+                Session.setCurrent(session);
+                try {
+                    if (Parameters.getInstance().getBoolean(RECEIVEEVENTS)) {
+                        for (KeyEventDetector.Event event : events)
+                            publish(session, irSequence, event);
+                        return;
+                    }
+                    if (irSequence == null)
+                        return;
+                    List<String> answer = Receive.format(irSequence, Receive.getReceiveFormat());
+                    if (answer != null && !answer.isEmpty())
+                        session.deliver(RECEIVE, answer);
+                } catch (NoSuchParameterException ex) {
+                    logger.log(Level.WARNING, null, ex);
+                } finally {
+                    Session.setCurrent(null);
+                }
+            });
+        }
+
+        // The signal is formatted once per key stroke, when pressed.
+        private void publish(Session session, IrSequence irSequence, KeyEventDetector.Event event) throws NoSuchParameterException {
+            List<String> answer = event.getType() == KeyEventDetector.Type.press
+                    ? Receive.format(irSequence, Receive.getReceiveFormat())
+                    : event.getType() == KeyEventDetector.Type.release ? pressed.remove(session) : pressed.get(session);
+            if (event.getType() == KeyEventDetector.Type.press)
+                pressed.put(session, answer);
+            if (answer == null || answer.isEmpty())
+                return; // not recognized, or events turned on while held
+
+            List<String> line = new ArrayList<>(answer.size() + 2);
+            line.add(event.getType().toString());
+            if (event.getType() != KeyEventDetector.Type.press)
+                line.add(Integer.toString(event.getRepeats()));
+            line.addAll(answer);
+            session.deliver(RECEIVE, line);
+        }
+
+        private void publishError(Exception ex) {
+            List<String> answer = Utils.singletonArrayList(ERROR + ": " + ex.toString());
+            subscribers.forEach((session) -> {
+                Session.setCurrent(session);
+                try {
+                    session.deliver(RECEIVE, answer);
+                } finally {
+                    Session.setCurrent(null);
+                }
+            });
+        }
+    }
+
+    private class SubscribeCommand extends CommandWithSubcommands implements ICommand {
+
+        private static final String SUBSCRIBE = "subscribe";
+
+        SubscribeCommand() {
+            addCommand(new SubscribeReceiveCommand());
+        }
+
+        @Override
+        public String getName() {
+            return SUBSCRIBE;
+        }
+
+        @Override
+        public Collection<String> exec(String[] args) throws IOException, IrCoreException, IrpException, CommandException, AmbigousCommandException, HarcHardwareException, AmbigousHardwareException {
+            return args.length == 0 ? subscriptions(getSubscriber()) : super.exec(args);
+        }
+
+        private class SubscribeReceiveCommand implements ICommand {
+
+            @Override
+            public String getName() {
+                return RECEIVE;
+            }
+
+            @Override
+            public List<String> exec(String[] args) throws CommandSyntaxException, NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException, IncompatibleHardwareException, ExecutionException {
+                checkNoArgs(RECEIVE, args.length, 0, 1);
+                GirsHardware hardware = args.length == 0 ? Engine.getInstance().getReceiveHardware() : Engine.getInstance().getHardware(args[0]);
+                subscribeReceive(hardware, getSubscriber());
+                return new ArrayList<>(0);
+            }
+        }
+    }
+
+    private class UnsubscribeCommand extends CommandWithSubcommands implements ICommand {
+
+        private static final String UNSUBSCRIBE = "unsubscribe";
+
+        UnsubscribeCommand() {
+            addCommand(new UnsubscribeReceiveCommand());
+        }
+
+        @Override
+        public String getName() {
+            return UNSUBSCRIBE;
+        }
+
+        private class UnsubscribeReceiveCommand implements ICommand {
+
+            @Override
+            public String getName() {
+                return RECEIVE;
+            }
+
+            @Override
+            public List<String> exec(String[] args) throws CommandSyntaxException, NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException, ExecutionException {
+                checkNoArgs(RECEIVE, args.length, 0, 1);
+                GirsHardware hardware = args.length == 0 ? Engine.getInstance().getReceiveHardware() : Engine.getInstance().getHardware(args[0]);
+                unsubscribeReceive(hardware, getSubscriber());
+                return new ArrayList<>(0);
+            }
+        }
+    }
+}
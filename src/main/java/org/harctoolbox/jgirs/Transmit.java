@@ -19,6 +19,7 @@ package org.harctoolbox.jgirs;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import org.harctoolbox.harchardware.HarcHardwareException;
@@ -43,6 +44,8 @@ import org.harctoolbox.irp.UnsupportedRepeatException;
  */
 public class Transmit extends Module {
 
+    private static final int RAW_HEADER = 5; // count, frequency, and the three lengths
+
     private static volatile Transmit instance = null;
 
     static Module newTransmit(Renderer renderer, Irp irp) {
@@ -61,12 +64,12 @@ public class Transmit extends Module {
         }
     }
 
-    private static int[] parseRaw(String[] args, int length, int skip) throws CommandSyntaxException {
-        int[] result = new int[length];
-        for (int i = 0; i < length; i++)
-            result[i] = intParse(args[i + skip]);
-
-        return result;
+    private static int[] parseInts(CharSequence line, int start, int radix) throws CommandSyntaxException {
+        try {
+            return Utils.parseInts(line, start, radix);
+        } catch (NumberFormatException ex) {
+            throw new CommandSyntaxException(ex.getMessage());
+        }
     }
 
     private static boolean transmit(int count, IrSignal irSignal, IRawIrSender hardware, Transmitter transmitter) throws HarcHardwareException, NoSuchTransmitterException, IOException, InvalidArgumentException {
@@ -83,7 +86,7 @@ public class Transmit extends Module {
         return Transmitters.getInstance().getTransmitter(hardware);
     }
 
-    // This command is not meaningful as long as the program is single threaded.
+    // This command would have to bypass the hardware lock held by the transmitting session.
 //    public static boolean stop() throws NoSuchHardwareException, NoSuchParameterException, IncompatibleHardwareException, HarcHardwareException, IOException, AmbigousHardwareException {
 //        GirsHardware hardware = Engine.getInstance().getTransmitHardware();
 //        initializeHardware(hardware, IIrSenderStop.class);
@@ -109,15 +112,25 @@ public class Transmit extends Module {
 
     private boolean transmit(int count, IrSignal irSignal) throws HarcHardwareException, NoSuchTransmitterException, IOException, IncompatibleHardwareException, NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException, InvalidArgumentException {
         GirsHardware hardware = Engine.getInstance().getTransmitHardware();
-        initializeHardware(hardware, IRawIrSender.class);
-        IRawIrSender irsender = (IRawIrSender) hardware.getHardware();
-        Transmitter transmitter = getTransmitter(hardware);
-        return transmit(count, irSignal, irsender, transmitter);
+        hardware.lock();
+        try {
+            initializeHardware(hardware, IRawIrSender.class);
+            IRawIrSender irsender = (IRawIrSender) hardware.getHardware();
+            Transmitter transmitter = getTransmitter(hardware);
+            return transmit(count, irSignal, irsender, transmitter);
+        } finally {
+            hardware.unlock();
+        }
     }
 
-    private boolean transmitCcf(String[] args) throws CommandSyntaxException, HarcHardwareException, NoSuchTransmitterException, IOException, IncompatibleHardwareException, NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException, Pronto.NonProntoFormatException, InvalidArgumentException {
-        int count = intParse(args[0]);
-        int[] data = Pronto.parseAsInts(args, 1);
+    // The line contains the count, followed by the Pronto Hex numbers.
+    private boolean transmitCcf(String name, CharSequence line, int start) throws CommandSyntaxException, HarcHardwareException, NoSuchTransmitterException, IOException, IncompatibleHardwareException, NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException, InvalidArgumentException {
+        int countStart = Utils.skipWhitespace(line, start);
+        int countEnd = Utils.tokenEnd(line, countStart);
+        if (countStart == countEnd)
+            throw new CommandSyntaxException(name, 2, Integer.MAX_VALUE);
+        int count = intParse(line.subSequence(countStart, countEnd).toString());
+        int[] data = parseInts(line, countEnd, 16);
         return transmitCcf(count, data);
     }
 
@@ -133,6 +146,24 @@ public class Transmit extends Module {
         return transmit(count, irSignal);
     }
 
+    // The line contains count, frequency, intro length, repeat length, ending length, and the durations.
+    private boolean transmitRaw(String name, int minArgs, CharSequence line, int start) throws CommandSyntaxException, HarcHardwareException, NoSuchTransmitterException, IOException, IncompatibleHardwareException, NoSuchParameterException, NoSuchHardwareException, AmbigousHardwareException, InvalidArgumentException {
+        int[] numbers = parseInts(line, start, 10);
+        checkNoArgs(name, numbers.length, minArgs, Integer.MAX_VALUE);
+        int count = numbers[0];
+        int frequency = numbers[1];
+        int introLength = numbers[2];
+        int repeatLength = numbers[3];
+        int endingLength = numbers[4];
+        if (introLength % 2 != 0 || repeatLength % 2 != 0 || endingLength % 2 != 0)
+            throw new CommandSyntaxException("Lengths must be even");
+        int length = introLength + repeatLength + endingLength;
+        if (length < 0 || numbers.length - RAW_HEADER < length)
+            throw new CommandSyntaxException(name, "too few durations");
+        int[] data = Arrays.copyOfRange(numbers, RAW_HEADER, RAW_HEADER + length);
+        return transmitRaw(count, frequency, introLength, repeatLength, endingLength, data);
+    }
+
     public boolean transmitRaw(int count, int frequency, int introLength, int repeatLength, int endingLength, int[] data) throws HarcHardwareException, NoSuchTransmitterException, IOException, IncompatibleHardwareException, NoSuchParameterException, NoSuchHardwareException, AmbigousHardwareException, InvalidArgumentException {
         IrSignal irSignal = new IrSignal(data, introLength, repeatLength, frequency);
         return transmit(count, irSignal);
@@ -141,7 +172,7 @@ public class Transmit extends Module {
     public boolean transmitIrp(int count, String irpCode, Map<String, Long> parameters) throws HarcHardwareException, NoSuchTransmitterException, IOException, IncompatibleHardwareException, NoSuchHardwareException, NoSuchParameterException, NoSuchModuleException, AmbigousHardwareException, UnsupportedRepeatException, NameUnassignedException, InvalidNameException, IrpInvalidArgumentException, DomainViolationException, InvalidArgumentException {
         if (irp == null)
             throw new NoSuchModuleException("Irp");
-        IrSignal irSignal = Irp.render(irpCode, parameters);
+        IrSignal irSignal = irp.render(irpCode, parameters);
         return transmit(count, irSignal);
     }
 
@@ -169,7 +200,7 @@ public class Transmit extends Module {
 //        }
 //    }
 
-    private class TransmitCommand extends CommandWithSubcommands implements ICommand {
+    private class TransmitCommand extends CommandWithSubcommands implements ILineCommand {
 
         TransmitCommand() {
             addCommand(new TransmitHexCommand());
@@ -188,7 +219,7 @@ public class Transmit extends Module {
             return "transmit";
         }
 
-        private class TransmitHexCommand implements ICommand {
+        private class TransmitHexCommand implements ILineCommand {
 
             @Override
             public String getName() {
@@ -196,12 +227,17 @@ public class Transmit extends Module {
             }
 
             @Override
-            public List<String> exec(String[] args) throws CommandSyntaxException, HarcHardwareException, NoSuchTransmitterException, IOException, IncompatibleHardwareException, NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException, Pronto.NonProntoFormatException, InvalidArgumentException {
-                return transmitCcf(args) ? new ArrayList<>(0) : null;
+            public List<String> exec(String[] args) throws CommandSyntaxException, HarcHardwareException, NoSuchTransmitterException, IOException, IncompatibleHardwareException, NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException, InvalidArgumentException {
+                return exec(String.join(" ", args), 0);
+            }
+
+            @Override
+            public List<String> exec(CharSequence line, int start) throws CommandSyntaxException, HarcHardwareException, NoSuchTransmitterException, IOException, IncompatibleHardwareException, NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException, InvalidArgumentException {
+                return transmitCcf(getName(), line, start) ? new ArrayList<>(0) : null;
             }
         }
 
-        private class TransmitCcfCommand implements ICommand {
+        private class TransmitCcfCommand implements ILineCommand {
 
             @Override
             public String getName() {
@@ -209,12 +245,17 @@ public class Transmit extends Module {
             }
 
             @Override
-            public List<String> exec(String[] args) throws CommandSyntaxException, HarcHardwareException, NoSuchTransmitterException, IOException, IncompatibleHardwareException, NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException, Pronto.NonProntoFormatException, InvalidArgumentException {
-                return transmitCcf(args) ? new ArrayList<>(0) : null;
+            public List<String> exec(String[] args) throws CommandSyntaxException, HarcHardwareException, NoSuchTransmitterException, IOException, IncompatibleHardwareException, NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException, InvalidArgumentException {
+                return exec(String.join(" ", args), 0);
+            }
+
+            @Override
+            public List<String> exec(CharSequence line, int start) throws CommandSyntaxException, HarcHardwareException, NoSuchTransmitterException, IOException, IncompatibleHardwareException, NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException, InvalidArgumentException {
+                return transmitCcf(getName(), line, start) ? new ArrayList<>(0) : null;
             }
         }
 
-        private class TransmitRawCommand implements ICommand {
+        private class TransmitRawCommand implements ILineCommand {
 
             private static final String RAW = "raw";
 
@@ -223,20 +264,14 @@ public class Transmit extends Module {
                 return RAW;
             }
 
-            @SuppressWarnings("ValueOfIncrementOrDecrementUsed")
             @Override
             public List<String> exec(String[] args) throws CommandSyntaxException, HarcHardwareException, NoSuchTransmitterException, IOException, IncompatibleHardwareException, NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException, InvalidArgumentException {
-                checkNoArgs(RAW, args.length, 3, Integer.MAX_VALUE);
-                int index = 0;
-                int count = intParse(args[index++]); // throw NumberFormatException
-                int frequency = intParse(args[index++]);
-                int introLength= intParse(args[index++]);
-                int repeatLength= intParse(args[index++]);
-                int endingLength= intParse(args[index++]);
-                if (introLength % 2 != 0 || repeatLength % 2 != 0 || endingLength % 2 != 0)
-                    throw new CommandSyntaxException("Lengths must be even");
-                int[] data = parseRaw(args, introLength+repeatLength+endingLength, index);
-                return transmitRaw(count, frequency, introLength, repeatLength, endingLength, data) ? new ArrayList<>(0) : null;
+                return exec(String.join(" ", args), 0);
+            }
+
+            @Override
+            public List<String> exec(CharSequence line, int start) throws CommandSyntaxException, HarcHardwareException, NoSuchTransmitterException, IOException, IncompatibleHardwareException, NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException, InvalidArgumentException {
+                return transmitRaw(RAW, RAW_HEADER, line, start) ? new ArrayList<>(0) : null;
             }
         }
 
@@ -258,7 +293,7 @@ public class Transmit extends Module {
                 String irpCode = args[index++];
                 String[] defs = new String[args.length - index];
                 System.arraycopy(args, index, defs, 0, args.length - index);
-                NameEngine parameters = NameEngine.parse(args);
+                NameEngine parameters = NameEngine.parse(defs);
                 return transmitIrp(count, irpCode, parameters.toMap()) ? new ArrayList<>(0) : null;
             }
         }
@@ -304,7 +339,7 @@ public class Transmit extends Module {
         }
     }
 
-    private class SendCommand implements ICommand {
+    private class SendCommand implements ILineCommand {
 
         private static final String SEND = "send";
 
@@ -313,20 +348,14 @@ public class Transmit extends Module {
             return SEND;
         }
 
-        @SuppressWarnings("ValueOfIncrementOrDecrementUsed")
         @Override
         public List<String> exec(String[] args) throws CommandSyntaxException, HarcHardwareException, NoSuchTransmitterException, IOException, IncompatibleHardwareException, NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException, InvalidArgumentException {
-            checkNoArgs(SEND, args.length, 8, Integer.MAX_VALUE);
-            int index = 0;
-            int count = intParse(args[index++]); // throws NumberFormatException
-            int frequency = intParse(args[index++]);
-            int introLength = intParse(args[index++]);
-            int repeatLength = intParse(args[index++]);
-            int endingLength = intParse(args[index++]);
-            if (introLength % 2 != 0 || repeatLength % 2 != 0 || endingLength % 2 != 0)
-                throw new CommandSyntaxException("Lengths must be even");
-            int[] data = parseRaw(args, introLength + repeatLength + endingLength, index);
-            return transmitRaw(count, frequency, introLength, repeatLength, endingLength, data) ? new ArrayList<>(0) : null;
+            return exec(String.join(" ", args), 0);
+        }
+
+        @Override
+        public List<String> exec(CharSequence line, int start) throws CommandSyntaxException, HarcHardwareException, NoSuchTransmitterException, IOException, IncompatibleHardwareException, NoSuchHardwareException, NoSuchParameterException, AmbigousHardwareException, InvalidArgumentException {
+            return transmitRaw(SEND, 8, line, start) ? new ArrayList<>(0) : null;
         }
     }
 }
@@ -21,9 +21,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.harctoolbox.harchardware.HarcHardwareException;
 import org.harctoolbox.harchardware.ir.ITransmitter;
 import org.harctoolbox.harchardware.ir.Transmitter;
@@ -45,9 +45,15 @@ public class Transmitters extends Module {
 
     public static List<String> transmitters(GirsHardware hardware)
             throws NoSuchHardwareException, NoSuchParameterException, IncompatibleHardwareException, HarcHardwareException, IOException {
-        initializeHardware(hardware, ITransmitter.class);
-        ITransmitter irsender = (ITransmitter) hardware.getHardware();
-        String[] transmitterNames = irsender.getTransmitterNames();
+        String[] transmitterNames;
+        hardware.lock();
+        try {
+            initializeHardware(hardware, ITransmitter.class);
+            ITransmitter irsender = (ITransmitter) hardware.getHardware();
+            transmitterNames = irsender.getTransmitterNames();
+        } finally {
+            hardware.unlock();
+        }
         List<String> list = Arrays.asList(transmitterNames);
         Collections.sort(list, String.CASE_INSENSITIVE_ORDER);
         return list;
@@ -71,7 +77,7 @@ public class Transmitters extends Module {
 
     private Transmitters() {
         super();
-        transmitterMap = new HashMap<>(4);
+        transmitterMap = new ConcurrentHashMap<>(4);
         addCommand(new GetTransmittersCommand());
         addCommand(new SetTransmittersCommand());
     }
@@ -81,9 +87,15 @@ public class Transmitters extends Module {
     }
 
     public void setTransmitter(GirsHardware hardware, String transmitterName) throws IncompatibleHardwareException, HarcHardwareException, IOException, NoSuchParameterException {
-        initializeHardware(hardware, ITransmitter.class);
-        ITransmitter irsender = (ITransmitter) hardware.getHardware();
-        Transmitter transmitter = irsender.getTransmitter(transmitterName);
+        Transmitter transmitter;
+        hardware.lock();
+        try {
+            initializeHardware(hardware, ITransmitter.class);
+            ITransmitter irsender = (ITransmitter) hardware.getHardware();
+            transmitter = irsender.getTransmitter(transmitterName);
+        } finally {
+            hardware.unlock();
+        }
         setTransmitter(hardware, transmitter);
     }
 
@@ -28,7 +28,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.StringJoiner;
 import javax.xml.validation.Schema;
@@ -86,15 +85,194 @@ public class Utils {
         return sortedString(Arrays.asList(things));
     }
 
+    private static final String WHITESPACE_REGEXP = "\\s+";
+
+    /**
+     * Splits the argument at the separators not enclosed in quotes.
+     * From each token, the first quote and a trailing quote are removed, and it is trimmed.
+     * Trailing empty tokens are discarded.
+     * @param s String to be split.
+     * @param separator Regular expression for the separator.
+     * Single characters and "\\s+" are handled without regular expressions.
+     * @return Array of the tokens.
+     */
     public static String[] tokenizer(String s, String separator) {
+        if (separator.equals(WHITESPACE_REGEXP))
+            return tokenizer(s);
+        if (separator.length() == 1 && ".$|()[{^?*+\\".indexOf(separator.charAt(0)) < 0)
+            return tokenizer(s, separator.charAt(0));
+
         String[] toks = s.split(separator + "(?=([^\"]*\"[^\"]*\")*[^\"]*$)");
         for (int i = 0; i < toks.length; i++)
             toks[i] = toks[i].replaceFirst("\"", "").replaceFirst("\"$", "").trim();
         return toks;
     }
 
+    /**
+     * Splits the argument at the separator characters not enclosed in quotes, in one pass.
+     * Otherwise like {@link #tokenizer(String, String)}.
+     * @param s
+     * @param separator
+     * @return Array of the tokens.
+     */
+    public static String[] tokenizer(CharSequence s, char separator) {
+        List<String> tokens = new ArrayList<>(8);
+        boolean inQuote = false;
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '"')
+                inQuote = !inQuote;
+            else if (ch == separator && !inQuote) {
+                tokens.add(token(s, start, i));
+                start = i + 1;
+            }
+        }
+        return finishTokens(tokens, s, start);
+    }
+
+    /**
+     * Splits the argument at runs of white space not enclosed in quotes, in one pass.
+     * Otherwise like {@link #tokenizer(String, String)}.
+     * @param s
+     * @return Array of the tokens.
+     */
+    public static String[] tokenizer(CharSequence s) {
+        List<String> tokens = new ArrayList<>(8);
+        boolean inQuote = false;
+        int start = 0;
+        int i = 0;
+        while (i < s.length()) {
+            char ch = s.charAt(i);
+            if (ch == '"') {
+                inQuote = !inQuote;
+                i++;
+            } else if (isWhitespace(ch) && !inQuote) {
+                tokens.add(token(s, start, i));
+                do
+                    i++;
+                while (i < s.length() && isWhitespace(s.charAt(i)));
+                start = i;
+            } else
+                i++;
+        }
+        return finishTokens(tokens, s, start);
+    }
+
     public static String[] tokenizer(String s) {
-        return tokenizer(s, "\\s+");
+        return tokenizer((CharSequence) s);
+    }
+
+    // The characters matched by \\s in a regular expression
+    private static boolean isWhitespace(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r' || ch == '\f' || ch == '\u000B';
+    }
+
+    private static String[] finishTokens(List<String> tokens, CharSequence s, int start) {
+        if (tokens.isEmpty())
+            return new String[] { s.length() == 0 ? "" : token(s, 0, s.length()) };
+
+        if (start < s.length())
+            tokens.add(token(s, start, s.length()));
+
+        // As String.split: trailing empty tokens are discarded
+        int size = tokens.size();
+        while (size > 0 && tokens.get(size - 1) == null)
+            size--;
+        String[] result = new String[size];
+        for (int i = 0; i < size; i++)
+            result[i] = tokens.get(i) != null ? tokens.get(i) : "";
+        return result;
+    }
+
+    // Returns null for an empty token, for finishTokens to identify it.
+    private static String token(CharSequence s, int start, int end) {
+        if (start == end)
+            return null;
+
+        int quote = -1;
+        for (int i = start; i < end; i++)
+            if (s.charAt(i) == '"') {
+                quote = i;
+                break;
+            }
+        String token;
+        if (quote < 0)
+            token = s.subSequence(start, end).toString();
+        else {
+            StringBuilder sb = new StringBuilder(end - start);
+            sb.append(s, start, quote).append(s, quote + 1, end);
+            int last = sb.length() - 1;
+            if (last >= 0 && sb.charAt(last) == '"')
+                sb.setLength(last);
+            token = sb.toString();
+        }
+        return token.trim();
+    }
+
+    /**
+     * Parses white space separated integers, without splitting into strings first.
+     * @param s
+     * @param start Position to start at.
+     * @param radix 10 for decimal numbers, 16 for hexadecimal (e.g. Pronto Hex) numbers.
+     * @return Array of the numbers.
+     * @throws NumberFormatException if a token is not a valid number.
+     */
+    public static int[] parseInts(CharSequence s, int start, int radix) {
+        int[] result = new int[16];
+        int count = 0;
+        int i = start;
+        int length = s.length();
+        while (true) {
+            while (i < length && isWhitespace(s.charAt(i)))
+                i++;
+            if (i == length)
+                break;
+
+            int tokenStart = i;
+            boolean negative = s.charAt(i) == '-';
+            if (negative || s.charAt(i) == '+')
+                i++;
+            long value = 0L;
+            int digits = 0;
+            while (i < length && !isWhitespace(s.charAt(i))) {
+                int digit = Character.digit(s.charAt(i), radix);
+                if (digit < 0)
+                    throw new NumberFormatException("Unparseable number: " + s.subSequence(tokenStart, tokenEnd(s, i)));
+                value = value * radix + digit;
+                if (value > 0x80000000L)
+                    throw new NumberFormatException("Number too large: " + s.subSequence(tokenStart, tokenEnd(s, i)));
+                digits++;
+                i++;
+            }
+            if (digits == 0 || (!negative && value > Integer.MAX_VALUE))
+                throw new NumberFormatException("Unparseable number: " + s.subSequence(tokenStart, i));
+
+            if (count == result.length)
+                result = Arrays.copyOf(result, 2 * count);
+            result[count++] = (int) (negative ? -value : value);
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * @return position of the first white space character at or after i, or the length of s.
+     */
+    static int tokenEnd(CharSequence s, int i) {
+        int end = i;
+        while (end < s.length() && !isWhitespace(s.charAt(end)))
+            end++;
+        return end;
+    }
+
+    /**
+     * @return position of the first character at or after i that is not white space, or the length of s.
+     */
+    static int skipWhitespace(CharSequence s, int i) {
+        int start = i;
+        while (start < s.length() && isWhitespace(s.charAt(start)))
+            start++;
+        return start;
     }
 
     public static Document openXmlUrl(URL url, Schema schema, boolean isNamespaceAware, boolean isXIncludeAware) throws IOException, SAXException {
@@ -123,17 +301,6 @@ public class Utils {
         return list;
     }
 
-    public static List<String> findStringsWithPrefix(Collection<String> collection, String prefix) {
-        List<String> result = new ArrayList<>(8);
-        if (collection.contains(prefix))
-            result.add(prefix);
-        else
-            collection.stream().filter((candidate) -> (candidate.toLowerCase(Locale.US).startsWith(prefix.toLowerCase(Locale.US)))).forEach((candidate) -> {
-                result.add(candidate);
-            });
-        return result;
-    }
-
     public static Map<String, Long> toParameters(long F) {
         Map<String, Long> parameters = new HashMap<>(1);
         parameters.put("F", F);
@@ -164,6 +331,21 @@ public class Utils {
         return parameters;
     }
 
+    /**
+     * Packs the answer of a command into one line, as sent to a client.
+     * @param list answer, possibly empty or null
+     * @return the line
+     */
+    static String packAnswer(Collection<String> list) {
+        try {
+            return list == null ? Engine.ERROR
+                    : list.isEmpty() ? Engine.OK
+                    : pack(list, Parameters.getInstance().getString(Parameters.LISTSEPARATOR));
+        } catch (NoSuchParameterException ex) {
+            throw new RuntimeException();
+        }
+    }
+
     static String pack(Iterable<String> result, String separator) {
         StringJoiner stringJoiner = new StringJoiner(separator);
 
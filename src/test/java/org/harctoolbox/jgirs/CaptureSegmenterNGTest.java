@@ -0,0 +1,103 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import static org.testng.Assert.assertEquals;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class CaptureSegmenterNGTest {
+
+    private static final int GAP = 8000;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    public CaptureSegmenterNGTest() {
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of segment method, of class CaptureSegmenter, with an intro frame followed by dittos.
+     */
+    @Test
+    public void testIntroDittos() {
+        System.out.println("introDittos");
+        int[] durations = new int[]{
+            9000, 4500, 560, 560, 560, 1690, 560, 40000,
+            9010, 2260, 560, 96000,
+            8990, 2240, 570, 96100,
+            9000, 2250, 550, 30000 // ends with the timeout
+        };
+        CaptureSegmenter.Segments result = CaptureSegmenter.segment(durations, GAP);
+        assertEquals(result.toString(38000.0),
+                "Freq=38000Hz[+9000 -4500 +560 -560 +560 -1690 +560 -40000][+9000 -2250 +560 -96050][] repeats=3 frames=4");
+    }
+
+    /**
+     * Test of segment method, of class CaptureSegmenter, with equal frames only, like RC5.
+     */
+    @Test
+    public void testAllEqual() {
+        System.out.println("allEqual");
+        int[] durations = new int[]{
+            889, 889, 1778, 1778, 889, 889, 889, 90000,
+            900, 880, 1790, 1770, 880, 890, 880, 89000,
+            880, 900, 1766, 1786, 898, 888, 898, 12000
+        };
+        CaptureSegmenter.Segments result = CaptureSegmenter.segment(durations, GAP);
+        assertEquals(result.toString(null), "[][+890 -890 +1778 -1778 +889 -889 +889 -89500][] repeats=3 frames=3");
+    }
+
+    /**
+     * Test of segment method, of class CaptureSegmenter, without repetition.
+     */
+    @Test
+    public void testNoRepetition() {
+        System.out.println("noRepetition");
+        int[] durations = new int[]{
+            9000, 4500, 560, 560, 560, 40000,
+            9000, 4500, 560, 1690, 560, 30000
+        };
+        CaptureSegmenter.Segments result = CaptureSegmenter.segment(durations, GAP);
+        assertEquals(result.toString(null), "[+9000 -4500 +560 -560 +560 -40000 +9000 -4500 +560 -1690 +560 -30000][][] repeats=0 frames=2");
+    }
+
+    /**
+     * Test of segment method, of class CaptureSegmenter, with an ending after the repeats.
+     * The final gap is then part of the ending, and all gaps of the repeats are used.
+     */
+    @Test
+    public void testEnding() {
+        System.out.println("ending");
+        int[] durations = new int[]{
+            2400, 600, 1200, 20000,
+            2400, 600, 1200, 21000,
+            2400, 600, 600, 5000, 600, 25000
+        };
+        CaptureSegmenter.Segments result = CaptureSegmenter.segment(durations, GAP);
+        assertEquals(result.toString(null), "[][+2400 -600 +1200 -20500][+2400 -600 +600 -5000 +600 -25000] repeats=2 frames=3");
+    }
+}
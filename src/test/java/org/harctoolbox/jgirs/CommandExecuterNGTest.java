@@ -0,0 +1,136 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.util.Arrays;
+import java.util.List;
+import static org.testng.Assert.assertEquals;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class CommandExecuterNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private final CommandExecuter instance;
+
+    public CommandExecuterNGTest() {
+        instance = new CommandExecuter();
+        instance.add(new TokensCommand());
+        instance.add(new SumCommand());
+        instance.add(new OuterCommand());
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of exec method, of class CommandExecuter, with a command getting tokens.
+     */
+    @Test
+    public void testExecTokens() throws Exception {
+        System.out.println("execTokens");
+        assertEquals(instance.exec("tok  a \"b c\"  d ", 0), Arrays.asList("a", "b c", "d"));
+        assertEquals(instance.exec("  tok", 0), Arrays.asList());
+        assertEquals(instance.exec("\"tok\" a", 0), Arrays.asList("a"));
+        assertEquals(instance.exec(new String[]{"tok", "x"}), Arrays.asList("x"));
+    }
+
+    /**
+     * Test of exec method, of class CommandExecuter, with an ILineCommand.
+     */
+    @Test
+    public void testExecLine() throws Exception {
+        System.out.println("execLine");
+        assertEquals(instance.exec("sum 1 2\t3", 0), Arrays.asList("6"));
+        assertEquals(instance.exec("su -1", 0), Arrays.asList("-1"));
+        assertEquals(instance.exec("outer sum 4 5", 0), Arrays.asList("9"));
+        assertEquals(instance.exec("outer tok 4 5", 0), Arrays.asList("4", "5"));
+    }
+
+    /**
+     * Test of exec method, of class CommandExecuter, with a subcommand missing.
+     */
+    @Test(expectedExceptions = CommandSyntaxException.class)
+    public void testExecNoSubcommand() throws Exception {
+        System.out.println("execNoSubcommand");
+        instance.exec("outer  ", 0);
+    }
+
+    /**
+     * Test of exec method, of class CommandExecuter, with an unknown command.
+     */
+    @Test(expectedExceptions = NoSuchCommandException.class)
+    public void testExecUnknown() throws Exception {
+        System.out.println("execUnknown");
+        instance.exec("nonexisting 1 2", 0);
+    }
+
+    private static class TokensCommand implements ICommand {
+
+        @Override
+        public String getName() {
+            return "tok";
+        }
+
+        @Override
+        public List<String> exec(String[] args) {
+            return Arrays.asList(args);
+        }
+    }
+
+    private static class SumCommand implements ILineCommand {
+
+        @Override
+        public String getName() {
+            return "sum";
+        }
+
+        @Override
+        public List<String> exec(String[] args) {
+            return exec(String.join(" ", args), 0);
+        }
+
+        @Override
+        public List<String> exec(CharSequence line, int start) {
+            int sum = 0;
+            for (int n : Utils.parseInts(line, start, 10))
+                sum += n;
+            return Arrays.asList(Integer.toString(sum));
+        }
+    }
+
+    private static class OuterCommand extends CommandWithSubcommands implements ILineCommand {
+
+        OuterCommand() {
+            addCommand(new TokensCommand());
+            addCommand(new SumCommand());
+        }
+
+        @Override
+        public String getName() {
+            return "outer";
+        }
+    }
+}
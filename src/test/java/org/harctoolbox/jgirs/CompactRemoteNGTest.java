@@ -0,0 +1,130 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.harctoolbox.girr.Command;
+import org.harctoolbox.ircore.IrSequence;
+import org.harctoolbox.ircore.IrSignal;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class CompactRemoteNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static Map<String, Long> map(long d, long f) {
+        Map<String, Long> result = new HashMap<>(4);
+        result.put("D", d);
+        result.put("F", f);
+        return result;
+    }
+
+    private final CompactRemote instance;
+
+    public CompactRemoteNGTest() throws Exception {
+        CompactRemote.Builder builder = new CompactRemote.Builder("tv", 5);
+        builder.add("power", "toggles", "nec1", map(4, 8), null);
+        builder.add("Mute", null, "nec1", map(4, 9), null);
+        builder.add("menu", "main menu", "rc5", map(0, 48), null);
+        builder.add("play", null, "nec1", map(4, 10), null);
+        IrSignal irSignal = new IrSignal(new IrSequence(new int[]{9000, 4500, 560, 40000}), new IrSequence(), new IrSequence(), 38000.0, null);
+        builder.add(new Command("learned", "captured", irSignal));
+        instance = builder.build(true);
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of Builder.build method, of class CompactRemote.
+     */
+    @Test
+    public void testBuild() {
+        System.out.println("build");
+        assertEquals(instance.getName(), "tv");
+        assertEquals(instance.size(), 5);
+        assertEquals(instance.getCommandNames(), Arrays.asList("learned", "menu", "Mute", "play", "power"));
+        assertTrue(instance.isCompact());
+        assertEquals(instance.getGirrCommandCount(), 1);
+        assertNull(instance.getProtocol(0));
+        assertEquals(instance.getProtocol(1), "rc5");
+        assertEquals(instance.getComment(0), "captured");
+        assertEquals(instance.getComment(1), "main menu");
+        assertNull(instance.getComment(2));
+        assertEquals(instance.getComment(4), "toggles");
+    }
+
+    /**
+     * Test of find method, of class CompactRemote.
+     */
+    @Test
+    public void testFind() {
+        System.out.println("find");
+        assertEquals(instance.find("pow"), 4);
+        assertEquals(instance.find("MUTE"), 2);
+        assertEquals(instance.find("l"), 0);
+        assertEquals(instance.find("m"), PrefixIndex.AMBIGUOUS);
+        assertEquals(instance.find("p"), PrefixIndex.AMBIGUOUS);
+        assertEquals(instance.find("stop"), PrefixIndex.NOT_FOUND);
+    }
+
+    /**
+     * Test of getParameters and getParameter methods, of class CompactRemote.
+     */
+    @Test
+    public void testGetParameters() {
+        System.out.println("getParameters");
+        assertEquals(instance.getParameters(3), map(4, 10));
+        assertEquals(instance.getParameters(1), map(0, 48));
+        assertTrue(instance.getParameters(0).isEmpty());
+        assertEquals(instance.getParameter(4, "f"), Long.valueOf(8L));
+        assertNull(instance.getParameter(4, "S"));
+    }
+
+    /**
+     * Test of withCompact method, of class CompactRemote.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testWithCompact() throws Exception {
+        System.out.println("withCompact");
+        assertTrue(instance.withCompact(true) == instance);
+        CompactRemote full = instance.withCompact(false);
+        assertEquals(full.getGirrCommandCount(), 5);
+        assertEquals(full.getCommand(4).getComment(), "toggles");
+        assertEquals(full.getCommand(1).getParameters(), map(0, 48));
+        assertEquals(full.getComment(1), "main menu");
+        CompactRemote compact = full.withCompact(true);
+        assertEquals(compact.getGirrCommandCount(), 1);
+        assertEquals(compact.getComment(4), "toggles");
+        assertEquals(compact.getCommand(4).getComment(), "toggles");
+        assertEquals(compact.getCommandNames(), instance.getCommandNames());
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import javax.xml.parsers.DocumentBuilderFactory;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Tests reloading, without hardware, from a document with CSV sources in temporary files.
+ * @author bengt
+ */
+public class ConfigFileReloadNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static Map<String, Long> parameters(long D, long F) {
+        Map<String, Long> parameters = new HashMap<>(2);
+        parameters.put("D", D);
+        parameters.put("F", F);
+        return parameters;
+    }
+
+    private File directory;
+    private File tv;
+    private File amplifier;
+    private ConfigFile instance;
+
+    public ConfigFileReloadNGTest() {
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+        directory = Files.createTempDirectory("jgirs").toFile();
+        tv = new File(directory, "tv.csv");
+        amplifier = new File(directory, "amplifier.csv");
+        write(tv, "power,NEC1,0,-1,12\nmute,NEC1,0,-1,13\n");
+        write(amplifier, "power,NEC1,122,-1,29\n");
+
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element root = doc.createElement("jgirs");
+        doc.appendChild(root);
+        Element namedRemotes = doc.createElement("named-remotes");
+        root.appendChild(namedRemotes);
+        namedRemotes.appendChild(namedRemote(doc, "tv", tv));
+        namedRemotes.appendChild(namedRemote(doc, "amplifier", amplifier));
+        instance = new ConfigFile(doc);
+    }
+
+    private Element namedRemote(Document doc, String name, File file) {
+        Element element = doc.createElement("named-remote");
+        element.setAttribute("type", "csv");
+        element.setAttribute("url", file.toURI().toString());
+        element.setAttribute("name", name);
+        element.setAttribute("commandname", "1");
+        element.setAttribute("protocol", "2");
+        element.setAttribute("D", "3");
+        element.setAttribute("S", "4");
+        element.setAttribute("F", "5");
+        element.setAttribute("separator", ",");
+        return element;
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+        tv.delete();
+        amplifier.delete();
+        directory.delete();
+    }
+
+    /**
+     * Test of reload method, of class ConfigFile, with nothing changed.
+     */
+    @Test
+    public void testReloadUnchanged() throws Exception {
+        System.out.println("reloadUnchanged");
+        assertEquals(instance.getLoadSummary(), "named remotes: 2 sources, 2 read, 0 unchanged, 0 failed");
+        RemoteCommandDataBase before = instance.getRemoteCommandsDataBase();
+        instance.reload(false);
+        assertEquals(instance.getLoadSummary(), "named remotes: 2 sources, 0 read, 2 unchanged, 0 failed");
+        RemoteCommandDataBase after = instance.getRemoteCommandsDataBase();
+        assertNotSame(after, before);
+        assertSame(after.getRemote("tv"), before.getRemote("tv"));
+        assertEquals(after.getRemoteNames(), before.getRemoteNames());
+
+        instance.reload(true);
+        assertEquals(instance.getLoadSummary(), "named remotes: 2 sources, 2 read, 0 unchanged, 0 failed");
+    }
+
+    /**
+     * Test of reload method, of class ConfigFile, with a changed file.
+     */
+    @Test
+    public void testReloadChanged() throws Exception {
+        System.out.println("reloadChanged");
+        RemoteCommandDataBase before = instance.getRemoteCommandsDataBase();
+        write(amplifier, "power,NEC1,122,-1,29\nvolume_up,NEC1,122,-1,26\n");
+        instance.reload(false);
+        assertEquals(instance.getLoadSummary(), "named remotes: 2 sources, 1 read, 1 unchanged, 0 failed");
+        RemoteCommandDataBase after = instance.getRemoteCommandsDataBase();
+        assertSame(after.getRemote("tv"), before.getRemote("tv"));
+        assertEquals(after.getRemote("amplifier").getCommandNames().size(), 2);
+        assertEquals(after.getRemoteCommand("NEC1", parameters(122, 26)).getCommandName(), "volume_up");
+
+        // The data base obtained before still answers, with the old contents.
+        assertEquals(before.getRemote("amplifier").getCommandNames().size(), 1);
+        assertNull(before.getRemoteCommand("NEC1", parameters(122, 26)));
+        assertEquals(before.getRemoteCommand("NEC1", parameters(0, 13)).getCommandName(), "mute");
+        assertTrue(before.getRemoteCommand("NEC1", parameters(122, 29)).toString().startsWith("amplifier"));
+    }
+}
@@ -3,11 +3,18 @@ package org.harctoolbox.jgirs;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.Map;
 import org.harctoolbox.girr.Command;
 import org.harctoolbox.girr.GirrException;
+import org.harctoolbox.girr.Remote;
 import org.harctoolbox.girr.RemoteSet;
+import org.harctoolbox.ircore.IrCoreException;
+import org.harctoolbox.irp.IrpException;
 import org.harctoolbox.irp.IrpParseException;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeClass;
@@ -57,4 +64,68 @@ public class CsvImporterNGTest {
         RemoteSet result = instance.parseRemoteSet(remoteName, source, reader);
         assertEquals(result.getRemote(remoteName).getName(), remoteName);
     }
+
+    /**
+     * Test of parseFile method, of class CsvImporter, with quoted fields.
+     */
+    @Test
+    public void testQuotedFields() throws IOException, GirrException, IrpException, IrCoreException {
+        System.out.println("quotedFields");
+        String csv = "\"Power, on\",\"NEC1\",0,-1,\"12\"\n"
+                + "\"say \"\"hi\"\"\",NEC1,0,-1,13\n"
+                + "\"\",NEC1,0,-1,14\n";
+        Remote remote = instance.parseFile("quoted", new StringReader(csv));
+        Command command = remote.getCommand("Power, on");
+        assertEquals(command.getProtocolName(), "NEC1");
+        assertEquals(command.getParameters().get("D"), Long.valueOf(0L));
+        assertEquals(command.getParameters().get("F"), Long.valueOf(12L));
+        assertFalse(command.getParameters().containsKey("S"));
+        assertEquals(remote.getCommand("say \"hi\"").getParameters().get("F"), Long.valueOf(13L));
+        assertEquals(remote.getCommand("").getParameters().get("F"), Long.valueOf(14L));
+        assertEquals(instance.getErrorCount(), 0);
+    }
+
+    /**
+     * Test of parseFile method, of class CsvImporter, with empty fields.
+     */
+    @Test
+    public void testEmptyFields() throws IOException, GirrException, IrpException, IrCoreException {
+        System.out.println("emptyFields");
+        String csv = "Power,NEC1,0,,12\n"
+                + "Mute,NEC1,0,\"\",13\n";
+        Remote remote = instance.parseFile("empty", new StringReader(csv));
+        Map<String, Long> parameters = remote.getCommand("Power").getParameters();
+        assertEquals(parameters.size(), 2);
+        assertFalse(parameters.containsKey("S"));
+        assertFalse(remote.getCommand("Mute").getParameters().containsKey("S"));
+        assertEquals(instance.getErrorCount(), 0);
+        assertEquals(instance.getFirstErrorLine(), -1);
+    }
+
+    /**
+     * Test of getErrorCount, getLineCount, and getFirstErrorLine methods, of class CsvImporter.
+     */
+    @Test
+    public void testErrorCounts() throws IOException, GirrException {
+        System.out.println("errorCounts");
+        String csv = "functionname,protocol,device,subdevice,function\n" // header, not counted
+                + "Power,NEC1,0,-1,12\n"
+                + "\n"
+                + "Mute,NEC1,zero,-1,13\n" // line 4: unparseable number
+                + "Play,NEC1,0,-1\n" // too few columns
+                + "\"Stop,NEC1,0,-1,14\n" // unterminated quote
+                + "\"Stop\"x,NEC1,0,-1,14\n" // garbage after quote
+                + "Pause,NEC1,0,-1,15\n";
+        Remote remote = instance.parseFile("errors", new StringReader(csv));
+        assertEquals(instance.getLineCount(), 8);
+        assertEquals(instance.getErrorCount(), 4);
+        assertEquals(instance.getFirstErrorLine(), 4);
+        assertEquals(remote.getCommands().size(), 2);
+        assertNull(remote.getCommand("Mute"));
+
+        instance.parseFile("clean", new StringReader("Power,NEC1,0,-1,12\n"));
+        assertEquals(instance.getLineCount(), 1);
+        assertEquals(instance.getErrorCount(), 0);
+        assertEquals(instance.getFirstErrorLine(), -1);
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.util.Random;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class DecodeSignatureNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    // A NEC1 frame, D, S, F, and ~F sent with the least significant bit first.
+    private static int[] nec1(int d, int s, int f) {
+        int[] durations = new int[2 + 2 * 32 + 2];
+        int n = 0;
+        durations[n++] = 9024;
+        durations[n++] = 4512;
+        for (int value : new int[]{d, s, f, ~f & 0xff})
+            for (int bit = 0; bit < 8; bit++) {
+                durations[n++] = 564;
+                durations[n++] = ((value >> bit) & 1) != 0 ? 1692 : 564;
+            }
+        durations[n++] = 564;
+        durations[n++] = 39756;
+        return durations;
+    }
+
+    // Every duration changed randomly by at most the amount given, in micro seconds, like by a receiver.
+    private static int[] jitter(int[] durations, int amount, Random random) {
+        int[] result = new int[durations.length];
+        for (int i = 0; i < durations.length; i++)
+            result[i] = durations[i] + random.nextInt(2 * amount + 1) - amount;
+        return result;
+    }
+
+    public DecodeSignatureNGTest() {
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of of method, of class DecodeSignature, with jittered copies of one frame.
+     */
+    @Test
+    public void testJitter() {
+        System.out.println("jitter");
+        int[] frame = nec1(4, 251, 8);
+        DecodeSignature expResult = DecodeSignature.of(frame);
+        Random random = new Random(4711);
+        for (int i = 0; i < 50; i++) {
+            DecodeSignature result = DecodeSignature.of(jitter(frame, 30, random));
+            assertEquals(result, expResult);
+            assertEquals(result.hashCode(), expResult.hashCode());
+        }
+    }
+
+    /**
+     * Test of of method, of class DecodeSignature, with different commands of the same protocol.
+     */
+    @Test
+    public void testDifferentCommands() {
+        System.out.println("differentCommands");
+        DecodeSignature signature = DecodeSignature.of(nec1(4, 251, 8));
+        assertFalse(signature.equals(DecodeSignature.of(nec1(4, 251, 9))));
+        assertFalse(signature.equals(DecodeSignature.of(nec1(5, 250, 8))));
+        assertFalse(signature.equals(DecodeSignature.of(nec1(4, 251, 16))));
+    }
+
+    /**
+     * Test of of method, of class DecodeSignature, with a context.
+     */
+    @Test
+    public void testContext() {
+        System.out.println("context");
+        int[] frame = nec1(4, 251, 8);
+        assertEquals(DecodeSignature.of(frame, 1, 2), DecodeSignature.of(frame, 1, 2));
+        assertFalse(DecodeSignature.of(frame, 1, 2).equals(DecodeSignature.of(frame, 1, 3)));
+        assertFalse(DecodeSignature.of(frame, 1).equals(DecodeSignature.of(frame)));
+    }
+
+    /**
+     * Test of of method, of class DecodeSignature, with an empty sequence.
+     */
+    @Test
+    public void testEmpty() {
+        System.out.println("empty");
+        assertNull(DecodeSignature.of(new int[0]));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import static org.testng.Assert.assertEquals;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class DurationCleanerNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    public DurationCleanerNGTest() {
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of clean method, of class DurationCleaner.
+     */
+    @Test
+    public void testClean() {
+        System.out.println("clean");
+        int[] durations = new int[] { 9050, 4450, 620, 500, 580, 1650, 600, 1720, 540, 40000 };
+        int[] expResult = new int[] { 9050, 4450, 568, 568, 568, 1685, 568, 1685, 568, 40000 };
+        int[] result = DurationCleaner.clean(durations, 0.3);
+        assertEquals(result, expResult);
+    }
+
+    /**
+     * Test of clean method, of class DurationCleaner, with a small tolerance.
+     */
+    @Test
+    public void testCleanSmallTolerance() {
+        System.out.println("cleanSmallTolerance");
+        int[] durations = new int[] { 500, 600, 505, 610 };
+        int[] expResult = new int[] { 503, 605, 503, 605 };
+        int[] result = DurationCleaner.clean(durations, 0.05);
+        assertEquals(result, expResult);
+    }
+
+    /**
+     * Test of clean method, of class DurationCleaner, with an empty sequence.
+     */
+    @Test
+    public void testCleanEmpty() {
+        System.out.println("cleanEmpty");
+        assertEquals(DurationCleaner.clean(new int[0], 0.3).length, 0);
+    }
+}
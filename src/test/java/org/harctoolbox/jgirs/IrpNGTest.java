@@ -0,0 +1,87 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.harctoolbox.irp.IrpException;
+import org.harctoolbox.irp.Protocol;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class IrpNGTest {
+
+    private static final String NEC1 = "{38.4k,564}<1,-1|1,-3>(16,-8,D:8,S:8,F:8,~F:8,1,^108m,(16,-4,1,^108m)*)[D:0..255,S:0..255=255-D,F:0..255]";
+
+    private static Irp instance = null; // its commands can be registered only once
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    public IrpNGTest() {
+        if (Parameters.getInstance() == null)
+            Parameters.newParameterModule();
+        if (instance == null)
+            instance = new Irp();
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of compile method, of class Irp, that a parsed protocol is taken from the cache.
+     */
+    @Test
+    public void testCompile() throws Exception {
+        System.out.println("compile");
+        Protocol protocol = instance.compile(NEC1);
+        assertSame(instance.compile(NEC1), protocol);
+        assertNotSame(instance.compile(NEC1.replace("38.4k", "38k")), protocol);
+
+        Map<String, Long> parameters = new HashMap<>(2);
+        parameters.put("D", 0L);
+        parameters.put("F", 12L);
+        instance.render(NEC1, parameters);
+        assertSame(instance.compile(NEC1), protocol);
+    }
+
+    /**
+     * Test of the irp compile command, of class Irp, with an invalid IRP.
+     */
+    @Test
+    public void testCompileCommandInvalid() throws Exception {
+        System.out.println("compileCommandInvalid");
+        CommandExecuter.getMainExecutor().exec("irp compile \"" + NEC1 + "\"", 0);
+        for (int i = 0; i < 2; i++) { // an error is not cached
+            try {
+                CommandExecuter.getMainExecutor().exec("irp compile \"this is not an IRP\"", 0);
+                fail();
+            } catch (IrpException | RuntimeException ex) {
+                // the parse error reaches the caller, which reports it
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class KeyEventDetectorNGTest {
+
+    private static final long WINDOW = 150L;
+    private static final int[] DITTO = new int[]{9024, 2256, 564, 96156};
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    // A NEC1 frame of the command F, D = 4 and S = 251.
+    private static int[] nec1(int f) {
+        int[] durations = new int[2 + 2 * 32 + 2];
+        int n = 0;
+        durations[n++] = 9024;
+        durations[n++] = 4512;
+        for (int value : new int[]{4, 251, f, ~f & 0xff})
+            for (int bit = 0; bit < 8; bit++) {
+                durations[n++] = 564;
+                durations[n++] = ((value >> bit) & 1) != 0 ? 1692 : 564;
+            }
+        durations[n++] = 564;
+        durations[n++] = 39756;
+        return durations;
+    }
+
+    private KeyEventDetector instance;
+
+    public KeyEventDetectorNGTest() {
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+        instance = new KeyEventDetector();
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of frame method, of class KeyEventDetector, with dittos after a key.
+     */
+    @Test
+    public void testDitto() {
+        System.out.println("ditto");
+        assertEquals(instance.frame(nec1(8), 0L, WINDOW).toString(), "[press 0]");
+        assertTrue(instance.isActive());
+        assertEquals(instance.frame(DITTO, 108L, WINDOW).toString(), "[hold 1]");
+        assertEquals(instance.frame(DITTO, 216L, WINDOW).toString(), "[]");
+        assertEquals(instance.frame(DITTO, 324L, WINDOW).toString(), "[]");
+        assertEquals(instance.frame(nec1(8), 432L, WINDOW).toString(), "[]"); // the full frame again
+        assertNull(instance.timeout(500L, WINDOW));
+        assertEquals(instance.timeout(600L, WINDOW).toString(), "release 4");
+        assertFalse(instance.isActive());
+    }
+
+    /**
+     * Test of frame method, of class KeyEventDetector, with dittos without a key.
+     */
+    @Test
+    public void testDittoWithoutKey() {
+        System.out.println("dittoWithoutKey");
+        assertEquals(instance.frame(DITTO, 0L, WINDOW).toString(), "[]");
+        assertFalse(instance.isActive());
+
+        // After the window, a ditto does not repeat the key, but releases it
+        instance.frame(nec1(8), 1000L, WINDOW);
+        assertEquals(instance.frame(DITTO, 1200L, WINDOW).toString(), "[release 0]");
+        assertEquals(instance.frame(DITTO, 1300L, WINDOW).toString(), "[]");
+        assertFalse(instance.isActive());
+    }
+
+    /**
+     * Test of frame method, of class KeyEventDetector, with a different key within the window.
+     */
+    @Test
+    public void testDifferentKey() {
+        System.out.println("differentKey");
+        instance.frame(nec1(8), 0L, WINDOW);
+        instance.frame(DITTO, 108L, WINDOW);
+        assertEquals(instance.frame(nec1(9), 150L, WINDOW).toString(), "[release 1, press 0]");
+        assertEquals(instance.frame(DITTO, 258L, WINDOW).toString(), "[hold 1]");
+        assertEquals(instance.frame(nec1(8), 300L, WINDOW).toString(), "[release 1, press 0]");
+    }
+
+    /**
+     * Test of timeout method, of class KeyEventDetector.
+     */
+    @Test
+    public void testTimeout() {
+        System.out.println("timeout");
+        assertNull(instance.timeout(0L, WINDOW));
+        instance.frame(nec1(8), 0L, WINDOW);
+        assertNull(instance.timeout(WINDOW, WINDOW));
+        assertEquals(instance.timeout(WINDOW + 1, WINDOW).toString(), "release 0");
+        assertNull(instance.timeout(WINDOW + 2, WINDOW));
+        assertEquals(instance.frame(nec1(8), 200L, WINDOW).toString(), "[press 0]");
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class LruCacheNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    public LruCacheNGTest() {
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of get and put methods, of class LruCache.
+     */
+    @Test
+    public void testGetPut() {
+        System.out.println("getPut");
+        LruCache<String, String> instance = new LruCache<>("test", () -> 2);
+        assertNull(instance.get("a"));
+        instance.put("a", "A");
+        instance.put("b", "B");
+        assertEquals(instance.get("a"), "A");
+        assertEquals(instance.get("b"), "B");
+        assertEquals(instance.getHits(), 2L);
+        assertEquals(instance.getMisses(), 1L);
+        assertEquals(instance.size(), 2);
+    }
+
+    /**
+     * Test of put method, of class LruCache, that the least recently used entry is evicted.
+     */
+    @Test
+    public void testEviction() {
+        System.out.println("eviction");
+        LruCache<String, String> instance = new LruCache<>("test", () -> 2);
+        instance.put("a", "A");
+        instance.put("b", "B");
+        instance.get("a"); // now b is the least recently used
+        instance.put("c", "C");
+        assertEquals(instance.size(), 2);
+        assertEquals(instance.getEvictions(), 1L);
+        assertNull(instance.get("b"));
+        assertEquals(instance.get("a"), "A");
+        assertEquals(instance.get("c"), "C");
+    }
+
+    /**
+     * Test of put method, of class LruCache, with the capacity changed.
+     */
+    @Test
+    public void testCapacityChanged() {
+        System.out.println("capacityChanged");
+        AtomicInteger capacity = new AtomicInteger(3);
+        LruCache<String, String> instance = new LruCache<>("test", capacity::get);
+        instance.put("a", "A");
+        instance.put("b", "B");
+        instance.put("c", "C");
+        capacity.set(1);
+        instance.put("d", "D");
+        assertEquals(instance.size(), 1);
+        assertEquals(instance.get("d"), "D");
+        assertEquals(instance.getEvictions(), 3L);
+
+        capacity.set(0); // disables the cache
+        instance.put("e", "E");
+        assertEquals(instance.size(), 0);
+        assertNull(instance.get("e"));
+    }
+
+    /**
+     * Test of get method, of class LruCache, with expired entries.
+     */
+    @Test
+    public void testTimeToLive() throws InterruptedException {
+        System.out.println("timeToLive");
+        LruCache<String, String> instance = new LruCache<>("test", () -> 10, () -> 50L);
+        instance.put("a", "A");
+        assertEquals(instance.get("a"), "A");
+        Thread.sleep(120L);
+        assertNull(instance.get("a"));
+        assertEquals(instance.size(), 0);
+        assertEquals(instance.getEvictions(), 1L);
+        assertEquals(instance.getMisses(), 1L);
+
+        LruCache<String, String> forEver = new LruCache<>("test", () -> 10);
+        forEver.put("a", "A");
+        Thread.sleep(20L);
+        assertEquals(forEver.get("a"), "A");
+    }
+
+    /**
+     * Test of clear method, of class LruCache.
+     */
+    @Test
+    public void testClear() {
+        System.out.println("clear");
+        LruCache<String, String> instance = new LruCache<>("test", () -> 10);
+        instance.put("a", "A");
+        instance.clear();
+        assertEquals(instance.size(), 0);
+        assertNull(instance.get("a"));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.harctoolbox.ircore.IrSignal;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class NamedRemotesNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    static RemoteCommandDataBase database() throws Exception {
+        CompactRemote.Builder builder = new CompactRemote.Builder("tv", 2);
+        for (int f = 12; f <= 13; f++) {
+            Map<String, Long> parameters = new HashMap<>(2);
+            parameters.put("D", 0L);
+            parameters.put("F", (long) f);
+            builder.add(f == 12 ? "power" : "mute", null, "nec1", parameters, null);
+        }
+        RemoteCommandDataBase database = new RemoteCommandDataBase();
+        database.addRemotes(Arrays.asList(builder.build(true)));
+        return database;
+    }
+
+    private final NamedRemotes instance;
+
+    public NamedRemotesNGTest() throws Exception {
+        if (Parameters.getInstance() == null)
+            Parameters.newParameterModule();
+        instance = NamedRemotes.getInstance() != null ? NamedRemotes.getInstance() : NamedRemotes.newNamedRemotes(database());
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+        instance.setDatabase(database());
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of render method, of class NamedRemotes, that a rendered signal is taken from the cache.
+     */
+    @Test
+    public void testRenderCached() throws Exception {
+        System.out.println("renderCached");
+        IrSignal power = instance.render("tv", "power");
+        assertSame(instance.render("tv", "power"), power);
+        assertSame(instance.render("TV", "pow"), power);
+        assertNotSame(instance.render("tv", "mute"), power);
+    }
+
+    /**
+     * Test of setDatabase method, of class NamedRemotes, that the cache is cleared.
+     */
+    @Test
+    public void testSetDatabase() throws Exception {
+        System.out.println("setDatabase");
+        IrSignal power = instance.render("tv", "power");
+        instance.setDatabase(database());
+        IrSignal second = instance.render("tv", "power");
+        assertNotSame(second, power);
+        assertSame(instance.render("tv", "power"), second);
+    }
+}
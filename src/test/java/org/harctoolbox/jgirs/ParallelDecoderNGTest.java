@@ -0,0 +1,134 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.harctoolbox.ircore.IrSequence;
+import org.harctoolbox.ircore.ModulatedIrSequence;
+import org.harctoolbox.irp.Decoder;
+import org.harctoolbox.irp.IrpDatabase;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class ParallelDecoderNGTest {
+
+    // NEC1 D=0 F=12
+    private static final int[] NEC1 = new int[]{
+        9024, 4512, 564, 564, 564, 564, 564, 564, 564, 564, 564, 564, 564, 564, 564, 564, 564, 564,
+        564, 1692, 564, 1692, 564, 1692, 564, 1692, 564, 1692, 564, 1692, 564, 1692, 564, 1692,
+        564, 564, 564, 564, 564, 1692, 564, 1692, 564, 564, 564, 564, 564, 564, 564, 564,
+        564, 1692, 564, 1692, 564, 564, 564, 564, 564, 1692, 564, 1692, 564, 1692, 564, 1692,
+        564, 39756};
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static Set<String> names(Iterable<Decoder.Decode> decodes) {
+        Set<String> result = new TreeSet<>();
+        decodes.forEach((decode) -> {
+            result.add(decode.getName());
+        });
+        return result;
+    }
+
+    private final IrpDatabase irpDatabase;
+    private final List<String> protocols;
+    private final ModulatedIrSequence irSequence;
+    private final Decoder.DecoderParameters decoderParameters;
+    private final List<Decoder.Decode> plainDecodes;
+
+    public ParallelDecoderNGTest() throws Exception {
+        irpDatabase = new IrpDatabase("/usr/local/share/irscrutinizer/IrpProtocols.xml");
+        protocols = irpDatabase.getNames();
+        irSequence = new ModulatedIrSequence(new IrSequence(NEC1), 38000d);
+        decoderParameters = new Decoder.DecoderParameters();
+        plainDecodes = new ArrayList<>(4);
+        for (Decoder.TrunkDecodeTree trunkDecodeTree : new Decoder(irpDatabase, protocols).decode(irSequence, decoderParameters))
+            plainDecodes.add(trunkDecodeTree.getTrunk());
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of decode method, of class ParallelDecoder.
+     */
+    @Test
+    public void testDecode() throws Exception {
+        System.out.println("decode");
+        ParallelDecoder instance = new ParallelDecoder(irpDatabase, protocols, 3);
+        List<Decoder.Decode> result = instance.decode(irSequence, decoderParameters);
+        assertFalse(result.isEmpty());
+        assertEquals(names(result), names(plainDecodes));
+        for (int i = 1; i < result.size(); i++)
+            assertTrue(protocols.indexOf(result.get(i - 1).getName()) < protocols.indexOf(result.get(i).getName()));
+        assertEquals(instance.getProtocolsTried(), protocols.size());
+    }
+
+    /**
+     * Test of decodeFirst method, of class ParallelDecoder.
+     */
+    @Test
+    public void testDecodeFirst() throws Exception {
+        System.out.println("decodeFirst");
+        Set<String> plainNames = names(plainDecodes);
+        String expected = null;
+        for (String protocol : protocols)
+            if (plainNames.contains(protocol)) {
+                expected = protocol;
+                break;
+            }
+        assertNotNull(expected);
+
+        ParallelDecoder instance = new ParallelDecoder(irpDatabase, protocols, 3);
+        for (int i = 0; i < 5; i++) {
+            Decoder.Decode result = instance.decodeFirst(irSequence, decoderParameters, (decode) -> plainNames.contains(decode.getName()));
+            assertEquals(result.getName(), expected);
+        }
+        assertEquals(instance.decodeFirst(irSequence, decoderParameters, (decode) -> false), null);
+    }
+
+    /**
+     * Test of decodeFirst method, of class ParallelDecoder, that the protocols after a match are skipped.
+     */
+    @Test
+    public void testDecodeFirstSkips() throws Exception {
+        System.out.println("decodeFirstSkips");
+        ParallelDecoder single = new ParallelDecoder(irpDatabase, protocols, 1);
+        Decoder.Decode first = single.decodeFirst(irSequence, decoderParameters, (decode) -> true);
+        int position = protocols.indexOf(first.getName());
+        assertTrue(position < protocols.size() - 1);
+        assertEquals(single.getProtocolsTried(), position + 1);
+
+        ParallelDecoder instance = new ParallelDecoder(irpDatabase, protocols, 3);
+        assertEquals(instance.decodeFirst(irSequence, decoderParameters, (decode) -> true).getName(), first.getName());
+        assertTrue(instance.getProtocolsTried() < protocols.size());
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.util.Arrays;
+import java.util.Collections;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class ParametersNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private final Parameters instance;
+
+    public ParametersNGTest() {
+        instance = Parameters.getInstance() != null ? Parameters.getInstance() : Parameters.newParameterModule();
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of update method, of class Parameters.
+     */
+    @Test
+    public void testUpdate() {
+        System.out.println("update");
+        instance.addAll(Arrays.asList(new IntegerParameter("updateSize", 10, null), new StringParameter("updateFileOnly", "x", null)));
+        IntegerParameter size = new IntegerParameter("updateSize", 256, "Size, declared by a module");
+        instance.register(size);
+        assertEquals(size.getValue(), 10);
+        assertEquals(instance.get("updateFileOnly").get(), "x");
+
+        instance.update(Arrays.asList(new IntegerParameter("updateSize", 20, null), new StringParameter("updateFileOnly", "y", null)));
+        assertSame(instance.get("updateSize"), size);
+        assertEquals(size.getValue(), 20);
+        assertEquals(instance.get("updateFileOnly").get(), "y");
+
+        // Removed from the configuration: the value in the code is taken back, if there is one.
+        instance.update(Collections.emptyList());
+        assertEquals(size.getValue(), 256);
+        assertEquals(instance.get("updateFileOnly").get(), "y");
+
+        instance.update(Arrays.asList(new IntegerParameter("updateSize", 30, null)));
+        assertEquals(size.getValue(), 30);
+    }
+
+    /**
+     * Test of update method, of class Parameters, with a parameter of the code not in the configuration at start.
+     */
+    @Test
+    public void testUpdateAdded() {
+        System.out.println("updateAdded");
+        instance.addAll(Collections.emptyList());
+        IntegerParameter size = new IntegerParameter("updateAddedSize", 64, null);
+        instance.register(size);
+
+        instance.update(Arrays.asList(new IntegerParameter("updateAddedSize", 128, null)));
+        assertEquals(size.getValue(), 128);
+        instance.update(Collections.emptyList());
+        assertEquals(size.getValue(), 64);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static org.testng.Assert.assertEquals;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class PrefixIndexNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private final PrefixIndex<Integer> instance;
+
+    public PrefixIndexNGTest() {
+        Map<String, Integer> map = new LinkedHashMap<>(8);
+        map.put("transmit", 1);
+        map.put("receive", 2);
+        map.put("Receiver", 3);
+        map.put("tra", 4);
+        map.put("version", 5);
+        instance = new PrefixIndex<>(map);
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of find method, of class PrefixIndex.
+     */
+    @Test
+    public void testFind() {
+        System.out.println("find");
+        assertEquals(instance.get(instance.find("v")), Integer.valueOf(5));
+        assertEquals(instance.get(instance.find("VERS")), Integer.valueOf(5));
+        assertEquals(instance.get(instance.find("tra")), Integer.valueOf(4));
+        assertEquals(instance.get(instance.find("tran")), Integer.valueOf(1));
+        assertEquals(instance.get(instance.find("receive")), Integer.valueOf(2));
+        assertEquals(instance.get(instance.find("receiveR")), Integer.valueOf(3));
+        assertEquals(instance.find("rec"), PrefixIndex.AMBIGUOUS);
+        assertEquals(instance.find("t"), PrefixIndex.AMBIGUOUS);
+        assertEquals(instance.find("x"), PrefixIndex.NOT_FOUND);
+        assertEquals(instance.find("versions"), PrefixIndex.NOT_FOUND);
+        assertEquals(instance.find("a"), PrefixIndex.NOT_FOUND);
+    }
+
+    /**
+     * Test of getName method, of class PrefixIndex.
+     */
+    @Test
+    public void testGetName() {
+        System.out.println("getName");
+        assertEquals(instance.getName(instance.find("receiver")), "Receiver");
+        assertEquals(instance.size(), 5);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.harctoolbox.irp.Protocol;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class ProtocolParameterIndexNGTest {
+
+    private static final String NEC1 = "{38.4k,564}<1,-1|1,-3>(16,-8,D:8,S:8,F:8,~F:8,1,^108m,(16,-4,1,^108m)*) [D:0..255,S:0..255=255-D,F:0..255]";
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static Map<String, Long> map(long... namesAndValues) {
+        String[] names = {"D", "S", "F", "T"};
+        Map<String, Long> result = new HashMap<>(4);
+        for (int i = 0; i < namesAndValues.length; i++)
+            result.put(names[i], namesAndValues[i]);
+        return result;
+    }
+
+    private final ProtocolParameterIndex<String> instance;
+
+    public ProtocolParameterIndexNGTest() {
+        instance = new ProtocolParameterIndex<>();
+        for (int d = 0; d < 40; d++)
+            for (int f = 0; f < 40; f++)
+                instance.put("nec1", map(d, 255 - d, f), "nec1 " + d + " " + f);
+        instance.put("NEC1", map(1, 2, 3), "first");
+        instance.put("rc5", map(0, 0, 12), "rc5 0 12");
+        instance.put("rc5", map(0, 0, 12, 1), "rc5 0 12 1");
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of get method, of class ProtocolParameterIndex.
+     */
+    @Test
+    public void testGet() {
+        System.out.println("get");
+        assertEquals(instance.size(), 1603);
+        assertEquals(instance.get("nec1", map(12, 243, 34)), "nec1 12 34");
+        assertEquals(instance.get("Nec1", map(39, 216, 0)), "nec1 39 0");
+        assertEquals(instance.get("nec1", map(1, 2, 3)), "first");
+        assertEquals(instance.get("rc5", map(0, 0, 12)), "rc5 0 12");
+        assertEquals(instance.get("rc5", map(0, 0, 12, 1)), "rc5 0 12 1");
+        assertNull(instance.get("rc5", map(0, 0, 13)));
+        assertNull(instance.get("rc5", map(0, 0)));
+        assertNull(instance.get("nec2", map(12, 243, 34)));
+        Map<String, Long> unknownParameter = map(0, 0, 12);
+        unknownParameter.put("X", 1L);
+        assertNull(instance.get("rc5", unknownParameter));
+    }
+
+    /**
+     * Test of put method, of class ProtocolParameterIndex, replacing a value.
+     */
+    @Test
+    public void testPut() {
+        System.out.println("put");
+        ProtocolParameterIndex<String> index = new ProtocolParameterIndex<>();
+        index.put("nec1", map(1, 2, 3), "old");
+        index.put("nec1", map(1, 2, 3), "new");
+        assertEquals(index.size(), 1);
+        assertEquals(index.get("nec1", map(1, 2, 3)), "new");
+    }
+
+    /**
+     * Test of setDefaults method, of class ProtocolParameterIndex.
+     */
+    @Test
+    public void testSetDefaults() {
+        System.out.println("setDefaults");
+        ProtocolParameterIndex<String> index = new ProtocolParameterIndex<>();
+        Map<String, Long> defaults = new HashMap<>(1);
+        defaults.put("T", 0L);
+        index.setDefaults("rc5", defaults);
+        index.put("rc5", map(0, 0, 12), "without T");
+        index.put("rc5", map(0, 0, 13, 0), "with default T");
+        assertEquals(index.get("rc5", map(0, 0, 12, 0)), "without T");
+        assertEquals(index.get("RC5", map(0, 0, 13)), "with default T");
+        assertNull(index.get("rc5", map(0, 0, 12, 1)));
+        assertEquals(index.size(), 2);
+    }
+
+    /**
+     * Test of get method, of class ProtocolParameterIndex, with defaults depending on other parameters.
+     */
+    @Test
+    public void testDependentDefaults() throws Exception {
+        System.out.println("dependentDefaults");
+        ProtocolDefaults nec1 = ProtocolDefaults.of(new Protocol(NEC1));
+        ProtocolParameterIndex<String> index = new ProtocolParameterIndex<>();
+        index.setDefaults("nec1", nec1.getConstants());
+        index.put("nec1", map(1, 254, 12), nec1, "default S");
+        index.put("nec1", map(2, 3, 12), nec1, "explicit S");
+        assertEquals(index.size(), 2);
+        assertEquals(index.get("nec1", map(1, 254, 12), nec1), "default S");
+        Map<String, Long> withoutS = map(1);
+        withoutS.put("F", 12L);
+        assertEquals(index.get("nec1", withoutS, nec1), "default S");
+        assertEquals(index.get("nec1", map(2, 3, 12), nec1), "explicit S");
+        assertNull(index.get("nec1", map(2, 253, 12), nec1));
+        assertNull(index.get("nec1", map(1, 254, 12)));
+
+        // D is not given, so S cannot be the default, whatever D was in an earlier evaluation.
+        Map<String, Long> withoutD = new HashMap<>(2);
+        withoutD.put("S", 254L);
+        withoutD.put("F", 12L);
+        assertTrue(nec1.isDefault("S", 254L, map(1, 254, 12)));
+        assertNull(index.get("nec1", withoutD, nec1));
+        assertFalse(nec1.isDefault("S", 254L, withoutD));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.harctoolbox.irp.Protocol;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class QueryIndexNGTest {
+
+    private static final String NEC1 = "{38.4k,564}<1,-1|1,-3>(16,-8,D:8,S:8,F:8,~F:8,1,^108m,(16,-4,1,^108m)*) [D:0..255,S:0..255=255-D,F:0..255]";
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static Map<String, Long> map(String... namesAndValues) {
+        Map<String, Long> result = new HashMap<>(4);
+        for (int i = 0; i < namesAndValues.length; i += 2)
+            result.put(namesAndValues[i], Long.parseLong(namesAndValues[i + 1]));
+        return result;
+    }
+
+    private static List<String> names(List<RemoteCommandDataBase.RemoteCommand> commands) {
+        List<String> result = new ArrayList<>(commands.size());
+        commands.forEach((command) -> {
+            result.add(command.getRemoteName() + "/" + command.getCommandName());
+        });
+        return result;
+    }
+
+    private final QueryIndex instance;
+
+    public QueryIndexNGTest() throws Exception {
+        CompactRemote.Builder amp = new CompactRemote.Builder("amp", 1);
+        amp.add("power", null, "nec1", map("D", "5", "F", "8"), null);
+        CompactRemote.Builder tv = new CompactRemote.Builder("tv", 4);
+        tv.add("power", null, "nec1", map("D", "4", "F", "8"), null);
+        tv.add("mute", null, "nec1", map("D", "4", "S", "251", "F", "9"), null);
+        tv.add("input", null, "NEC1", map("D", "4", "S", "10", "F", "8"), null);
+        tv.add("volume", null, "rc5", map("D", "0", "F", "16"), null);
+        ProtocolDefaults nec1 = ProtocolDefaults.of(new Protocol(NEC1));
+        instance = new QueryIndex(Arrays.asList(amp.build(true), tv.build(true)),
+                (protocol) -> protocol.equalsIgnoreCase("nec1") ? nec1 : ProtocolDefaults.NONE);
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of query method, of class QueryIndex.
+     */
+    @Test
+    public void testQuery() {
+        System.out.println("query");
+        assertEquals(names(instance.query("nec1", map("D", "4"))), Arrays.asList("tv/input", "tv/mute", "tv/power"));
+        assertEquals(names(instance.query("NEC1", map("F", "8"))), Arrays.asList("amp/power", "tv/input", "tv/power"));
+        assertEquals(names(instance.query("nec1", map("D", "4", "S", "10"))), Arrays.asList("tv/input"));
+        assertEquals(names(instance.query("nec1", map("D", "4", "F", "8"))), Arrays.asList("tv/input", "tv/power"));
+        assertEquals(names(instance.query("rc5", map("F", "16"))), Arrays.asList("tv/volume"));
+        assertEquals(instance.query("nec1", Collections.emptyMap()).size(), 4);
+        assertTrue(instance.query("nec1", map("D", "4", "S", "252")).isEmpty());
+        assertTrue(instance.query("nec1", map("X", "1")).isEmpty());
+        assertTrue(instance.query("nec2", map("D", "4")).isEmpty());
+    }
+
+    /**
+     * Test of query method, of class QueryIndex, with parameters omitted in the commands, since they have their default values.
+     */
+    @Test
+    public void testQueryDefaults() {
+        System.out.println("queryDefaults");
+        assertEquals(names(instance.query("nec1", map("D", "4", "S", "251"))), Arrays.asList("tv/mute", "tv/power"));
+        assertEquals(names(instance.query("nec1", map("S", "250"))), Arrays.asList("amp/power"));
+        assertTrue(instance.query("rc5", map("S", "255")).isEmpty());
+    }
+
+    /**
+     * Test of getProtocols method, of class QueryIndex.
+     */
+    @Test
+    public void testGetProtocols() {
+        System.out.println("getProtocols");
+        Map<String, Integer> result = instance.getProtocols();
+        assertEquals(result.size(), 2);
+        assertEquals(result.get("NEC1"), Integer.valueOf(4));
+        assertEquals(result.get("rc5"), Integer.valueOf(1));
+        assertTrue(instance.memory() > 0);
+    }
+}
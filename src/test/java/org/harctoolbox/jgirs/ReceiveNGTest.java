@@ -0,0 +1,144 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.harctoolbox.ircore.IrSequence;
+import org.harctoolbox.ircore.ModulatedIrSequence;
+import org.harctoolbox.irp.Decoder;
+import org.harctoolbox.irp.IrpDatabase;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class ReceiveNGTest {
+
+    // NEC1 D=0 F=12
+    private static final int[] NEC1 = new int[]{
+        9024, 4512, 564, 564, 564, 564, 564, 564, 564, 564, 564, 564, 564, 564, 564, 564, 564, 564,
+        564, 1692, 564, 1692, 564, 1692, 564, 1692, 564, 1692, 564, 1692, 564, 1692, 564, 1692,
+        564, 564, 564, 564, 564, 1692, 564, 1692, 564, 564, 564, 564, 564, 564, 564, 564,
+        564, 1692, 564, 1692, 564, 564, 564, 564, 564, 1692, 564, 1692, 564, 1692, 564, 1692,
+        564, 39756};
+
+    private static Receive instance = null; // its commands can be registered only once
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static RemoteCommandDataBase database(String remoteName, String protocol) throws Exception {
+        CompactRemote.Builder builder = new CompactRemote.Builder(remoteName, 1);
+        Map<String, Long> parameters = new HashMap<>(3);
+        parameters.put("D", 0L);
+        parameters.put("S", 1L);
+        parameters.put("F", 12L);
+        builder.add("power", null, protocol, parameters, null);
+        RemoteCommandDataBase database = new RemoteCommandDataBase();
+        database.addRemotes(Arrays.asList(builder.build(true)));
+        return database;
+    }
+
+    /**
+     * @return the names of the protocols decoded by the current decoder of Receive.
+     */
+    private static List<String> decode(IrSequence irSequence) {
+        List<Decoder.Decode> decodes = instance.getDecoder().decode(new ModulatedIrSequence(irSequence, 38000d), new Decoder.DecoderParameters());
+        List<String> result = new ArrayList<>(decodes.size());
+        decodes.forEach((decode) -> {
+            result.add(decode.getName());
+        });
+        return result;
+    }
+
+    private final NamedRemotes namedRemotes;
+    private final IrSequence irSequence;
+
+    public ReceiveNGTest() throws Exception {
+        if (Parameters.getInstance() == null)
+            Parameters.newParameterModule();
+        if (instance == null)
+            instance = Receive.getInstance() != null ? Receive.getInstance()
+                    : (Receive) Receive.newReceive(new IrpDatabase("/usr/local/share/irscrutinizer/IrpProtocols.xml"));
+        namedRemotes = NamedRemotes.getInstance() != null ? NamedRemotes.getInstance() : NamedRemotes.newNamedRemotes(database("tv", "nec1"));
+        irSequence = new IrSequence(NEC1);
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+        namedRemotes.setDatabase(database("tv", "nec1"));
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+        Parameters.getInstance().setString(Receive.DECODEPROTOCOLS, Receive.ALLPROTOCOLS);
+    }
+
+    /**
+     * Test of getDecoder method, of class Receive, with the protocols of the named remotes.
+     */
+    @Test
+    public void testGetDecoderAuto() throws Exception {
+        System.out.println("getDecoderAuto");
+        Parameters.getInstance().setString(Receive.DECODEPROTOCOLS, Receive.AUTOPROTOCOLS);
+        ParallelDecoder decoder = instance.getDecoder();
+        assertEquals(decode(irSequence), Arrays.asList("NEC1"));
+        assertEquals(decoder.getProtocolsTried(), 1L);
+        assertSame(instance.getDecoder(), decoder);
+
+        // Replacing the named remotes, as a reload does, rebuilds the selection.
+        namedRemotes.setDatabase(database("amplifier", "necx"));
+        assertNotSame(instance.getDecoder(), decoder);
+        assertFalse(decode(irSequence).contains("NEC1"));
+        assertEquals(instance.getDecoder().getProtocolsTried(), 1L);
+    }
+
+    /**
+     * Test of getDecoder method, of class Receive, with an explicit list of protocols.
+     */
+    @Test
+    public void testGetDecoderList() throws Exception {
+        System.out.println("getDecoderList");
+        Parameters.getInstance().setString(Receive.DECODEPROTOCOLS, "nec1, RC5,nonexisting");
+        assertEquals(decode(irSequence), Arrays.asList("NEC1"));
+        assertEquals(instance.getDecoder().getProtocolsTried(), 2L);
+
+        Parameters.getInstance().setString(Receive.DECODEPROTOCOLS, "rc5");
+        assertTrue(decode(irSequence).isEmpty());
+        assertTrue(Receive.formatAsDecode(irSequence).isEmpty());
+    }
+
+    /**
+     * Test of getDecoder method, of class Receive, with all protocols.
+     */
+    @Test
+    public void testGetDecoderAll() throws Exception {
+        System.out.println("getDecoderAll");
+        Parameters.getInstance().setString(Receive.DECODEPROTOCOLS, Receive.ALLPROTOCOLS);
+        List<String> result = decode(irSequence);
+        assertTrue(result.contains("NEC1"));
+        assertTrue(instance.getDecoder().getProtocolsTried() > 2L);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class RemoteCommandDataBaseNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static List<String> names(List<RemoteCommandDataBase.RemoteCommand> commands) {
+        List<String> result = new ArrayList<>(commands.size());
+        commands.forEach((command) -> {
+            result.add(command.toString());
+        });
+        return result;
+    }
+
+    private final RemoteCommandDataBase instance;
+
+    public RemoteCommandDataBaseNGTest() throws Exception {
+        CompactRemote.Builder builder = new CompactRemote.Builder("tv", 5);
+        for (int f = 1; f <= 5; f++) {
+            Map<String, Long> parameters = new HashMap<>(4);
+            parameters.put("D", 4L);
+            parameters.put("F", (long) f);
+            builder.add("key_" + f, null, "nec1", parameters, null);
+        }
+        instance = new RemoteCommandDataBase();
+        instance.addRemotes(Arrays.asList(builder.build(true)));
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of search method, of class RemoteCommandDataBase, with offset and count.
+     */
+    @Test
+    public void testSearchPaging() {
+        System.out.println("searchPaging");
+        assertEquals(instance.search("key").size(), 5);
+        assertEquals(names(instance.search("key", 0, 2)), Arrays.asList("tv/key_1", "tv/key_2"));
+        assertEquals(names(instance.search("key", 2, 2)), Arrays.asList("tv/key_3", "tv/key_4"));
+        assertEquals(names(instance.search("key", 4, 2)), Arrays.asList("tv/key_5"));
+        assertTrue(instance.search("key", 5, 2).isEmpty());
+        assertTrue(instance.search("key", 100, 2).isEmpty());
+        assertTrue(instance.search("key", 1, 0).isEmpty());
+        assertEquals(instance.search("key", 1, Integer.MAX_VALUE).size(), 4);
+        assertTrue(instance.search("key", Integer.MAX_VALUE, Integer.MAX_VALUE).isEmpty());
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.harctoolbox.girr.Command;
+import org.harctoolbox.girr.Remote;
+import org.harctoolbox.ircore.IrSequence;
+import org.harctoolbox.ircore.IrSignal;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class RemoteDataBaseSnapshotNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static CompactRemote remote() throws Exception {
+        Remote.MetaData metaData = new Remote.MetaData("tv", "TV", "Acme", "T-1000", "tv", "RC-1");
+        CompactRemote.Builder builder = new CompactRemote.Builder(metaData, "living room", 3);
+        Map<String, Long> parameters = new HashMap<>(4);
+        parameters.put("D", 4L);
+        parameters.put("F", 8L);
+        builder.add("power", "toggles", "nec1", parameters, null);
+        IrSignal irSignal = new IrSignal(new IrSequence(new int[]{9000, 4500, 560, 40000}), new IrSequence(new int[]{9000, 2250, 560, 96000}),
+                new IrSequence(), null, 0.4);
+        builder.add(new Command("learned", null, irSignal));
+        return builder.build(false);
+    }
+
+    private File file;
+
+    public RemoteDataBaseSnapshotNGTest() {
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+        file = File.createTempFile("snapshot", ".bin");
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+        file.delete();
+    }
+
+    /**
+     * Test of write and read methods, of class RemoteDataBaseSnapshot.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testWriteRead() throws Exception {
+        System.out.println("writeRead");
+        Map<String, RemoteDataBaseSnapshot.Source> sources = new HashMap<>(1);
+        sources.put("url=remotes.girr;", new RemoteDataBaseSnapshot.Source(4711L, Arrays.asList(remote())));
+        assertTrue(RemoteDataBaseSnapshot.write(file, sources));
+
+        Map<String, RemoteDataBaseSnapshot.Source> result = RemoteDataBaseSnapshot.read(file, false);
+        assertEquals(result.size(), 1);
+        RemoteDataBaseSnapshot.Source source = result.get("url=remotes.girr;");
+        assertEquals(source.getStamp(), 4711L);
+        assertEquals(source.getRemotes().size(), 1);
+
+        CompactRemote remote = source.getRemotes().get(0);
+        assertEquals(remote.getName(), "tv");
+        assertEquals(remote.getMetaData().getDisplayName(), "TV");
+        assertEquals(remote.getMetaData().getManufacturer(), "Acme");
+        assertEquals(remote.getMetaData().getModel(), "T-1000");
+        assertEquals(remote.getMetaData().getDeviceClass(), "tv");
+        assertEquals(remote.getMetaData().getRemoteName(), "RC-1");
+        assertEquals(remote.getComment(), "living room");
+        assertEquals(remote.getCommandNames(), Arrays.asList("learned", "power"));
+
+        assertEquals(remote.getComment(1), "toggles");
+        assertEquals(remote.getProtocol(1), "nec1");
+        assertEquals(remote.getParameters(1).size(), 2);
+        assertEquals(remote.getParameter(1, "D"), Long.valueOf(4L));
+        assertEquals(remote.getParameter(1, "F"), Long.valueOf(8L));
+
+        assertNull(remote.getComment(0));
+        assertNull(remote.getProtocol(0));
+        IrSignal irSignal = remote.toIrSignal(0);
+        assertNull(irSignal.getFrequency());
+        assertEquals(irSignal.getDutyCycle(), 0.4);
+        assertEquals(irSignal.getIntroSequence().toInts(), new int[]{9000, 4500, 560, 40000});
+        assertEquals(irSignal.getRepeatSequence().toInts(), new int[]{9000, 2250, 560, 96000});
+        assertEquals(irSignal.getEndingLength(), 0);
+
+        CompactRemote compact = RemoteDataBaseSnapshot.read(file, true).get("url=remotes.girr;").getRemotes().get(0);
+        assertTrue(compact.isCompact());
+        assertEquals(compact.getComment(1), "toggles");
+        assertEquals(compact.getCommand(1).getComment(), "toggles");
+    }
+
+    /**
+     * Test of read method, of class RemoteDataBaseSnapshot, with a missing file.
+     */
+    @Test
+    public void testReadMissing() {
+        System.out.println("readMissing");
+        file.delete();
+        assertTrue(RemoteDataBaseSnapshot.read(file, true).isEmpty());
+    }
+}
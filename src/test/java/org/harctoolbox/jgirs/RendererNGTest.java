@@ -0,0 +1,103 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.harctoolbox.ircore.IrSignal;
+import org.harctoolbox.irp.IrpDatabase;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class RendererNGTest {
+
+    private static final String IRPPROTOCOLS = "/usr/local/share/irscrutinizer/IrpProtocols.xml";
+
+    private static Renderer instance = null; // its commands can be registered only once
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static Map<String, Long> parameters(long D, long F) {
+        Map<String, Long> parameters = new HashMap<>(2);
+        parameters.put("D", D);
+        parameters.put("F", F);
+        return parameters;
+    }
+
+    public RendererNGTest() throws Exception {
+        if (Parameters.getInstance() == null)
+            Parameters.newParameterModule();
+        if (instance == null)
+            instance = new Renderer(new IrpDatabase(IRPPROTOCOLS));
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+        instance.setIrpDatabase(new IrpDatabase(IRPPROTOCOLS));
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of render method, of class Renderer, that a rendered signal is taken from the cache.
+     */
+    @Test
+    public void testRenderCached() throws Exception {
+        System.out.println("renderCached");
+        IrSignal first = instance.render("NEC1", parameters(0, 12));
+        Map<String, Long> reordered = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        reordered.put("F", 12L);
+        reordered.put("D", 0L);
+        assertSame(instance.render("nec1", reordered), first);
+        assertNotSame(instance.render("NEC1", parameters(0, 13)), first);
+        assertSame(instance.render(new String[]{"transmit", "NEC1", "D=0", "F=12"}, 1), first);
+    }
+
+    /**
+     * Test of setIrpDatabase method, of class Renderer, that the cache is cleared.
+     */
+    @Test
+    public void testSetIrpDatabase() throws Exception {
+        System.out.println("setIrpDatabase");
+        IrSignal first = instance.render("NEC1", parameters(0, 12));
+        instance.setIrpDatabase(new IrpDatabase(IRPPROTOCOLS));
+        IrSignal second = instance.render("NEC1", parameters(0, 12));
+        assertNotSame(second, first);
+        assertSame(instance.render("NEC1", parameters(0, 12)), second);
+    }
+
+    /**
+     * Test of setIrpDatabase method, of class Renderer, that the cache of named signals is cleared too.
+     */
+    @Test
+    public void testSetIrpDatabaseNamed() throws Exception {
+        System.out.println("setIrpDatabaseNamed");
+        NamedRemotes namedRemotes = NamedRemotes.getInstance() != null ? NamedRemotes.getInstance() : NamedRemotes.newNamedRemotes(NamedRemotesNGTest.database());
+        namedRemotes.setDatabase(NamedRemotesNGTest.database());
+        IrSignal power = namedRemotes.render("tv", "power");
+        assertSame(namedRemotes.render("tv", "power"), power);
+        instance.setIrpDatabase(new IrpDatabase(IRPPROTOCOLS));
+        assertNotSame(namedRemotes.render("tv", "power"), power);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class SearchIndexNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    // A remote, from its name followed by pairs of command name and protocol.
+    private static CompactRemote remote(String name, String... commandsAndProtocols) throws Exception {
+        CompactRemote.Builder builder = new CompactRemote.Builder(name, commandsAndProtocols.length / 2);
+        for (int i = 0; i < commandsAndProtocols.length; i += 2)
+            builder.add(commandsAndProtocols[i], null, commandsAndProtocols[i + 1], Collections.emptyMap(), null);
+        return builder.build(true);
+    }
+
+    private static List<String> search(SearchIndex index, String text) {
+        List<String> result = new ArrayList<>(4);
+        index.search(text).forEach((command) -> {
+            result.add(command.toString());
+        });
+        return result;
+    }
+
+    public SearchIndexNGTest() {
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of search method, of class SearchIndex: exact matches before prefixes before substrings.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testRankMatch() throws Exception {
+        System.out.println("rankMatch");
+        SearchIndex index = new SearchIndex(Arrays.asList(remote("tv", "apower", "nec1", "power", "nec1", "powerful", "nec1", "mute", "nec1")));
+        assertEquals(search(index, "power"), Arrays.asList("tv/power", "tv/powerful", "tv/apower"));
+        assertEquals(search(index, "POW"), Arrays.asList("tv/power", "tv/powerful", "tv/apower"));
+        assertEquals(search(index, "ower"), Arrays.asList("tv/apower", "tv/power", "tv/powerful"));
+        assertEquals(search(index, "ut"), Arrays.asList("tv/mute"));
+    }
+
+    /**
+     * Test of search method, of class SearchIndex: command names before remote names before protocol names.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testRankField() throws Exception {
+        System.out.println("rankField");
+        SearchIndex index = new SearchIndex(Arrays.asList(
+                remote("beta", "x", "light"),
+                remote("light", "on", "nec1"),
+                remote("alpha", "light", "rc5")));
+        assertEquals(search(index, "light"), Arrays.asList("alpha/light", "light/on", "beta/x"));
+    }
+
+    /**
+     * Test of search method, of class SearchIndex, with several terms, all of which have to match.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testMultipleTerms() throws Exception {
+        System.out.println("multipleTerms");
+        SearchIndex index = new SearchIndex(Arrays.asList(
+                remote("tv", "power", "nec1", "mute", "nec1"),
+                remote("amp", "power", "rc5", "volume_up", "rc5")));
+        assertEquals(search(index, "power"), Arrays.asList("tv/power", "amp/power"));
+        assertEquals(search(index, "amp power"), Arrays.asList("amp/power"));
+        assertEquals(search(index, "power amp"), Arrays.asList("amp/power"));
+        assertEquals(search(index, "volume up"), Arrays.asList("amp/volume_up"));
+        assertEquals(search(index, "tv rc5"), Collections.emptyList());
+        assertTrue(search(index, "tv volume").isEmpty());
+        assertTrue(search(index, "").isEmpty());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class SessionNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private final Parameters parameters;
+
+    public SessionNGTest() {
+        parameters = Parameters.getInstance() != null ? Parameters.getInstance() : Parameters.newParameterModule();
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+        Session.setCurrent(null);
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+        Session.setCurrent(null);
+    }
+
+    /**
+     * Test of setParameter method, of class Session, that the value stays in the session.
+     */
+    @Test
+    public void testSetParameter() throws Exception {
+        System.out.println("setParameter");
+        Session first = new Session();
+        Session second = new Session();
+        Parameter global = parameters.get(Parameters.LISTSEPARATOR);
+
+        Session.setCurrent(first);
+        parameters.setString(Parameters.LISTSEPARATOR, ",");
+        assertEquals(parameters.getString(Parameters.LISTSEPARATOR), ",");
+        assertNotSame(parameters.get(Parameters.LISTSEPARATOR), global);
+
+        Session.setCurrent(second);
+        assertEquals(parameters.getString(Parameters.LISTSEPARATOR), " ");
+        assertSame(parameters.get(Parameters.LISTSEPARATOR), global);
+        assertTrue(parameters.setParameter("verb", "true").endsWith("true"));
+        assertTrue(parameters.getBoolean(Parameters.VERBOSITY));
+
+        Session.setCurrent(first);
+        assertFalse(parameters.getBoolean(Parameters.VERBOSITY));
+        assertEquals(parameters.getString(Parameters.LISTSEPARATOR), ",");
+
+        Session.setCurrent(null);
+        assertEquals(parameters.getString(Parameters.LISTSEPARATOR), " ");
+        assertFalse(parameters.getBoolean(Parameters.VERBOSITY));
+        assertSame(parameters.get(Parameters.LISTSEPARATOR), global);
+    }
+
+    /**
+     * Test of getCurrent method, of class Session, that a session value is not seen from another thread.
+     */
+    @Test
+    public void testOtherThread() throws Exception {
+        System.out.println("otherThread");
+        Session session = new Session();
+        Session.setCurrent(session);
+        parameters.setString(Parameters.LISTSEPARATOR, ";");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(executor.submit(() -> parameters.getString(Parameters.LISTSEPARATOR)).get(), " ");
+            assertEquals(executor.submit(() -> {
+                Session.setCurrent(new Session());
+                try {
+                    return parameters.getString(Parameters.LISTSEPARATOR);
+                } finally {
+                    Session.setCurrent(null);
+                }
+            }).get(), " ");
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(parameters.getString(Parameters.LISTSEPARATOR), ";");
+    }
+
+    /**
+     * Test of submit method, of class Session, that an asynchronous command sees the values of its session.
+     */
+    @Test
+    public void testSubmit() throws Exception {
+        System.out.println("submit");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Session session = new Session(new PrintStream(bytes, true, "US-ASCII"));
+        Session.setCurrent(session);
+        parameters.setString(Parameters.LISTSEPARATOR, "|");
+        Session.setCurrent(null);
+
+        session.submit("test", () -> Arrays.asList(parameters.getString(Parameters.LISTSEPARATOR), "x"));
+        for (int i = 0; i < 100 && bytes.size() == 0; i++)
+            Thread.sleep(20L);
+        assertEquals(new String(bytes.toByteArray(), StandardCharsets.US_ASCII).trim(), "test ||x");
+        assertEquals(parameters.getString(Parameters.LISTSEPARATOR), " ");
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.harctoolbox.jgirs;
+
+import java.util.Collections;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author bengt
+ */
+public class SignalFingerprintIndexNGTest {
+
+    // 2187 = 3^7 is the lower boundary of a bucket, 2186 and 729 are just below one.
+    private static final int[] BOUNDARY = new int[]{2187, 729, 2186, 730, 6561, 2187, 243, 729, 2187, 2186, 729, 2187, 560, 1690, 40000};
+    private static final int[] OTHER = new int[]{4500, 560, 1690, 560, 560, 560, 1690, 560, 1690, 560, 560, 560, 560, 1690, 40000};
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static int[] scale(int[] durations, double factor) {
+        int[] result = new int[durations.length];
+        for (int i = 0; i < durations.length; i++)
+            result[i] = (int) Math.round(durations[i] * factor);
+        return result;
+    }
+
+    private final SignalFingerprintIndex instance;
+
+    public SignalFingerprintIndexNGTest() throws Exception {
+        CompactRemote.Builder builder = new CompactRemote.Builder("learned", 3);
+        builder.add("boundary", null, "P", Collections.emptyMap(), null);
+        builder.add("other", null, "P", Collections.emptyMap(), null);
+        builder.add("short", null, "P", Collections.emptyMap(), null);
+        CompactRemote remote = builder.build(true);
+        instance = new SignalFingerprintIndex();
+        instance.add(new RemoteCommandDataBase.RemoteCommand(remote, 0), BOUNDARY);
+        instance.add(new RemoteCommandDataBase.RemoteCommand(remote, 1), OTHER);
+        assertFalse(instance.add(new RemoteCommandDataBase.RemoteCommand(remote, 2), new int[]{9000, 4500, 560, 40000}));
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    private String match(int[] captured, double tolerance) {
+        RemoteCommandDataBase.RemoteCommand command = instance.match(captured, tolerance, (c) -> true);
+        return command != null ? command.getCommandName() : null;
+    }
+
+    /**
+     * Test of match method, of class SignalFingerprintIndex, with durations on both sides of bucket boundaries.
+     */
+    @Test
+    public void testMatchBoundary() {
+        System.out.println("matchBoundary");
+        assertEquals(instance.size(), 2);
+        assertEquals(match(BOUNDARY, 0.2), "boundary");
+        assertEquals(match(scale(BOUNDARY, 1.19), 0.2), "boundary");
+        assertEquals(match(scale(BOUNDARY, 0.81), 0.2), "boundary");
+        assertEquals(match(scale(BOUNDARY, 1.24), 0.25), "boundary");
+        assertEquals(match(scale(BOUNDARY, 0.76), 0.25), "boundary");
+        assertEquals(match(scale(OTHER, 0.9), 0.2), "other");
+
+        int[] mixed = BOUNDARY.clone();
+        for (int i = 0; i < mixed.length; i += 2)
+            mixed[i] = (int) Math.round(mixed[i] * 0.82);
+        for (int i = 1; i < mixed.length; i += 2)
+            mixed[i] = (int) Math.round(mixed[i] * 1.18);
+        assertEquals(match(mixed, 0.2), "boundary");
+    }
+
+    /**
+     * Test of match method, of class SignalFingerprintIndex, with deviations above the tolerance.
+     */
+    @Test
+    public void testMatchRejected() {
+        System.out.println("matchRejected");
+        assertNull(match(scale(BOUNDARY, 1.19), 0.1));
+        assertNull(match(scale(BOUNDARY, 0.81), 0.1));
+        assertNull(match(scale(BOUNDARY, 1.3), 0.5)); // the tolerance is limited to MAX_TOLERANCE
+        int[] oneOff = BOUNDARY.clone();
+        oneOff[13] = 2500;
+        assertNull(match(oneOff, 0.2));
+        assertNull(match(new int[]{2187, 729, 2186}, 0.2));
+        assertNull(instance.match(BOUNDARY, 0.2, (c) -> false));
+    }
+}
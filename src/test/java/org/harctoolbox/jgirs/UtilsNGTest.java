@@ -61,4 +61,35 @@ public class UtilsNGTest {
         String[] result = Utils.tokenizer(s, separator);
         assertEquals(result, expResult);
     }
+
+    /**
+     * Test of tokenizer method, of class Utils, for some corner cases.
+     */
+    @Test
+    public void testTokenizer_cornerCases() {
+        System.out.println("tokenizer");
+        assertEquals(Utils.tokenizer("transmit  raw\t1 \"a  b\" "), new String[] {"transmit", "raw", "1", "a  b"});
+        assertEquals(Utils.tokenizer(" version"), new String[] {"", "version"});
+        assertEquals(Utils.tokenizer(""), new String[] {""});
+        assertEquals(Utils.tokenizer("a;;b;;", ";"), new String[] {"a", "", "b"});
+        assertEquals(Utils.tokenizer("a; ", ";"), new String[] {"a", ""});
+        assertEquals(Utils.tokenizer("a, b", ", *"), new String[] {"a", "b"});
+    }
+
+    /**
+     * Test of parseInts method, of class Utils.
+     */
+    @Test
+    public void testParseInts() {
+        System.out.println("parseInts");
+        assertEquals(Utils.parseInts(" 9024 -4512  564 ", 0, 10), new int[] {9024, -4512, 564});
+        assertEquals(Utils.parseInts("0000 006C 0001", 0, 16), new int[] {0, 108, 1});
+        assertEquals(Utils.parseInts("raw 1 2", 3, 10), new int[] {1, 2});
+        assertEquals(Utils.parseInts("", 0, 10), new int[0]);
+    }
+
+    @Test(expectedExceptions = NumberFormatException.class)
+    public void testParseInts_invalid() {
+        Utils.parseInts("1 2x 3", 0, 10);
+    }
 }